@@ -0,0 +1,212 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares a JMH CSV results file against the recorded baseline and
+ * fails if any benchmark is slower, or allocates more per operation, by
+ * more than the threshold. Only the primary score and the GC profiler's
+ * normalised allocation (bytes per op) are compared, the other profiler
+ * results such as allocation rates, GC counts and GC times vary with the
+ * score itself so are not a regression on their own. Primary scores in
+ * ops per time unit are better higher, times and bytes per op are better
+ * lower.
+ *
+ * A missing or empty baseline skips the comparison with a warning, as
+ * baselines are specific to a machine and JDK. Record one by passing true
+ * as the record argument which copies the results over the baseline.
+ *
+ * Usage: BenchmarkComparison baseline.csv results.csv [threshold percent] [record]
+ *
+ * Runs in the Maven JVM so failures are thrown rather than exiting.
+ */
+public final class BenchmarkComparison {
+
+	private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+	/**
+	 * The GC profiler's secondary result for bytes allocated per operation
+	 */
+	private static final String ALLOCATION_PER_OP = "gc.alloc.rate.norm";
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private BenchmarkComparison(){}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Usage: BenchmarkComparison baseline.csv results.csv [threshold percent] [record]");
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+		boolean record = args.length > 3 && Boolean.parseBoolean(args[3]);
+		Path baselinePath = Paths.get(args[0]);
+		Path resultsPath = Paths.get(args[1]);
+		if (record) {
+			Files.createDirectories(baselinePath.toAbsolutePath().getParent());
+			Files.copy(resultsPath, baselinePath, StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("Recorded "+resultsPath+" as the baseline "+baselinePath);
+			return;
+		}
+		Map<String, Score> baseline = Files.exists(baselinePath) ? read(baselinePath) : new LinkedHashMap<>();
+		if (baseline.isEmpty()) {
+			System.out.println("WARNING: No baseline recorded in "+baselinePath+", skipping the comparison. "
+					+ "Record one on a quiet machine with -Djmh.recordBaseline=true");
+			return;
+		}
+		int regressions = compare(baseline, read(resultsPath), threshold);
+		System.out.println(regressions+" regressions beyond "+threshold+"%");
+		if (regressions > 0) {
+			throw new IllegalStateException(regressions+" benchmarks regressed beyond "+threshold+"% of the baseline");
+		}
+	}
+
+	/**
+	 * Compares the results with the baseline, printing a line per compared
+	 * result
+	 *
+	 * @param baseline the baseline scores
+	 * @param results the new scores
+	 * @param threshold the percentage change allowed before a result is a regression
+	 * @return the number of regressions
+	 */
+	static int compare(Map<String, Score> baseline, Map<String, Score> results, double threshold) {
+		int regressions = 0;
+		for (Map.Entry<String, Score> entry : results.entrySet()) {
+			if (!isCompared(entry.getKey())) {
+				continue;
+			}
+			Score score = entry.getValue();
+			Score base = baseline.get(entry.getKey());
+			if (base == null) {
+				System.out.printf(Locale.ROOT, "NEW        %s %.3f %s%n", entry.getKey(), score.value, score.unit);
+				continue;
+			}
+			double change = base.value == 0 ? 0 : 100*(score.value-base.value)/base.value;
+			boolean worse = score.isHigherBetter() ? change < -threshold : change > threshold;
+			if (worse) {
+				regressions++;
+			}
+			System.out.printf(Locale.ROOT, "%-10s %s %.3f -> %.3f %s (%+.1f%%)%n", worse ? "REGRESSION" : "OK",
+					entry.getKey(), base.value, score.value, score.unit, change);
+		}
+		return regressions;
+	}
+
+	/**
+	 * Determines whether a result is compared, only primary scores and
+	 * allocation per operation are
+	 *
+	 * @param key the result key
+	 * @return true if the result is compared with the baseline
+	 */
+	static boolean isCompared(String key) {
+		String benchmark = key.substring(0, key.indexOf(" ["));
+		int secondary = benchmark.indexOf(':');
+		if (secondary < 0) {
+			return true;
+		}
+		// Older JMH versions prefix profiler results with a middle dot
+		String name = benchmark.substring(secondary+1);
+		return name.equals(ALLOCATION_PER_OP) || name.equals("\u00b7"+ALLOCATION_PER_OP);
+	}
+
+	/**
+	 * Reads a JMH CSV results file
+	 *
+	 * @param path the file
+	 * @return the scores keyed by benchmark, mode and parameters
+	 * @throws IOException if the file cannot be read
+	 */
+	static Map<String, Score> read(Path path) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<>();
+		List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		if (lines.isEmpty()) {
+			return scores;
+		}
+		List<String> header = split(lines.get(0));
+		int benchmark = header.indexOf("Benchmark");
+		int mode = header.indexOf("Mode");
+		int score = header.indexOf("Score");
+		int unit = header.indexOf("Unit");
+		for (String line : lines.subList(1, lines.size())) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			List<String> fields = split(line);
+			StringBuilder key = new StringBuilder(fields.get(benchmark)).append(" [").append(fields.get(mode));
+			for (int i=0; i<header.size(); ++i) {
+				if (header.get(i).startsWith("Param: ") && i < fields.size() && !fields.get(i).isEmpty()) {
+					key.append(", ").append(header.get(i).substring("Param: ".length())).append('=').append(fields.get(i));
+				}
+			}
+			key.append(']');
+			scores.put(key.toString(), new Score(Double.parseDouble(fields.get(score)), fields.get(unit)));
+		}
+		return scores;
+	}
+
+	/**
+	 * Splits a CSV line, removing the quotes around fields
+	 *
+	 * @param line the line
+	 * @return the fields
+	 */
+	static List<String> split(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (char c : line.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	static class Score {
+		final double value;
+		final String unit;
+
+		Score(double value, String unit) {
+			this.value = value;
+			this.unit = unit;
+		}
+
+		boolean isHigherBetter() {
+			return unit.startsWith("ops/");
+		}
+	}
+}
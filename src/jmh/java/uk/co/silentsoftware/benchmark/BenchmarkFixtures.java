@@ -0,0 +1,158 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import uk.co.silentsoftware.config.GigaScreenPaletteOrder;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ResamplingFilter;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.converters.image.DitherStrategy;
+import uk.co.silentsoftware.core.helpers.BlockCache;
+
+/**
+ * Shared fixtures for the benchmarks. Images are generated from a fixed
+ * seed so every run converts the same pixels, and the options are reset
+ * so the user's saved preferences don't change what is measured.
+ */
+public final class BenchmarkFixtures {
+
+	/**
+	 * A poster sized image, four times the Spectrum screen in each direction
+	 */
+	public static final int POSTER_WIDTH = SpectrumDefaults.SCREEN_WIDTH*4;
+	public static final int POSTER_HEIGHT = SpectrumDefaults.SCREEN_HEIGHT*4;
+
+	/**
+	 * A high definition video frame
+	 */
+	public static final int VIDEO_WIDTH = 1920;
+	public static final int VIDEO_HEIGHT = 1080;
+
+	private static final long SEED = 0x5A58L;
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private BenchmarkFixtures(){}
+
+	/**
+	 * Creates a photograph like test image of smooth gradients with
+	 * some noise and a few hard edged shapes
+	 *
+	 * @param width the image width
+	 * @param height the image height
+	 * @return the image
+	 */
+	public static BufferedImage createImage(int width, int height) {
+		Random random = new Random(SEED);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				int red = 255*x/width;
+				int green = 255*y/height;
+				int blue = 255*((x+y)%(width/4+1))/(width/4+1);
+				if (((x*8/width)+(y*6/height)) % 3 == 0) {
+					red = 255-red;
+				}
+				int noise = random.nextInt(24)-12;
+				image.setRGB(x, y, clamp(red+noise) << 16 | clamp(green+noise) << 8 | clamp(blue+noise));
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Gets the Spectrum screen or poster sized fixture
+	 *
+	 * @param size "screen" or "poster"
+	 * @return the image
+	 */
+	public static BufferedImage createImage(String size) {
+		if ("poster".equals(size)) {
+			return createImage(POSTER_WIDTH, POSTER_HEIGHT);
+		}
+		return createImage(SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT);
+	}
+
+	/**
+	 * Resets the options that affect conversion to their defaults and
+	 * empties the converted block cache
+	 *
+	 * @return the options
+	 */
+	public static OptionsObject resetOptions() {
+		OptionsObject oo = OptionsObject.getInstance();
+		oo.setScaling(oo.zxScaling);
+		oo.setResamplingFilter(ResamplingFilter.AreaAverage);
+		oo.setContrast(1);
+		oo.setBrightness(0);
+		oo.setSaturation(0);
+		oo.setBlackThreshold(128);
+		oo.setMonochromeInkIndex(0);
+		oo.setMonochromePaperIndex(7);
+		oo.setOrderedDitherIntensity(1);
+		oo.setSerpentine(false);
+		oo.setConstrainedErrorDiffusion(false);
+		oo.setColourDistanceStrategy(oo.getColourDistances()[0]);
+		oo.setColourMode(oo.getColourModes()[0]);
+		oo.setAttributeMode(oo.getAttributeModes()[0]);
+		oo.setGigaScreenAttributeStrategy(oo.getGigaScreenAttributeStrategies()[0]);
+		oo.setGigaScreenPaletteOrder(GigaScreenPaletteOrder.Luminosity);
+		oo.setExportScreen(false);
+		oo.setExportTape(false);
+		BlockCache.clear();
+		return oo;
+	}
+
+	/**
+	 * Finds a dither strategy by its class' simple name
+	 *
+	 * @param name the simple class name
+	 * @return the dither strategy
+	 */
+	public static DitherStrategy getDither(String name) {
+		OptionsObject oo = OptionsObject.getInstance();
+		return Stream.of(oo.getErrorDithers(), oo.getOrderedDithers(), oo.getOtherDithers())
+				.flatMap(Arrays::stream)
+				.filter(dither -> dither.getClass().getSimpleName().equals(name))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("No dither "+name));
+	}
+
+	/**
+	 * Finds an option by its class' simple name
+	 *
+	 * @param options the options to search
+	 * @param name the simple class name
+	 * @return the matching option
+	 */
+	public static <T> T getByClassName(T[] options, String name) {
+		return Arrays.stream(options)
+				.filter(option -> option.getClass().getSimpleName().equals(name))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("No option "+name));
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value));
+	}
+}
@@ -0,0 +1,94 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.converters.image.processors.ImageConverter;
+import uk.co.silentsoftware.core.helpers.BlockCache;
+
+/**
+ * Converts one frame with every dither, colour mode and attribute mode
+ * combination. GigaScreen uses its own attribute modes so is covered by
+ * {@link GigaScreenFrameConversionBenchmark}. The block cache is emptied
+ * before every frame so each conversion starts cold.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameConversionBenchmark {
+
+	@Param({"AtkinsonDitherStrategy", "BurkesDitherStrategy", "FloydSteinbergDitherStrategy", "JarvisJudiceNinkeDitherStrategy",
+			"LowErrorAtkinsonDitherStrategy", "NoDitherStrategy", "SierraFilterLightStrategy", "StuckiDitherStrategy",
+			"BayerTwoByOneOrderedDitherStrategy", "BayerTwoByTwoOrderedDitherStrategy", "OmegaOrderedDitherStrategy",
+			"BayerFourByFourDitherStrategy", "BayerEightByEightDitherStrategy", "MagicSquareDitherStrategy",
+			"NasikMagicSquareDitherStrategy", "CharacterDitherStrategy"})
+	public String dither;
+
+	@Param({"FullPaletteStrategy", "MonochromePaletteStrategy"})
+	public String colourMode;
+
+	@Param({"FavourHalfBrightAttributeStrategy", "FavourBrightAttributeStrategy", "FavourMostPopularAttributeStrategy",
+			"ForceHalfBrightAttributeStrategy", "ForceBrightAttributeStrategy", "ForceReducedHalfBrightAttributeStrategy"})
+	public String attributeMode;
+
+	@Param({"screen", "poster"})
+	public String size;
+
+	private ImageConverter converter;
+	private BufferedImage image;
+
+	@Setup
+	public void setup() {
+		OptionsObject oo = BenchmarkFixtures.resetOptions();
+		oo.setColourMode(BenchmarkFixtures.getByClassName(oo.getColourModes(), colourMode));
+		oo.setAttributeMode(BenchmarkFixtures.getByClassName(oo.getAttributeModes(), attributeMode));
+		DitherStrategy ditherStrategy = BenchmarkFixtures.getDither(dither);
+		oo.setSelectedDitherStrategy(ditherStrategy);
+		converter = ditherStrategy.createImageConverter();
+		image = BenchmarkFixtures.createImage(size);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearCache() {
+		BlockCache.clear();
+	}
+
+	@Benchmark
+	public ResultImage[] convert() {
+		return converter.convert(image);
+	}
+}
@@ -0,0 +1,90 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenConverterImpl;
+import uk.co.silentsoftware.core.converters.image.processors.ImageConverter;
+import uk.co.silentsoftware.core.helpers.BlockCache;
+
+/**
+ * Converts one frame in GigaScreen colour mode with every dither and
+ * GigaScreen attribute mode combination
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GigaScreenFrameConversionBenchmark {
+
+	@Param({"AtkinsonDitherStrategy", "BurkesDitherStrategy", "FloydSteinbergDitherStrategy", "JarvisJudiceNinkeDitherStrategy",
+			"LowErrorAtkinsonDitherStrategy", "NoDitherStrategy", "SierraFilterLightStrategy", "StuckiDitherStrategy",
+			"BayerTwoByOneOrderedDitherStrategy", "BayerTwoByTwoOrderedDitherStrategy", "OmegaOrderedDitherStrategy",
+			"BayerFourByFourDitherStrategy", "BayerEightByEightDitherStrategy", "MagicSquareDitherStrategy",
+			"NasikMagicSquareDitherStrategy", "CharacterDitherStrategy"})
+	public String dither;
+
+	@Param({"GigaScreenHalfBrightPaletteStrategy", "GigaScreenBrightPaletteStrategy", "GigaScreenMixedPaletteStrategy"})
+	public String attributeMode;
+
+	@Param({"screen", "poster"})
+	public String size;
+
+	private ImageConverter converter;
+	private BufferedImage image;
+
+	@Setup
+	public void setup() {
+		OptionsObject oo = BenchmarkFixtures.resetOptions();
+		oo.setColourMode(BenchmarkFixtures.getByClassName(oo.getColourModes(), GigaScreenPaletteStrategy.class.getSimpleName()));
+		oo.setGigaScreenAttributeStrategy(BenchmarkFixtures.getByClassName(oo.getGigaScreenAttributeStrategies(), attributeMode));
+		DitherStrategy ditherStrategy = BenchmarkFixtures.getDither(dither);
+		oo.setSelectedDitherStrategy(ditherStrategy);
+		converter = new GigaScreenConverterImpl(ditherStrategy.createImageConverter());
+		image = BenchmarkFixtures.createImage(size);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearCache() {
+		BlockCache.clear();
+	}
+
+	@Benchmark
+	public ResultImage[] convert() {
+		return converter.convert(image);
+	}
+}
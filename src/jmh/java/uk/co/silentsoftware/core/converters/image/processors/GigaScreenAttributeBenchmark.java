@@ -0,0 +1,76 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy;
+
+/**
+ * Scoring a GigaScreen attribute against one random 8x8 block, and
+ * choosing the best attribute of a whole palette for it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GigaScreenAttributeBenchmark {
+
+	private GigaScreenAttribute attribute;
+	private int[] block;
+	private ColourDistanceStrategy colourDistance;
+
+	@Setup
+	public void setup() {
+		BenchmarkFixtures.resetOptions();
+		attribute = new GigaScreenAttribute(SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[1], SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[6],
+				SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT[2], SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT[7]);
+		Random random = new Random(64);
+		block = new int[SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE*SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE];
+		for (int i=0; i<block.length; ++i) {
+			block[i] = 0xFF000000 | random.nextInt(0x1000000);
+		}
+		colourDistance = OptionsObject.getInstance().getColourDistanceMode();
+	}
+
+	@Benchmark
+	public double getScoreForAttributeBlock() {
+		return attribute.getScoreForAttributeBlock(block);
+	}
+
+	@Benchmark
+	public int getBestAttribute() {
+		return SpectrumDefaults.GIGASCREEN_MIXED_PALETTE.getBestAttribute(block, colourDistance);
+	}
+}
@@ -0,0 +1,84 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
+import uk.co.silentsoftware.core.converters.image.ResultImage;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenConverterImpl;
+import uk.co.silentsoftware.core.converters.image.processors.ImageConverter;
+
+/**
+ * SCR encoding of an already converted screen and wrapping the SCR as
+ * a tape block
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumExportBenchmark {
+
+	@Param({"FullPaletteStrategy", "GigaScreenPaletteStrategy"})
+	public String colourMode;
+
+	private final ScrConverter scrConverter = new ScrConverter();
+	private final TapeConverter tapeConverter = new TapeConverter();
+	private ImageConverter imageConverter;
+	private ResultImage[] converted;
+	private byte[] scr;
+
+	@Setup
+	public void setup() {
+		OptionsObject oo = BenchmarkFixtures.resetOptions();
+		ColourChoiceStrategy colourChoice = BenchmarkFixtures.getByClassName(oo.getColourModes(), colourMode);
+		oo.setColourMode(colourChoice);
+		imageConverter = BenchmarkFixtures.getDither("FloydSteinbergDitherStrategy").createImageConverter();
+		if (colourChoice instanceof GigaScreenPaletteStrategy) {
+			imageConverter = new GigaScreenConverterImpl(imageConverter);
+		}
+		converted = imageConverter.convert(BenchmarkFixtures.createImage("screen"));
+		scr = scrConverter.convert(converted, imageConverter);
+	}
+
+	@Benchmark
+	public byte[] convertScr() {
+		return scrConverter.convert(converted, imageConverter);
+	}
+
+	@Benchmark
+	public byte[] createTapPart() {
+		return tapeConverter.createTapPart(scr);
+	}
+}
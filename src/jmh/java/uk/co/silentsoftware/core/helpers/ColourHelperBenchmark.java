@@ -0,0 +1,94 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy;
+
+/**
+ * Closest colour search and every colour distance strategy over a fixed
+ * set of random pixels, reported per pixel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColourHelperBenchmark {
+
+	private static final int PIXELS = 1024;
+
+	@Param({"LuminanceColourDistance", "CompuphaseColourDistanceStrategy", "ClassicColourDistanceStrategy", "EuclideanColourDistance"})
+	public String distance;
+
+	private ColourDistanceStrategy colourDistance;
+	private int[] pixels;
+	private int[][] palette;
+
+	@Setup
+	public void setup() {
+		OptionsObject oo = BenchmarkFixtures.resetOptions();
+		colourDistance = BenchmarkFixtures.getByClassName(oo.getColourDistances(), distance);
+		oo.setColourDistanceStrategy(colourDistance);
+		Random random = new Random(PIXELS);
+		pixels = new int[PIXELS];
+		for (int i=0; i<PIXELS; ++i) {
+			pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+		}
+		palette = new int[SpectrumDefaults.SPECTRUM_COLOURS_ALL.length][];
+		for (int i=0; i<palette.length; ++i) {
+			palette[i] = ColourHelper.intToRgbComponents(SpectrumDefaults.SPECTRUM_COLOURS_ALL[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PIXELS)
+	public void getClosestColour(Blackhole blackhole) {
+		for (int pixel : pixels) {
+			blackhole.consume(ColourHelper.getClosestColour(pixel, SpectrumDefaults.SPECTRUM_COLOURS_ALL));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PIXELS)
+	public void getColourDistance(Blackhole blackhole) {
+		for (int pixel : pixels) {
+			int[] paletteComps = palette[(pixel & 0xFF) % palette.length];
+			blackhole.consume(colourDistance.getColourDistance((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF, paletteComps));
+		}
+	}
+}
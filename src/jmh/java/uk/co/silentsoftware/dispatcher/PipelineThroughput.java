@@ -0,0 +1,159 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.converters.image.ResultImage;
+import uk.co.silentsoftware.core.converters.spectrum.ScrConverter;
+import uk.co.silentsoftware.core.converters.spectrum.TapeConverter;
+import uk.co.silentsoftware.core.converters.video.GifConverter;
+import uk.co.silentsoftware.core.converters.video.SyntheticVideoImportEngine;
+import uk.co.silentsoftware.core.metrics.Histogram;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.Stage;
+
+/**
+ * Measures the throughput of the whole video pipeline on a synthetic video,
+ * from frame generation through conversion to the tape and animated gif.
+ * The video is relayed through the work manager just as the UI's video 
+ * conversion is, only the ordered output differs as the work outputter 
+ * reports to the Swing UI: here each frame is added to a tape and gif in 
+ * memory. Reports the frames per second, the latency of each frame from 
+ * leaving the queue to being output, the peak heap and the stage metrics.
+ *
+ * Usage: PipelineThroughput [width height fps seconds [seed]]
+ */
+public final class PipelineThroughput {
+
+	private static final int DEFAULT_WIDTH = 320;
+	private static final int DEFAULT_HEIGHT = 240;
+	private static final double DEFAULT_FPS = 25;
+	private static final double DEFAULT_SECONDS = 20;
+	private static final long DEFAULT_SEED = 1;
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private PipelineThroughput(){}
+
+	public static void main(String[] args) throws IOException {
+		SyntheticVideoImportEngine engine = args.length >= 4
+				? new SyntheticVideoImportEngine(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Double.parseDouble(args[2]),
+						Double.parseDouble(args[3]), args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED)
+				: new SyntheticVideoImportEngine(DEFAULT_WIDTH, DEFAULT_HEIGHT, DEFAULT_FPS, DEFAULT_SECONDS, DEFAULT_SEED);
+		OptionsObject oo = OptionsObject.getInstance();
+		oo.setExportTape(true);
+		oo.setExportAnimGif(true);
+		System.out.println(run(engine));
+	}
+
+	/**
+	 * Runs the synthetic video through the pipeline with the current options
+	 *
+	 * @param engine the synthetic video
+	 * @return the report
+	 * @throws IOException if the gif cannot be created
+	 * @throws IllegalStateException if the video could not be generated or a frame could not be converted
+	 */
+	static String run(SyntheticVideoImportEngine engine) throws IOException {
+		OptionsObject oo = OptionsObject.getInstance();
+		TapeConverter tapeConverter = new TapeConverter();
+		ScrConverter scrConverter = new ScrConverter();
+		GifConverter gifConverter = new GifConverter();
+		gifConverter.createSequence();
+		List<byte[]> tapeParts = new ArrayList<>();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		WorkManager workManager = new WorkManager();
+
+		resetPeakHeap();
+		Metrics.startRun();
+		try {
+			workManager.relayVideo(engine, new File(engine.toString()), workContainer -> {
+				Optional<ResultImage> finalImage = ResultImage.getFinalImage(workContainer.getResultImage());
+				if (finalImage.isPresent()) {
+					tapeParts.add(tapeConverter.createTapPart(scrConverter.getScr1(workContainer.getScrData())));
+					scrConverter.getScr2(workContainer.getScrData()).ifPresent(scr2 -> tapeParts.add(tapeConverter.createTapPart(scr2)));
+					gifConverter.addFrame(finalImage.get().getImage());
+				}
+			}, t -> failure.compareAndSet(null, t));
+		} finally {
+			workManager.shutdown();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("Pipeline failed on "+engine, failure.get());
+		}
+		long start = System.nanoTime();
+		byte[] tap = tapeConverter.createTap(tapeParts);
+		byte[] gif = gifConverter.createGif();
+		long endStepNanos = System.nanoTime()-start;
+		double seconds = Metrics.getElapsedSeconds();
+		long frames = Metrics.getFramesOutput();
+		Histogram frameLatency = Metrics.getStageLatency(Stage.Frame);
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "Video       %s, %d source frames%n", engine, engine.getFrameCount()));
+		report.append(String.format(Locale.ROOT, "Options     %s, %s, %s%n", oo.getSelectedDitherStrategy(), oo.getColourMode(), oo.getAttributeMode()));
+		report.append(String.format(Locale.ROOT, "Frames      %d output, %d duplicates in %.2fs, %.2f frames/s%n", frames,
+				Metrics.getDuplicateFramesSkipped(), seconds, frames/seconds));
+		report.append(String.format(Locale.ROOT, "Latency     p50 %.1fms, p95 %.1fms, p99 %.1fms, max %.1fms%n", millis(frameLatency.getPercentile(50)),
+				millis(frameLatency.getPercentile(95)), millis(frameLatency.getPercentile(99)), millis(frameLatency.getMax())));
+		report.append(String.format(Locale.ROOT, "End step    tap %d bytes, gif %d bytes in %.1fms%n", tap.length, gif == null ? 0 : gif.length, millis(endStepNanos)));
+		report.append(String.format(Locale.ROOT, "Peak heap   %.1fMB%n", getPeakHeap()/(1024d*1024d)));
+		report.append(Metrics.getSummary());
+		return report.toString();
+	}
+
+	private static double millis(long nanos) {
+		return nanos/1000000d;
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Gets the peak heap since the last reset as the sum of each heap
+	 * pool's peak, which may overstate it slightly as the pools need not
+	 * have peaked at the same time
+	 *
+	 * @return the peak heap in bytes
+	 */
+	private static long getPeakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak;
+	}
+}
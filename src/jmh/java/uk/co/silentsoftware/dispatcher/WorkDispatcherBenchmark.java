@@ -0,0 +1,83 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.silentsoftware.benchmark.BenchmarkFixtures;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.helpers.BlockCache;
+
+/**
+ * End to end conversion of a frame through the work dispatcher, from the
+ * source image to the converted image and SCR, as each video frame or
+ * image file is converted
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkDispatcherBenchmark {
+
+	@Param({"FloydSteinbergDitherStrategy", "BayerEightByEightDitherStrategy", "CharacterDitherStrategy"})
+	public String dither;
+
+	@Param({"FullPaletteStrategy", "GigaScreenPaletteStrategy", "MonochromePaletteStrategy"})
+	public String colourMode;
+
+	@Param({"screen", "video"})
+	public String source;
+
+	private final WorkDispatcher workDispatcher = new WorkDispatcher();
+	private BufferedImage image;
+
+	@Setup
+	public void setup() {
+		OptionsObject oo = BenchmarkFixtures.resetOptions();
+		oo.setColourMode(BenchmarkFixtures.getByClassName(oo.getColourModes(), colourMode));
+		oo.setSelectedDitherStrategy(BenchmarkFixtures.getDither(dither));
+		oo.setExportScreen(true);
+		image = "video".equals(source) ? BenchmarkFixtures.createImage(BenchmarkFixtures.VIDEO_WIDTH, BenchmarkFixtures.VIDEO_HEIGHT)
+				: BenchmarkFixtures.createImage("screen");
+	}
+
+	@Setup(Level.Invocation)
+	public void clearCache() {
+		BlockCache.clear();
+	}
+
+	@Benchmark
+	public Object submitFrame() {
+		return workDispatcher.submitFrame(image, "benchmark");
+	}
+}
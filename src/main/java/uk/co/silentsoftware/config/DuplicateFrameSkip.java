@@ -0,0 +1,46 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.config;
+
+/**
+ * Enum storing how alike a sampled video frame must be to the last
+ * converted frame to be output as a repeat of it instead of converted.
+ * The threshold is the largest difference allowed in any colour channel
+ * of the frames' downscaled signatures, except Exact which compares the
+ * full size frames.
+ */
+public enum DuplicateFrameSkip {
+	Off(-1), Exact(0), Near(2), Similar(8);
+
+	private final int threshold;
+
+	DuplicateFrameSkip(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @return the signature difference threshold, negative if frames are never skipped
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public String toString() {
+		return LanguageSupport.getCaption("pp_duplicates_"+this.name().toLowerCase());
+	}
+}
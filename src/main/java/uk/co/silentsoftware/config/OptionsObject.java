@@ -36,6 +36,7 @@ import uk.co.silentsoftware.core.helpers.colourdistance.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
@@ -72,6 +73,12 @@ public class OptionsObject {
 	@PreferencesField
 	private volatile double videoFramesPerSecond = 10;
 
+	/**
+	 * Which repeated video frames are output again rather than converted
+	 */
+	@PreferencesField
+	private volatile String duplicateFrameSkip = DuplicateFrameSkip.Off.name();
+
 	/**
 	 * The number of milliseconds delay for each gif frame
 	 */
@@ -186,6 +193,14 @@ public class OptionsObject {
 	@PreferencesField
 	public volatile int scaling = 0;
 
+	/**
+	 * The filter used when scaling images to the conversion size. Nearest
+	 * is the default since it gives the same output as earlier versions,
+	 * the smoother filters are opt in.
+	 */
+	@PreferencesField
+	private volatile String resamplingFilter = ResamplingFilter.Nearest.name();
+
 	public static final GigaScreenPaletteStrategy GIGASCREEN_PALETTE_STRATEGY = new GigaScreenPaletteStrategy();
 
 	/**
@@ -306,6 +321,36 @@ public class OptionsObject {
 	@PreferencesField
 	private volatile String imageFormat = imageFormats[0];
 
+	/**
+	 * PNG export deflate compression levels, fastest to smallest
+	 */
+	private final Integer[] pngCompressionLevels = new Integer[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+
+	/**
+	 * Currently selected PNG export deflate compression level
+	 */
+	@PreferencesField
+	private volatile int pngCompressionLevel = 6;
+
+	/**
+	 * Image file decode thread counts, up to one per processor
+	 */
+	private final Integer[] decodeThreadCounts = IntStream.rangeClosed(1, Math.max(2, Runtime.getRuntime().availableProcessors())).boxed().toArray(Integer[]::new);
+
+	/**
+	 * Number of threads decoding image files ahead of conversion
+	 */
+	@PreferencesField
+	private volatile int decodeThreads = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+
+	/**
+	 * How video frames are sampled on import. Decoding every frame keeps the
+	 * output frame timing of earlier versions, seeking is opt in as it
+	 * needs a video that seeks accurately.
+	 */
+	@PreferencesField
+	private volatile String videoSamplingMode = VideoSamplingMode.DecodeAll.name();
+
 	/**
 	 * Image pre-process contrast setting
 	 */
@@ -507,6 +552,42 @@ public class OptionsObject {
 		return imageFormats;
 	}
 
+	public int getPngCompressionLevel() {
+		return pngCompressionLevel;
+	}
+
+	public void setPngCompressionLevel(int pngCompressionLevel) {
+		this.pngCompressionLevel = pngCompressionLevel;
+	}
+
+	public Integer[] getPngCompressionLevels() {
+		return pngCompressionLevels;
+	}
+
+	public int getDecodeThreads() {
+		return decodeThreads;
+	}
+
+	public void setDecodeThreads(int decodeThreads) {
+		this.decodeThreads = decodeThreads;
+	}
+
+	public VideoSamplingMode[] getVideoSamplingModes() {
+		return VideoSamplingMode.values();
+	}
+
+	public VideoSamplingMode getVideoSamplingMode() {
+		return VideoSamplingMode.valueOf(videoSamplingMode);
+	}
+
+	public void setVideoSamplingMode(VideoSamplingMode videoSamplingMode) {
+		this.videoSamplingMode = videoSamplingMode.name();
+	}
+
+	public Integer[] getDecodeThreadCounts() {
+		return decodeThreadCounts;
+	}
+
 	public boolean getFpsCounter() {
 		return fpsCounter;
 	}
@@ -691,6 +772,18 @@ public class OptionsObject {
 		this.constrainedErrorDiffusion = constrainedErrorDiffusion;
 	}
 
+	public DuplicateFrameSkip[] getDuplicateFrameSkips() {
+		return DuplicateFrameSkip.values();
+	}
+
+	public DuplicateFrameSkip getDuplicateFrameSkip() {
+		return DuplicateFrameSkip.valueOf(duplicateFrameSkip);
+	}
+
+	public void setDuplicateFrameSkip(DuplicateFrameSkip duplicateFrameSkip) {
+		this.duplicateFrameSkip = duplicateFrameSkip.name();
+	}
+
 	public VideoImportEngine getVideoImportEngine() {
 		return videoImportEngines.get(videoImportEngine);
 	}
@@ -723,6 +816,18 @@ public class OptionsObject {
 		this.gigaScreenAttributeMode = gigaScreenAttributeModes.indexOf(gigaScreenAttributeStrategy);
 	}
 
+	public ResamplingFilter[] getResamplingFilters() {
+		return ResamplingFilter.values();
+	}
+
+	public ResamplingFilter getResamplingFilter() {
+		return ResamplingFilter.valueOf(resamplingFilter);
+	}
+
+	public void setResamplingFilter(ResamplingFilter resamplingFilter) {
+		this.resamplingFilter = resamplingFilter.name();
+	}
+
 	public GigaScreenPaletteOrder[] getGigaScreenPaletteOrders() {
 		return GigaScreenPaletteOrder.values();
 	}
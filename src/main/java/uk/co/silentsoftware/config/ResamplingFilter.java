@@ -0,0 +1,29 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.config;
+
+/**
+ * Enum storing the filters available when resampling images
+ * to the conversion size, from fastest to highest quality.
+ */
+public enum ResamplingFilter {
+	Nearest, AreaAverage, Bilinear, Lanczos3;
+	@Override
+	public String toString() {
+		return LanguageSupport.getCaption("pp_filter_"+this.name().toLowerCase());
+	}
+}
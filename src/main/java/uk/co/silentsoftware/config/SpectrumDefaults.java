@@ -20,6 +20,7 @@ import java.awt.Color;
 import java.util.*;
 
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
 
 /**
  * ZX Spectrum constants such as palette, its platform palette indexes
@@ -265,6 +266,11 @@ public class SpectrumDefaults {
 	static {
 		GIGASCREEN_HALF_BRIGHT_ATTRIBUTES = SpectrumDefaults.generateGigascreenAttributes(SPECTRUM_COLOURS_HALF_BRIGHT, SPECTRUM_COLOURS_HALF_BRIGHT);
 	}
+
+	/**
+	 * The half bright GigaScreen attributes flattened for fast block scoring
+	 */
+	public static final GigaScreenPalette GIGASCREEN_HALF_BRIGHT_PALETTE = new GigaScreenPalette(GIGASCREEN_HALF_BRIGHT_ATTRIBUTES);
 	
 	/**
 	 * The GigaScreen combinations of 4 base Spectrum colours generated by 
@@ -274,6 +280,11 @@ public class SpectrumDefaults {
 	static {
 		GIGASCREEN_MIXED_ATTRIBUTES = SpectrumDefaults.generateGigascreenAttributes(SPECTRUM_COLOURS_HALF_BRIGHT, SPECTRUM_COLOURS_BRIGHT);
 	}
+
+	/**
+	 * The mixed GigaScreen attributes flattened for fast block scoring
+	 */
+	public static final GigaScreenPalette GIGASCREEN_MIXED_PALETTE = new GigaScreenPalette(GIGASCREEN_MIXED_ATTRIBUTES);
 	
 	/**
 	 * The GigaScreen combinations of 4 base Spectrum colours generated by 
@@ -283,6 +294,11 @@ public class SpectrumDefaults {
 	static {	
 		GIGASCREEN_BRIGHT_ATTRIBUTES = SpectrumDefaults.generateGigascreenAttributes(SPECTRUM_COLOURS_BRIGHT, SPECTRUM_COLOURS_BRIGHT);
 	}
+
+	/**
+	 * The bright GigaScreen attributes flattened for fast block scoring
+	 */
+	public static final GigaScreenPalette GIGASCREEN_BRIGHT_PALETTE = new GigaScreenPalette(GIGASCREEN_BRIGHT_ATTRIBUTES);
 	
 	/**
 	 * Mappings from RGB to ZX Spectrum palette
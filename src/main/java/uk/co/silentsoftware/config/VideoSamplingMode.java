@@ -0,0 +1,31 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.config;
+
+/**
+ * Enum storing how video frames are sampled on import. Decoding every
+ * frame never relies on the video's keyframe index, seeking skips straight
+ * to the keyframe before each sample when the sample rate is low and is
+ * much faster but needs a video that seeks accurately.
+ */
+public enum VideoSamplingMode {
+	DecodeAll, Seek;
+	@Override
+	public String toString() {
+		return LanguageSupport.getCaption("adv_video_sampling_"+this.name().toLowerCase());
+	}
+}
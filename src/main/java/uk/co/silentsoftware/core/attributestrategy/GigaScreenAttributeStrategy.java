@@ -17,6 +17,7 @@
 package uk.co.silentsoftware.core.attributestrategy;
 
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
 
 /**
  * Represents the screen-attribute distribution strategy by providing a 
@@ -36,4 +37,12 @@ public interface GigaScreenAttributeStrategy {
 	 * @return the gigascreenattribute's palette
 	 */
 	GigaScreenAttribute[] getPalette();
+
+	/**
+	 * Retrieves the same attributes as getPalette flattened into
+	 * primitive tables for scoring and conversion
+	 * 
+	 * @return the gigascreen palette
+	 */
+	GigaScreenPalette getGigaScreenPalette();
 }
@@ -19,6 +19,7 @@ package uk.co.silentsoftware.core.attributestrategy;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
 
 /**
  * Palette derived from both screens having a half bright attribute.
@@ -30,6 +31,11 @@ public class GigaScreenHalfBrightPaletteStrategy implements GigaScreenAttributeS
 		return SpectrumDefaults.GIGASCREEN_HALF_BRIGHT_ATTRIBUTES;
 	}
 
+	@Override
+	public GigaScreenPalette getGigaScreenPalette() {
+		return SpectrumDefaults.GIGASCREEN_HALF_BRIGHT_PALETTE;
+	}
+
 	@Override
 	public String toString() {
 		return getCaption("attr_giga_half_bright") ;
@@ -19,6 +19,7 @@ package uk.co.silentsoftware.core.attributestrategy;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
 
 /**
  * Palette derived from one screen having a bright attribute and the other half bright
@@ -30,6 +31,11 @@ public class GigaScreenMixedPaletteStrategy implements GigaScreenAttributeStrate
 		return SpectrumDefaults.GIGASCREEN_MIXED_ATTRIBUTES;
 	}
 
+	@Override
+	public GigaScreenPalette getGigaScreenPalette() {
+		return SpectrumDefaults.GIGASCREEN_MIXED_PALETTE;
+	}
+
 	@Override
 	public String toString() {
 		return getCaption("attr_giga_mixed") ;
@@ -16,6 +16,8 @@
  */
 package uk.co.silentsoftware.core.colourstrategy;
 
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
+
 import java.awt.image.BufferedImage;
 
 /**
@@ -41,6 +43,15 @@ public interface ColourChoiceStrategy {
 
 	int[] getPalette();
 
-	BufferedImage colourAttributes(BufferedImage image);
+	/**
+	 * Reduces each attribute block of the image to two colours. Strategies
+	 * that produce real Spectrum attributes record them in the given screen
+	 * and render the image from it.
+	 *
+	 * @param image the image to colour
+	 * @param screen the screen to populate, may be null if not required
+	 * @return the coloured image
+	 */
+	BufferedImage colourAttributes(BufferedImage image, AttributeScreen screen);
 
 }
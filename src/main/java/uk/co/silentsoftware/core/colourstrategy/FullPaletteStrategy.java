@@ -19,6 +19,7 @@ package uk.co.silentsoftware.core.colourstrategy;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
 import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
 
 import java.awt.image.BufferedImage;
@@ -53,7 +54,7 @@ public class FullPaletteStrategy implements ColourChoiceStrategy {
 	}
 
 	@Override
-	public BufferedImage colourAttributes(BufferedImage image) {
-		return ColourHelper.colourAttributes(image, this);
+	public BufferedImage colourAttributes(BufferedImage image, AttributeScreen screen) {
+		return ColourHelper.colourAttributes(image, this, screen);
 	}
 }
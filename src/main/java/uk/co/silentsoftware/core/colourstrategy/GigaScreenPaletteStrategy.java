@@ -16,17 +16,15 @@
  */
 package uk.co.silentsoftware.core.colourstrategy;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.config.SpectrumDefaults;
-import uk.co.silentsoftware.core.attributestrategy.GigaScreenAttributeStrategy;
-import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
+import uk.co.silentsoftware.core.helpers.BlockCache;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy;
 
 import java.awt.image.BufferedImage;
-import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
@@ -36,10 +34,6 @@ import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
  */
 public class GigaScreenPaletteStrategy implements ColourChoiceStrategy {
 
-	private static final int CACHE_TIME_SECONDS = 10;
-
-	private static final Cache<String, GigaScreenAttribute[][]> CACHE = Caffeine.newBuilder().expireAfterAccess(CACHE_TIME_SECONDS, TimeUnit.SECONDS).build();
-
 	public String toString() {
 		return getCaption("colour_mode_gigascreen");
 	}
@@ -63,21 +57,25 @@ public class GigaScreenPaletteStrategy implements ColourChoiceStrategy {
 		return SpectrumDefaults.GIGASCREEN_COLOURS_ALL;
 	}
 
+	/**
+	 * GigaScreen colours span two Spectrum screens so there is no single
+	 * attribute screen to populate - the screen is ignored and populated
+	 * by the GigaScreenConverterImpl instead.
+	 */
 	@Override
-	public BufferedImage colourAttributes(BufferedImage output) {
+	public BufferedImage colourAttributes(BufferedImage output, AttributeScreen screen) {
 		// Algorithm replaces each pixel with the colour from the closest matching
 		// 4 colour GigaScreen attribute block.
-		GigaScreenAttribute[] palette = OptionsObject.getInstance().getGigaScreenAttributeStrategy().getPalette();
-		GigaScreenAttribute[][] quad = getGigaScreenAttributes(output, palette);
-		GigaScreenAttribute currentGigaScreenAttribute = null;
+		GigaScreenPalette palette = OptionsObject.getInstance().getGigaScreenAttributeStrategy().getGigaScreenPalette();
+		int[][] quad = getGigaScreenAttributes(output, palette);
+		int[] row = new int[output.getWidth()];
 		for (int y = 0; y < output.getHeight(); ++y) {
-			for (int x = 0; x < output.getWidth(); ++x) {
-				if (x % ATTRIBUTE_BLOCK_SIZE == 0) {
-					currentGigaScreenAttribute = quad[x / ATTRIBUTE_BLOCK_SIZE][y / ATTRIBUTE_BLOCK_SIZE];
-				}
-				GigaScreenAttribute.GigaScreenColour c = ColourHelper.getClosestGigaScreenColour(output.getRGB(x, y), currentGigaScreenAttribute);
-				output.setRGB(x, y, c.getGigascreenColour());
+			output.getRGB(0, y, row.length, 1, row, 0, row.length);
+			for (int x = 0; x < row.length; ++x) {
+				int attribute = quad[x / ATTRIBUTE_BLOCK_SIZE][y / ATTRIBUTE_BLOCK_SIZE];
+				row[x] = palette.getColour(attribute, ColourHelper.getClosestGigaScreenColour(row[x], palette, attribute));
 			}
+			output.setRGB(0, y, row.length, 1, row, 0, row.length);
 		}
 		return output;
 
@@ -86,38 +84,34 @@ public class GigaScreenPaletteStrategy implements ColourChoiceStrategy {
 	/**
 	 * Creates a map of the 32x24 Spectrum attribute set for two screens.
 	 * For each attribute block it finds the closest (best fitting) gigascreen
-	 * palette of 4 colours.
+	 * palette of 4 colours. The chosen attribute is memoised in the block
+	 * cache by the block's pixels so identical blocks, whether in the same
+	 * image, a repeated image or a near static video, skip the search.
 	 *
 	 * @param original the original image
-	 * @return the giga screen attribute array
+	 * @param palette the GigaScreen attributes to choose from
+	 * @return the chosen attribute in the palette for each block, by column then row
 	 */
-	public GigaScreenAttribute[][] getGigaScreenAttributes(BufferedImage original, GigaScreenAttribute[] palette) {
-		String key = getKey(original, palette, OptionsObject.getInstance().getGigaScreenAttributeStrategy());
-		GigaScreenAttribute[][] entries = CACHE.getIfPresent(key);
-		if (entries != null) {
-			return entries;
-		}
-		entries = new GigaScreenAttribute[original.getWidth() / ATTRIBUTE_BLOCK_SIZE][original.getHeight() / ATTRIBUTE_BLOCK_SIZE];
+	public int[][] getGigaScreenAttributes(BufferedImage original, GigaScreenPalette palette) {
+		ColourDistanceStrategy colourDistance = OptionsObject.getInstance().getColourDistanceMode();
+		long fingerprint = BlockCache.fingerprint(GigaScreenPaletteStrategy.class, palette, colourDistance.getClass());
+		int[][] entries = new int[original.getWidth() / ATTRIBUTE_BLOCK_SIZE][original.getHeight() / ATTRIBUTE_BLOCK_SIZE];
+		int[] outRgb = new int[ATTRIBUTE_BLOCK_SIZE * ATTRIBUTE_BLOCK_SIZE];
 		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= original.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= original.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int[] outRgb = original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				double lowest = Double.MAX_VALUE;
-				GigaScreenAttribute chosen = palette[0];
-				for (GigaScreenAttribute combo : palette) {
-					double score = combo.getScoreForAttributeBlock(outRgb);
-					if (score < lowest) {
-						lowest = score;
-						chosen = combo;
-					}
+			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= original.getWidth(); x += ATTRIBUTE_BLOCK_SIZE) {
+				original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+				BlockCache.Key key = BlockCache.key(fingerprint, outRgb);
+				int[] cached = BlockCache.get(key);
+				int attribute;
+				if (cached != null) {
+					attribute = cached[0];
+				} else {
+					attribute = palette.getBestAttribute(outRgb, colourDistance);
+					BlockCache.put(key, new int[]{attribute});
 				}
-				entries[x / ATTRIBUTE_BLOCK_SIZE][y / ATTRIBUTE_BLOCK_SIZE] = chosen;
+				entries[x / ATTRIBUTE_BLOCK_SIZE][y / ATTRIBUTE_BLOCK_SIZE] = attribute;
 			}
 		}
-		CACHE.put(key, entries);
 		return entries;
 	}
-
-	private String getKey(BufferedImage original, GigaScreenAttribute[] palette, GigaScreenAttributeStrategy attributeStrategy) {
-		return original.hashCode()+"-"+ Arrays.hashCode(palette)+"-"+attributeStrategy.hashCode();
-	}
 }
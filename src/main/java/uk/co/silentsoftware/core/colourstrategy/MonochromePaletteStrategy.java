@@ -17,6 +17,7 @@
 package uk.co.silentsoftware.core.colourstrategy;
 
 import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
 
 import java.awt.image.BufferedImage;
@@ -88,7 +89,7 @@ public class MonochromePaletteStrategy implements ColourChoiceStrategy {
 	}
 
 	@Override
-	public BufferedImage colourAttributes(BufferedImage image) {
-		return ColourHelper.colourAttributes(image, this);
+	public BufferedImage colourAttributes(BufferedImage image, AttributeScreen screen) {
+		return ColourHelper.colourAttributes(image, this, screen);
 	}
 }
@@ -16,34 +16,92 @@
  */
 package uk.co.silentsoftware.core.converters.image;
 
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
+
 import java.awt.image.BufferedImage;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Processed output buffered image result with the type of image, such as
  * supporting (e.g. gigascreen image 1 of 2) or final image (e.g. combined
- * gigascreen image).
+ * gigascreen image). Where the image is a true Spectrum screen the
+ * converter also attaches the attribute screen it was rendered from.
+ * Converters that hold their output in another form may instead supply
+ * a renderer, in which case the image is only created the first time
+ * it is asked for.
  */
 public class ResultImage {
 
 	private volatile ResultImageType resultImageType;
 	private volatile BufferedImage image;
+	private volatile AttributeScreen attributeScreen;
+	private volatile Supplier<BufferedImage> renderer;
 
 	public ResultImage(ResultImageType resultImageType, BufferedImage image) {
 		this.resultImageType = resultImageType;
 		this.image = image;
 	}
 
+	public ResultImage(ResultImageType resultImageType, BufferedImage image, AttributeScreen attributeScreen) {
+		this(resultImageType, image);
+		this.attributeScreen = attributeScreen;
+	}
+
+	/**
+	 * Creates a result whose image is rendered on first use
+	 *
+	 * @param resultImageType the type of image
+	 * @param renderer creates the image, called at most once
+	 * @param attributeScreen the attribute screen, or null if none
+	 */
+	public ResultImage(ResultImageType resultImageType, Supplier<BufferedImage> renderer, AttributeScreen attributeScreen) {
+		this.resultImageType = resultImageType;
+		this.renderer = renderer;
+		this.attributeScreen = attributeScreen;
+	}
+
 	public ResultImageType getResultImageType() {
 		return resultImageType;
 	}
 
 	public BufferedImage getImage() {
-		return image;
+		BufferedImage result = image;
+		if (result == null && renderer != null) {
+			synchronized (this) {
+				result = image;
+				if (result == null && renderer != null) {
+					result = renderer.get();
+					image = result;
+					renderer = null;
+				}
+			}
+		}
+		return result;
 	}
 
 	public void setImage(BufferedImage image) {
 		this.image = image;
+		this.renderer = null;
+	}
+
+	/**
+	 * Whether the image exists or can be rendered
+	 *
+	 * @return true if there is an image
+	 */
+	public boolean hasImage() {
+		return image != null || renderer != null;
+	}
+
+	/**
+	 * The native Spectrum screen data for this image, if the converter
+	 * produced it (e.g. not for the combined GigaScreen image)
+	 *
+	 * @return the attribute screen, if it exists
+	 */
+	public Optional<AttributeScreen> getAttributeScreen() {
+		return Optional.ofNullable(attributeScreen);
 	}
 
 	public enum ResultImageType {
@@ -59,7 +117,7 @@ public class ResultImage {
 	public static Optional<ResultImage> getFinalImage(ResultImage[] images) {
 		try {
 			for (ResultImage ri : images) {
-				if (ResultImageType.FINAL_IMAGE == ri.getResultImageType() && ri.image != null) {
+				if (ResultImageType.FINAL_IMAGE == ri.getResultImageType() && ri.hasImage()) {
 					return Optional.of(ri);
 				}
 			}
@@ -16,57 +16,30 @@
  */
 package uk.co.silentsoftware.core.converters.image.processors;
 
+import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
 import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.StuckiDitherStrategy;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 
 import java.awt.image.BufferedImage;
-import java.beans.XMLDecoder;
-import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.zip.GZIPInputStream;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+import static uk.co.silentsoftware.config.SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT;
 
 /**
  * Converts images to the ZX spectrum character set,
  * requires that the image be in monochrome and
  * dithered by another processor first (hardcoded Stucki).
  */
-@SuppressWarnings("unchecked")
 public class CharacterConverterImpl implements ImageConverter {
 
-	/**
-	 * The UTF-8 character to 8x8 pixel map, map. This is a java object representing
-	 * the position of b/w pixels in 32bit colour space for each character in the Spectrum font set.
-	 * Each character's data is stored in the map keyed against the actual UTF-8 character. 
-	 * Note that the UTF-8 characters only partially mapped to the Spectrum's full charset,
-	 * the block graphics (etc) are omitted since we need to be able to output this
-	 * map as actual text later,
-	 */
-	public static Map<String, int[]> charSet = null;
-	static {
-		XMLDecoder d = null;
-		try {
-			InputStream inputStream = CharacterConverterImpl.class.getResourceAsStream("/characters.xml.gz");
-			d = new XMLDecoder(new GZIPInputStream(inputStream));
-			charSet = (Map<String, int[]>) d.readObject();
-		} catch (Exception e) {
-			// If this fails exceptions will be thrown by the thread which are caught
-		} finally {
-			if (d != null) {
-				d.close();
-			}
-		}
-	}
-
 	private boolean drawStrategyLabel = false;
 
 	/**
@@ -91,25 +64,39 @@ public class CharacterConverterImpl implements ImageConverter {
 		// Dither the image beforehand to improve monochrome conversion
 		ResultImage[] resultImages = preDither.convert(original);
 		BufferedImage output = null;
+		AttributeScreen screen = null;
 		for (ResultImage ri : resultImages) {
 			if (ResultImageType.FINAL_IMAGE == ri.getResultImageType()) {
 				output = ri.getImage();
+				screen = ri.getAttributeScreen().orElse(null);
 				break;
 			}
-		}	
+		}
+		if (screen == null) {
+			screen = new AttributeScreen(output.getWidth(), output.getHeight());
+		}
+		CharacterSet characterSet = CharacterSet.getSpectrumCharacterSet();
+		OptionsObject oo = OptionsObject.getInstance();
+		int ink = SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()];
+		int paper = SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()];
+		int[] outRgb = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+		StageEvent stage = StageEvent.start(Stage.Dither);
+		
 		// Replace attribute block with equivalent character image
 		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
 			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = output.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				outRgb = findBestCharacterMatch(outRgb);
-				output.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+				output.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+				long glyph = findBestCharacterMatch(characterSet, CharacterSet.toMask(outRgb, paper));
+				screen.setBlock(x / ATTRIBUTE_BLOCK_SIZE, y / ATTRIBUTE_BLOCK_SIZE, CharacterSet.toBlock(glyph, ink, paper, outRgb));
 			}
 		}
+		screen.render(output);
+		stage.stop();
 		// Print the name of the preview strategy
 		if (drawStrategyLabel) {
 			PreviewLabeller.drawPreviewStrategyWithName(output, getCaption("character_dither"));
 		}
-		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
+		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output, screen)};
 	}
 
 	@Override
@@ -123,38 +110,14 @@ public class CharacterConverterImpl implements ImageConverter {
 	}
 
 	/**
-	 * Iterates through the character-pixel map to find a character
-	 * that has the most similarly positioned number of pixels which
-	 * it accumulates as a score. Note that the character-pixel map
-	 * is black-white based and we need to map to the monochrome
-	 * colours in use during counting.
+	 * Finds the character that has the most similarly positioned 
+	 * pixels to the block, i.e. the most matching bits.
 	 * 
-	 * @param sample the attribute block sample
-	 * @return the character's image as an attribute block
+	 * @param characterSet the characters to match against
+	 * @param sample the attribute block sample as a mask of its paper pixels
+	 * @return the character's glyph mask
 	 */
-	private int[] findBestCharacterMatch(int[] sample) {
-		Map<String, Integer> stats = new HashMap<>();
-		Set<String> keys = charSet.keySet();
-		for (String key : keys) {
-			int score = 0;
-			int[] character = charSet.get(key);
-			for (int i = 0; i < character.length; ++i) {
-				int monochromeMappedColour = ColourHelper.getMonochromeFromBlackAndWhite(character[i]);
-				if (monochromeMappedColour == sample[i]) {
-					score++;
-				}
-			}
-			stats.put(key, score);
-		}
-		int bestScore = Integer.MIN_VALUE;
-		String chosenKey = null;
-		for (String key : keys) {
-			int score = stats.get(key);
-			if (score > bestScore) {
-				bestScore = score;
-				chosenKey = key;
-			}
-		}
-		return ColourHelper.getMonochromeFromBlackAndWhite(charSet.get(chosenKey));
+	private long findBestCharacterMatch(CharacterSet characterSet, long sample) {
+		return characterSet.getMask(characterSet.findBestMatch(sample));
 	}
 }
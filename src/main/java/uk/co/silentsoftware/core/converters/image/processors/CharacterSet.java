@@ -0,0 +1,251 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Color;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+
+/**
+ * The Spectrum character set as bit packed 8x8 glyphs for fast matching.
+ * Each glyph (and each image block being matched) is a 64 bit mask where
+ * the top bit is the top left pixel and a set bit is a paper (white) pixel,
+ * so the number of matching pixels is simply the bit count of the XNOR.
+ * 
+ * The Spectrum character set is loaded lazily from a compact binary
+ * resource generated from characters.xml.gz by the CharacterSetConverter
+ * build tool (src/tools).
+ * The format (big endian) is the magic "ZXCS", a short version, an int 
+ * glyph count then for each glyph an int UTF-8 code point and a long mask.
+ */
+public final class CharacterSet {
+
+	private static final Logger log = LoggerFactory.getLogger(CharacterSet.class);
+
+	/**
+	 * Classpath location of the binary Spectrum character set
+	 */
+	static final String RESOURCE = "/characters.bin";
+
+	/**
+	 * The file identifier, "ZXCS"
+	 */
+	private static final int MAGIC = 0x5A584353;
+
+	private static final short VERSION = 1;
+
+	private static final int BLOCK_PIXELS = ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE;
+
+	/**
+	 * The lazily loaded Spectrum character set
+	 */
+	private static volatile CharacterSet spectrumCharacterSet;
+
+	private final String[] characters;
+	private final long[] masks;
+
+	/**
+	 * Creates a character set from the given characters and their glyphs
+	 *
+	 * @param characters the UTF-8 characters
+	 * @param masks the glyph masks for each character
+	 */
+	CharacterSet(String[] characters, long[] masks) {
+		if (characters.length != masks.length || characters.length == 0) {
+			throw new IllegalArgumentException("Character set must have one glyph per character");
+		}
+		this.characters = characters;
+		this.masks = masks;
+	}
+
+	/**
+	 * Creates a character set from a map of character to black and white
+	 * pixels. Characters are matched in the map's iteration order.
+	 *
+	 * @param charSet the character to pixel map
+	 */
+	CharacterSet(Map<String, int[]> charSet) {
+		this(charSet.keySet().toArray(new String[0]), new long[charSet.size()]);
+		for (int i=0; i<characters.length; ++i) {
+			masks[i] = toMask(charSet.get(characters[i]), Color.WHITE.getRGB());
+		}
+	}
+
+	/**
+	 * Gets the Spectrum character set, loading it on first use
+	 *
+	 * @return the Spectrum character set
+	 * @throws IllegalStateException if the character set resource cannot be loaded
+	 */
+	public static CharacterSet getSpectrumCharacterSet() {
+		CharacterSet characterSet = spectrumCharacterSet;
+		if (characterSet == null) {
+			synchronized (CharacterSet.class) {
+				characterSet = spectrumCharacterSet;
+				if (characterSet == null) {
+					characterSet = load();
+					spectrumCharacterSet = characterSet;
+				}
+			}
+		}
+		return characterSet;
+	}
+
+	private static CharacterSet load() {
+		try (InputStream in = CharacterSet.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) {
+				throw new IOException("Resource not found");
+			}
+			CharacterSet characterSet = read(ByteBuffer.wrap(in.readAllBytes()));
+			log.debug("Loaded {} characters from {}", characterSet.size(), RESOURCE);
+			return characterSet;
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to load character set {}", RESOURCE, e);
+			throw new IllegalStateException("Unable to load character set "+RESOURCE, e);
+		}
+	}
+
+	/**
+	 * Reads a character set in the binary format
+	 *
+	 * @param buffer the buffer to read from
+	 * @return the character set
+	 * @throws IOException if the data is not a valid character set
+	 */
+	static CharacterSet read(ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a character set");
+			}
+			short version = buffer.getShort();
+			if (version != VERSION) {
+				throw new IOException("Unsupported character set version "+version);
+			}
+			int count = buffer.getInt();
+			if (count <= 0 || count > buffer.remaining()/(Integer.BYTES+Long.BYTES)) {
+				throw new IOException("Invalid character count "+count);
+			}
+			String[] characters = new String[count];
+			long[] masks = new long[count];
+			for (int i=0; i<count; ++i) {
+				characters[i] = new String(Character.toChars(buffer.getInt()));
+				masks[i] = buffer.getLong();
+			}
+			return new CharacterSet(characters, masks);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException("Truncated or corrupt character set", e);
+		}
+	}
+
+	/**
+	 * Writes this character set in the binary format
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the write fails
+	 */
+	void write(OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeShort(VERSION);
+		dos.writeInt(characters.length);
+		for (int i=0; i<characters.length; ++i) {
+			dos.writeInt(characters[i].codePointAt(0));
+			dos.writeLong(masks[i]);
+		}
+		dos.flush();
+	}
+
+	/**
+	 * Converts an 8x8 block of pixels to a 64 bit mask
+	 *
+	 * @param block the 64 rgb pixels in row order
+	 * @param paper the paper (white) colour - pixels of this colour are set bits
+	 * @return the block mask
+	 */
+	public static long toMask(int[] block, int paper) {
+		long mask = 0;
+		for (int i=0; i<BLOCK_PIXELS; ++i) {
+			mask <<= 1;
+			if (block[i] == paper) {
+				mask |= 1;
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Converts a mask back to an 8x8 block of pixels
+	 *
+	 * @param mask the block mask
+	 * @param ink the colour for unset bits
+	 * @param paper the colour for set bits
+	 * @param block the 64 pixel array to populate
+	 * @return the populated block
+	 */
+	public static int[] toBlock(long mask, int ink, int paper, int[] block) {
+		for (int i=BLOCK_PIXELS-1; i>=0; --i) {
+			block[i] = (mask & 1) != 0 ? paper : ink;
+			mask >>>= 1;
+		}
+		return block;
+	}
+
+	/**
+	 * Finds the character that has the most pixels in common with the
+	 * block. On a tie the first character in the set wins.
+	 *
+	 * @param blockMask the block to match
+	 * @return the index of the best matching character
+	 */
+	public int findBestMatch(long blockMask) {
+		int bestIndex = 0;
+		int bestScore = -1;
+		for (int i=0; i<masks.length; ++i) {
+			int score = Long.bitCount(~(masks[i] ^ blockMask));
+			if (score > bestScore) {
+				bestScore = score;
+				bestIndex = i;
+				if (score == BLOCK_PIXELS) {
+					break;
+				}
+			}
+		}
+		return bestIndex;
+	}
+
+	public String getCharacter(int index) {
+		return characters[index];
+	}
+
+	public long getMask(int index) {
+		return masks[index];
+	}
+
+	public int size() {
+		return characters.length;
+	}
+}
@@ -21,10 +21,14 @@ import org.slf4j.LoggerFactory;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
 import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionDitherStrategy;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 
 import java.awt.image.BufferedImage;
 
@@ -54,6 +58,7 @@ public class ErrorDiffusionConverterImpl implements ImageConverter {
 	 * {@inheritDoc}
 	 */
 	public ResultImage[] convert(BufferedImage original) {
+		StageEvent stage = StageEvent.start(Stage.Dither);
 		BufferedImage output = ImageHelper.copyImage(original);
 		final ErrorDiffusionDitherStrategy edds = ditherStrategy != null ? ditherStrategy : (ErrorDiffusionDitherStrategy)oo.getSelectedDitherStrategy();
 		Integer xBound = null;
@@ -79,14 +84,18 @@ public class ErrorDiffusionConverterImpl implements ImageConverter {
 				}
 			}
 		}
+		stage.stop();
 
-		output = colourChoiceStrategy.colourAttributes(output);
+		stage = StageEvent.start(Stage.Attribute);
+		AttributeScreen screen = colourChoiceStrategy instanceof GigaScreenPaletteStrategy ? null : new AttributeScreen(output.getWidth(), output.getHeight());
+		output = colourChoiceStrategy.colourAttributes(output, screen);
+		stage.stop();
 
 		// Print the name of the preview strategy
 		if (drawStrategyLabel) {
 			PreviewLabeller.drawPreviewStrategyWithName(output, ditherStrategy.toString());
 		}
-		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
+		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output, screen)};
 	}
 
 	@Override
@@ -22,14 +22,19 @@ import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
 import uk.co.silentsoftware.core.helpers.ColourHelper;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
-import uk.co.silentsoftware.core.helpers.TallyValue;
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashSet;
 import java.util.List;
-import java.util.*;
+import java.util.Set;
 
 import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
 import static uk.co.silentsoftware.core.helpers.ColourHelper.luminositySum;
@@ -53,187 +58,185 @@ public class GigaScreenConverterImpl implements ImageConverter {
         this.imageConverter = imageConverter;
     }
 
-    private void convertAttributePixelRow(int[] attributeRowData, int[] attributeRowDataOdd, int[] rowPixels, int[] rowScreen1Pixels, int[] rowScreen2Pixels, GigaScreenAttribute combo, boolean interlaced) {
-        // For every pixel on an attribute row of pixels find a gigascreen colour
-        for (int i = 0; i < ATTRIBUTE_BLOCK_SIZE; ++i) {
-
-            // Life's too short to determine the best way to average two gigascreen attributes from two different rows,
-            // that are each represented using two screens' persistence of vision colours.
-            // Picking the first screen's (even) attributes works well.
-            // Colourspace averaging, which I tested, was awful but if you want a challenge have a look a commit before
-            // this which includes the code to do it.
-            GigaScreenAttribute.GigaScreenColour col = ColourHelper.getClosestGigaScreenColour(attributeRowData[i], combo);
-            rowPixels[i] = col.getGigascreenColour();
-            rowScreen1Pixels[i] = col.getScreen1Colour();
-            rowScreen2Pixels[i] = col.getScreen2Colour();
-        }
-    }
-
-    private void convertAttributeBlock(int x, int y, GigaScreenAttribute combo, BufferedImage gs, BufferedImage output, BufferedImage output1, BufferedImage output2, boolean interlaced) {
-        int[] block = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
-        int[] block1 = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
-        int[] block2 = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
-        int relativeY = y;
-        for (int row=0; row<ATTRIBUTE_BLOCK_SIZE; row++) {
-            int[] rowPixels = new int[ATTRIBUTE_BLOCK_SIZE];
-            int[] rowScreen1Pixels = new int[ATTRIBUTE_BLOCK_SIZE];
-            int[] rowScreen2Pixels = new int[ATTRIBUTE_BLOCK_SIZE];
-
-            int[] even = gs.getRGB(x, relativeY, ATTRIBUTE_BLOCK_SIZE, 1, null, 0, ATTRIBUTE_BLOCK_SIZE);
-            int[] odd = null; // if not interlaced we don't need to scan 2 lines at once to sample the difference
-            if (interlaced) {
-                relativeY++;
-                odd = gs.getRGB(x, relativeY, ATTRIBUTE_BLOCK_SIZE, 1, null, 0, ATTRIBUTE_BLOCK_SIZE);
-            }
-            convertAttributePixelRow(even,odd,rowPixels,rowScreen1Pixels,rowScreen2Pixels,combo,interlaced);
-            System.arraycopy(rowPixels, 0, block, row * ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE);
-            System.arraycopy(rowScreen1Pixels, 0, block1, row * ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE);
-            System.arraycopy(rowScreen2Pixels, 0, block2, row * ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE);
-            relativeY++;
-        }
-        int newY = interlaced ? y/2 : y;
-        output.setRGB(x, newY, ATTRIBUTE_BLOCK_SIZE,ATTRIBUTE_BLOCK_SIZE, block, 0, ATTRIBUTE_BLOCK_SIZE);
-        output1.setRGB(x, newY, ATTRIBUTE_BLOCK_SIZE,ATTRIBUTE_BLOCK_SIZE, block1, 0, ATTRIBUTE_BLOCK_SIZE);
-        output2.setRGB(x, newY, ATTRIBUTE_BLOCK_SIZE,ATTRIBUTE_BLOCK_SIZE, block2, 0, ATTRIBUTE_BLOCK_SIZE);
-    }
-
     /*
      * {@inheritDoc}
+     *
+     * Each attribute block is converted in a single pass: its attribute is
+     * chosen, every pixel is matched to one of the attribute's four colours,
+     * the order of the two screens is decided and both screens' bitmap and
+     * attribute bytes are written. The images are only rendered from that
+     * data if something asks for them (e.g. the preview or an image export).
      */
     @Override
     public ResultImage[] convert(BufferedImage original) {
         OptionsObject oo = OptionsObject.getInstance();
-        int height = original.getHeight();
+        final int width = original.getWidth();
+        int outputHeight = original.getHeight();
 
-        // If interlace we have a double height input for a regular output (over 2 screens), so we need to
-        // compare odd and even fields to halve the height.
+        // If interlace we have a double height input for a regular output (over 2 screens), so we only
+        // sample the even rows to halve the height.
         boolean interlaced = OptionsObject.INTERLACED == oo.getScaling();
         int yStride = ATTRIBUTE_BLOCK_SIZE;
         if (interlaced) {
-            height /= 2;
+            outputHeight /= 2;
             yStride = ATTRIBUTE_BLOCK_SIZE*2;
         }
-        final BufferedImage output =  new BufferedImage(original.getWidth(), height, BufferedImage.TYPE_INT_ARGB);
-        final BufferedImage output1 = new BufferedImage(original.getWidth(), height, BufferedImage.TYPE_INT_ARGB);
-        final BufferedImage output2 = new BufferedImage(original.getWidth(), height, BufferedImage.TYPE_INT_ARGB);
+        final int height = outputHeight;
+        final AttributeScreen screen1 = new AttributeScreen(width, height);
+        final AttributeScreen screen2 = new AttributeScreen(width, height);
 
         // Dithers the images to the GigaScreen palette
         ResultImage[] resultImage = imageConverter.convert(ImageHelper.copyImage(original));
         BufferedImage gs = resultImage[0].getImage();
 
         // Algorithm replaces each pixel with the colour from the closest matching
-        // 4 colour GigaScreen attribute palette. Quad is the array of the possible 4 colour palettes.
-        GigaScreenAttribute[][] quad = ((GigaScreenPaletteStrategy)oo.getColourMode()).getGigaScreenAttributes(gs, oo.getGigaScreenAttributeStrategy().getPalette());
-        GigaScreenAttribute chosenQuad;
-
-        for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= gs.getHeight(); y += yStride) {
-            for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= gs.getWidth() && y + yStride <= gs.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-                chosenQuad = quad[x / ATTRIBUTE_BLOCK_SIZE][y / ATTRIBUTE_BLOCK_SIZE];
-                convertAttributeBlock(x, y, chosenQuad, gs, output, output1, output2, interlaced);
-            }
-        }
-
+        // 4 colour GigaScreen attribute palette. Quad is the grid of chosen palettes.
+        StageEvent stage = StageEvent.start(Stage.Attribute);
+        final GigaScreenPalette palette = oo.getGigaScreenAttributeStrategy().getGigaScreenPalette();
+        final int[][] quad = ((GigaScreenPaletteStrategy)oo.getColourMode()).getGigaScreenAttributes(gs, palette);
+        ColourDistanceStrategy colourDistance = oo.getColourDistanceMode();
+
+        // The screens are only reordered to reduce flicker when they will actually be shown on a Spectrum
+        GigaScreenPaletteOrder paletteOrder = GigaScreenPaletteOrder.None;
         if (oo.getExportTape() || oo.getExportScreen()) {
-           orderByGigaScreenPaletteOrder(output1, output2);
+            paletteOrder = oo.getGigaScreenPaletteOrder();
         }
 
-        if (imageConverter.getDrawStrategyLabel()) {
-            PreviewLabeller.drawPreviewStrategyWithName(output, imageConverter.getDitherStrategyLabel());
+        // The chosen colour (0-3) of the attribute for each output pixel
+        final byte[] colours = new byte[width*height];
+        int gsWidth = gs.getWidth();
+        int[] band = new int[gsWidth*yStride];
+        int[] block1 = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+        int[] block2 = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+        for (int y = 0; y + yStride <= gs.getHeight(); y += yStride) {
+            gs.getRGB(0, y, gsWidth, yStride, band, 0, gsWidth);
+            // The output row, the attributes are chosen per block of the (possibly double height) dithered image
+            int row = y / yStride;
+            int quadRow = y / ATTRIBUTE_BLOCK_SIZE;
+            for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= gsWidth; x += ATTRIBUTE_BLOCK_SIZE) {
+                int column = x / ATTRIBUTE_BLOCK_SIZE;
+                int attribute = quad[column][quadRow];
+                for (int by = 0; by < ATTRIBUTE_BLOCK_SIZE; ++by) {
+
+                    // Life's too short to determine the best way to average two gigascreen attributes from two different rows,
+                    // that are each represented using two screens' persistence of vision colours.
+                    // Picking the first screen's (even) attributes works well.
+                    // Colourspace averaging, which I tested, was awful but if you want a challenge have a look a commit before
+                    // this which includes the code to do it.
+                    int source = (interlaced ? by*2 : by) * gsWidth + x;
+                    int target = (row * ATTRIBUTE_BLOCK_SIZE + by) * width + x;
+                    for (int bx = 0; bx < ATTRIBUTE_BLOCK_SIZE; ++bx) {
+                        int colour = palette.getClosestColour(attribute, band[source + bx], colourDistance);
+                        colours[target + bx] = (byte)colour;
+                        block1[by * ATTRIBUTE_BLOCK_SIZE + bx] = palette.getScreen1Colour(attribute, colour);
+                        block2[by * ATTRIBUTE_BLOCK_SIZE + bx] = palette.getScreen2Colour(attribute, colour);
+                    }
+                }
+                if (isScreenOrderSwapped(block1, block2, paletteOrder)) {
+                    screen1.setBlock(column, row, block2);
+                    screen2.setBlock(column, row, block1);
+                } else {
+                    screen1.setBlock(column, row, block1);
+                    screen2.setBlock(column, row, block2);
+                }
+            }
         }
-
-        return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output),
-                new ResultImage(ResultImageType.SUPPORTING_IMAGE, output1),
-                new ResultImage(ResultImageType.SUPPORTING_IMAGE, output2)};
+        stage.stop();
+
+        final int columns = gsWidth / ATTRIBUTE_BLOCK_SIZE;
+        final int rows = gs.getHeight() / yStride;
+        final int quadRowStep = yStride / ATTRIBUTE_BLOCK_SIZE;
+        return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, () -> renderImage(width, height, columns, rows, quadRowStep, palette, quad, colours), null),
+                new ResultImage(ResultImageType.SUPPORTING_IMAGE, () -> screen1.render(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)), screen1),
+                new ResultImage(ResultImageType.SUPPORTING_IMAGE, () -> screen2.render(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)), screen2)};
     }
 
     /**
-     * Orders attributes by grouping them into 2 colour sets one for each screen
-     * Uses a threshold to determine borderline cases that may reduce the amount
-     * of flicker.
+     * Renders the combined GigaScreen image from the chosen attributes and
+     * colours. Any partial attribute blocks at the edges are left transparent.
      *
-     * @param output1 the first image to reorder attributes in
-     * @param output2 the second image to reorder attributes in
+     * @param width the image width
+     * @param height the image height
+     * @param columns the number of attribute columns converted
+     * @param rows the number of attribute rows converted
+     * @param quadRowStep the attribute rows per output row, 2 when interlaced
+     * @param palette the GigaScreen palette the attributes are from
+     * @param quad the chosen attribute for each block of the dithered image
+     * @param colours the chosen attribute colour for each pixel
+     * @return the rendered image
      */
-    private void orderByAesthetics(BufferedImage output1, BufferedImage output2) {
-        Map<Integer, Integer> map2 = new HashMap<>();
-        List<TallyValue> tallyValues2 = new LinkedList<>();
-
-        for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-            for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output1.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-                int outRgb1[] = output1.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                int outRgb2[] = output2.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                map2.clear();
-                tallyValues2.clear();
-                for (int i = 0; i < outRgb1.length; ++i) {
-                    int count2 = 1;
-                    if (map2.containsKey(outRgb2[i])) {
-                        count2 = map2.get(outRgb2[i]) + 1;
+    private BufferedImage renderImage(int width, int height, int columns, int rows, int quadRowStep, GigaScreenPalette palette, int[][] quad, byte[] colours) {
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] pixels = ((DataBufferInt)output.getRaster().getDataBuffer()).getData();
+        for (int row = 0; row < rows; ++row) {
+            for (int column = 0; column < columns; ++column) {
+                int attribute = quad[column][row * quadRowStep];
+                for (int by = 0; by < ATTRIBUTE_BLOCK_SIZE; ++by) {
+                    int offset = (row * ATTRIBUTE_BLOCK_SIZE + by) * width + column * ATTRIBUTE_BLOCK_SIZE;
+                    for (int bx = 0; bx < ATTRIBUTE_BLOCK_SIZE; ++bx) {
+                        pixels[offset + bx] = palette.getColour(attribute, colours[offset + bx]);
                     }
-                    map2.put(outRgb2[i], count2);
-                }
-
-                map2.keySet().stream().forEach(colour -> {
-                    Integer tally = map2.get(colour);
-                    tallyValues2.add(new TallyValue(colour, tally));
-                });
-                tallyValues2.sort(TallyValue.TALLY_COMPARATOR);
-
-                int mostPopularColour = tallyValues2.get(0).getColour();
-                int secMostPopularColour = tallyValues2.size() > 1?tallyValues2.get(1).getColour():mostPopularColour;
-                int secTally = tallyValues2.size() > 1?tallyValues2.get(1).getCount():tallyValues2.get(0).getCount();
-
-                List<Integer> groupedColours = SpectrumDefaults.GIGASCREEN_GROUPED_COLOURS;
-                if (groupedColours.contains(mostPopularColour) || (groupedColours.contains(secMostPopularColour) && secTally >= SECONDARY_COLOUR_THRESHOLD)) {
-                    output1.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb2, 0, ATTRIBUTE_BLOCK_SIZE);
-                    output2.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb1, 0, ATTRIBUTE_BLOCK_SIZE);
                 }
             }
         }
+        if (imageConverter.getDrawStrategyLabel()) {
+            PreviewLabeller.drawPreviewStrategyWithName(output, imageConverter.getDitherStrategyLabel());
+        }
+        return output;
     }
 
     /**
-     * Reorders attributes by luminosity
+     * Decides whether an attribute block's two screens should be swapped to
+     * minimise the amount of flicker or other artifacts in actual ZX Spectrum
+     * screen output.
      *
-     * @param output1 the first image to reorder attributes in
-     * @param output2 the second image to reorder attributes in
+     * @param block1 the first screen's block colours
+     * @param block2 the second screen's block colours
+     * @param paletteOrder the chosen ordering
+     * @return true if block2 should be on the first screen
      */
-    private void orderByLuminosity(BufferedImage output1, BufferedImage output2) {
-        for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-            for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output1.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-                int outRgb1[] = output1.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                int outRgb2[] = output2.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                double sum1 = luminositySum(outRgb1);
-                double sum2 = luminositySum(outRgb2);
-                if (sum1 > sum2) {
-                    output1.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb2, 0, ATTRIBUTE_BLOCK_SIZE);
-                    output2.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb1, 0, ATTRIBUTE_BLOCK_SIZE);
-                }
-            }
+    private boolean isScreenOrderSwapped(int[] block1, int[] block2, GigaScreenPaletteOrder paletteOrder) {
+        // TODO: Yuk. Defer to instances of ordering types instead in future.
+        switch (paletteOrder) {
+            case None:
+                return false;
+            case Luminosity:
+                return luminositySum(block1) > luminositySum(block2);
+            case Intelligent:
+                return isGroupedColourBlock(block2);
+            default:
+                // Place attribute block with lowest hsb total on first screen
+                return totalChosenHsbValue(block1, paletteOrder) > totalChosenHsbValue(block2, paletteOrder);
         }
     }
 
     /**
-     * Reorders the colour between the two screens to minimise the amount of flicker or
-     * other artifacts in actual ZX Spectrum screen output.
+     * Groups attributes into 2 colour sets one for each screen, using a
+     * threshold to determine borderline cases that may reduce the amount
+     * of flicker. A screen's block has at most two colours (its ink and paper)
+     * so when they are equally popular either may be considered the most popular.
      *
-     * @param output1 the first image to reorder attributes in
-     * @param output2 the second image to reorder attributes in
+     * @param block2 the second screen's block colours
+     * @return true if the block belongs on the first screen
      */
-    private void orderByGigaScreenPaletteOrder(BufferedImage output1, BufferedImage output2) {
-        // TODO: Yuk. Defer to instances of ordering types instead in future.
-        GigaScreenPaletteOrder paletteOrder = OptionsObject.getInstance().getGigaScreenPaletteOrder();
-        if (GigaScreenPaletteOrder.None == paletteOrder) {
-            return;
-        }
-        if (GigaScreenPaletteOrder.Luminosity == paletteOrder) {
-            orderByLuminosity(output1, output2);
-            return;
-        }
-        if (GigaScreenPaletteOrder.Intelligent == paletteOrder) {
-            orderByAesthetics(output1, output2);
-            return;
+    private boolean isGroupedColourBlock(int[] block2) {
+        int colour1 = block2[0];
+        int colour2 = colour1;
+        int count1 = 0;
+        for (int rgb : block2) {
+            if (rgb == colour1) {
+                ++count1;
+            } else {
+                colour2 = rgb;
+            }
         }
-        orderByHsb(output1, output2, paletteOrder);
+        int count2 = block2.length - count1;
+        int mostPopularColour = count1 >= count2 ? colour1 : colour2;
+        int secMostPopularColour = count1 >= count2 ? colour2 : colour1;
+        int secTally = Math.min(count1, count2);
+
+        List<Integer> groupedColours = SpectrumDefaults.GIGASCREEN_GROUPED_COLOURS;
+        return groupedColours.contains(mostPopularColour) || (groupedColours.contains(secMostPopularColour) && secTally >= SECONDARY_COLOUR_THRESHOLD);
     }
 
     /**
@@ -260,30 +263,6 @@ public class GigaScreenConverterImpl implements ImageConverter {
         return totalCount;
     }
 
-    /**
-     * Reorders attributes by chosen hsb option
-     *
-     * @param output1 the first image to reorder attributes in
-     * @param output2 the second image to reorder attributes in
-     * @param paletteOrder the option to total the hsb values by (e.g. find total of brightness)
-     */
-    private void orderByHsb(BufferedImage output1, BufferedImage output2, GigaScreenPaletteOrder paletteOrder) {
-        for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
-            for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= output1.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= output1.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-                int outRgb1[] = output1.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                int outRgb2[] = output2.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-                float totalCount1 = totalChosenHsbValue(outRgb1, paletteOrder);
-                float totalCount2 = totalChosenHsbValue(outRgb2, paletteOrder);
-
-                // Place attribute block with lowest hsb total on first screen
-                if (totalCount1 > totalCount2) {
-                    output1.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb2, 0, ATTRIBUTE_BLOCK_SIZE);
-                    output2.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb1, 0, ATTRIBUTE_BLOCK_SIZE);
-                }
-            }
-        }
-    }
-
     /**
      * Calculates a value for a given hue/saturation/brightness on a given pixel
 	 *
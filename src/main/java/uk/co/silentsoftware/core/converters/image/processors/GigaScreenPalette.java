@@ -0,0 +1,280 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+
+/**
+ * A set of GigaScreen attributes flattened into primitive arrays so that
+ * scoring every attribute against a block reads contiguous memory rather
+ * than following the references of thousands of attribute objects.
+ * 
+ * Attributes are numbered in the order of the GigaScreenAttribute array
+ * the palette was built from. Each attribute has 4 colours, numbered as
+ * in GigaScreenAttribute (ink/ink, ink/paper, paper/ink, paper/paper),
+ * and the colours of attribute a are at a*4 to a*4+3 in each table. The
+ * mixed colours are held as indexes into the palette's few distinct
+ * GigaScreen colours so colour distances can be worked out once per
+ * distinct colour.
+ */
+public final class GigaScreenPalette {
+
+	/**
+	 * Colours per attribute, 2 per screen giving 4 mixed colours
+	 */
+	public static final int COLOURS_PER_ATTRIBUTE = 4;
+
+	private static final int BLOCK_PIXELS = ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE;
+
+	private final int size;
+
+	/**
+	 * The distinct mixed GigaScreen colours used by the attributes
+	 */
+	private final int[] distinctColours;
+
+	/**
+	 * The red, green and blue components of each distinct colour
+	 */
+	private final int[] distinctComponents;
+
+	/**
+	 * Index into the distinct colours of each attribute colour
+	 */
+	private final short[] colourIndexes;
+
+	private final int[] colours;
+	private final int[] screen1Colours;
+	private final int[] screen2Colours;
+
+	/**
+	 * Working arrays for scoring blocks, reused since blocks are scored
+	 * hundreds of times a frame
+	 */
+	private final ThreadLocal<Scratch> scratch;
+
+	/**
+	 * Flattens the attributes into a palette
+	 * 
+	 * @param attributes the GigaScreen attributes
+	 */
+	public GigaScreenPalette(GigaScreenAttribute[] attributes) {
+		size = attributes.length;
+		colourIndexes = new short[size*COLOURS_PER_ATTRIBUTE];
+		colours = new int[size*COLOURS_PER_ATTRIBUTE];
+		screen1Colours = new int[size*COLOURS_PER_ATTRIBUTE];
+		screen2Colours = new int[size*COLOURS_PER_ATTRIBUTE];
+		int[] distinct = new int[size*COLOURS_PER_ATTRIBUTE];
+		int distinctCount = 0;
+		for (int a=0; a<size; ++a) {
+			for (int c=0; c<COLOURS_PER_ATTRIBUTE; ++c) {
+				GigaScreenAttribute.GigaScreenColour colour = attributes[a].getGigaScreenColour(c);
+				int i = a*COLOURS_PER_ATTRIBUTE+c;
+				colours[i] = colour.getGigascreenColour();
+				screen1Colours[i] = colour.getScreen1Colour();
+				screen2Colours[i] = colour.getScreen2Colour();
+				int index = indexOf(distinct, distinctCount, colours[i]);
+				if (index == -1) {
+					index = distinctCount;
+					distinct[distinctCount++] = colours[i];
+				}
+				colourIndexes[i] = (short)index;
+			}
+		}
+		distinctColours = new int[distinctCount];
+		distinctComponents = new int[distinctCount*3];
+		for (int i=0; i<distinctCount; ++i) {
+			distinctColours[i] = distinct[i];
+			distinctComponents[i*3] = (distinct[i] >> 16) & 0xFF;
+			distinctComponents[i*3+1] = (distinct[i] >> 8) & 0xFF;
+			distinctComponents[i*3+2] = distinct[i] & 0xFF;
+		}
+		scratch = ThreadLocal.withInitial(() -> new Scratch(distinctColours.length));
+	}
+
+	private static int indexOf(int[] values, int count, int value) {
+		for (int i=0; i<count; ++i) {
+			if (values[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the attribute that best fits a block, the one with the lowest
+	 * total over the block's pixels of the distance to the attribute's
+	 * closest colour. On a tie the first attribute wins.
+	 * 
+	 * The distance from each distinct block pixel to each distinct palette
+	 * colour is worked out up front so scoring an attribute is only table
+	 * lookups, and an attribute is abandoned as soon as its total reaches
+	 * the best so far. Totals are summed in pixel order so the scores are
+	 * exactly those GigaScreenAttribute.getScoreForAttributeBlock gives.
+	 * 
+	 * @param block the block's rgb pixels
+	 * @param colourDistance the colour distance to score with
+	 * @return the best attribute
+	 */
+	public int getBestAttribute(int[] block, ColourDistanceStrategy colourDistance) {
+		if (block.length != BLOCK_PIXELS) {
+			throw new IllegalArgumentException("Block must be "+BLOCK_PIXELS+" pixels");
+		}
+		int distinctCount = distinctColours.length;
+		Scratch working = scratch.get();
+		int[] pixelColours = working.pixelColours;
+		int[] blockColours = working.blockColours;
+		double[] distances = working.distances;
+		int[] components = working.components;
+		int blockColourCount = 0;
+		for (int p=0; p<BLOCK_PIXELS; ++p) {
+			int rgb = block[p] & 0xFFFFFF;
+			int index = indexOf(blockColours, blockColourCount, rgb);
+			if (index == -1) {
+				index = blockColourCount;
+				blockColours[blockColourCount++] = rgb;
+			}
+			pixelColours[p] = index*distinctCount;
+		}
+		for (int d=0; d<distinctCount; ++d) {
+			components[0] = distinctComponents[d*3];
+			components[1] = distinctComponents[d*3+1];
+			components[2] = distinctComponents[d*3+2];
+			for (int b=0; b<blockColourCount; ++b) {
+				int rgb = blockColours[b];
+				distances[b*distinctCount+d] = colourDistance.getColourDistance((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, components);
+			}
+		}
+
+		double lowest = Double.MAX_VALUE;
+		int chosen = 0;
+		for (int a=0; a<size; ++a) {
+			int offset = a*COLOURS_PER_ATTRIBUTE;
+			int c0 = colourIndexes[offset];
+			int c1 = colourIndexes[offset+1];
+			int c2 = colourIndexes[offset+2];
+			int c3 = colourIndexes[offset+3];
+			double total = 0;
+			for (int p=0; p<BLOCK_PIXELS && total < lowest; ++p) {
+				int row = pixelColours[p];
+				total += Math.min(Math.min(Math.min(distances[row+c0], distances[row+c1]), distances[row+c2]), distances[row+c3]);
+			}
+			if (total < lowest) {
+				lowest = total;
+				chosen = a;
+			}
+		}
+		return chosen;
+	}
+
+	/**
+	 * Finds the colour of an attribute closest to the rgb value. On a tie
+	 * the lowest numbered colour wins.
+	 * 
+	 * @param attribute the attribute
+	 * @param rgb the rgb value
+	 * @param colourDistance the colour distance to compare with
+	 * @return the closest colour, 0 to 3
+	 */
+	public int getClosestColour(int attribute, int rgb, ColourDistanceStrategy colourDistance) {
+		int red = (rgb >> 16) & 0xFF;
+		int green = (rgb >> 8) & 0xFF;
+		int blue = rgb & 0xFF;
+		int[] components = scratch.get().components;
+		double bestMatch = Double.MAX_VALUE;
+		int closest = 0;
+		for (int c=0; c<COLOURS_PER_ATTRIBUTE; ++c) {
+			int d = colourIndexes[attribute*COLOURS_PER_ATTRIBUTE+c]*3;
+			components[0] = distinctComponents[d];
+			components[1] = distinctComponents[d+1];
+			components[2] = distinctComponents[d+2];
+			double diff = colourDistance.getColourDistance(red, green, blue, components);
+			if (diff < bestMatch) {
+				closest = c;
+				bestMatch = diff;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Gets an attribute's mixed GigaScreen colour
+	 * 
+	 * @param attribute the attribute
+	 * @param colour the colour, 0 to 3
+	 * @return the colour as seen when the screens alternate
+	 */
+	public int getColour(int attribute, int colour) {
+		return colours[attribute*COLOURS_PER_ATTRIBUTE+colour];
+	}
+
+	/**
+	 * Gets the Spectrum colour shown on the first screen for an attribute's colour
+	 * 
+	 * @param attribute the attribute
+	 * @param colour the colour, 0 to 3
+	 * @return the screen 1 colour
+	 */
+	public int getScreen1Colour(int attribute, int colour) {
+		return screen1Colours[attribute*COLOURS_PER_ATTRIBUTE+colour];
+	}
+
+	/**
+	 * Gets the Spectrum colour shown on the second screen for an attribute's colour
+	 * 
+	 * @param attribute the attribute
+	 * @param colour the colour, 0 to 3
+	 * @return the screen 2 colour
+	 */
+	public int getScreen2Colour(int attribute, int colour) {
+		return screen2Colours[attribute*COLOURS_PER_ATTRIBUTE+colour];
+	}
+
+	/**
+	 * Gets the distinct mixed colours the attributes use
+	 * 
+	 * @return the distinct colours
+	 */
+	public int[] getDistinctColours() {
+		return distinctColours.clone();
+	}
+
+	/**
+	 * Gets the number of attributes
+	 * 
+	 * @return the attribute count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Per thread working arrays for scoring a block
+	 */
+	private static final class Scratch {
+		final int[] pixelColours = new int[BLOCK_PIXELS];
+		final int[] blockColours = new int[BLOCK_PIXELS];
+		final int[] components = new int[3];
+		final double[] distances;
+
+		Scratch(int distinctCount) {
+			distances = new double[BLOCK_PIXELS*distinctCount];
+		}
+	}
+}
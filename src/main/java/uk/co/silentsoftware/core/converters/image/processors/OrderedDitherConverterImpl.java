@@ -23,10 +23,16 @@ import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.ResultImage.ResultImageType;
 import uk.co.silentsoftware.core.converters.image.orderedditherstrategy.OrderedDitherStrategy;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
+import uk.co.silentsoftware.core.helpers.BlockCache;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
 
 /**
 * An ordered dithering converter
@@ -54,25 +60,79 @@ public class OrderedDitherConverterImpl implements ImageConverter {
 	 */
 	@Override
 	public ResultImage[] convert(final BufferedImage original) {
-
+		StageEvent stage = StageEvent.start(Stage.Dither);
 		BufferedImage output = ImageHelper.copyImage(original);
 		int xMax = ditherStrategy.getMatrixWidth();
 		int yMax = ditherStrategy.getMatrixHeight();
+
+		// Whole attribute blocks are dithered a block at a time so repeated blocks
+		// can be memoised, as long as the matrix tiles the block exactly
+		boolean tiles = ATTRIBUTE_BLOCK_SIZE%xMax == 0 && ATTRIBUTE_BLOCK_SIZE%yMax == 0;
+		int blockedWidth = tiles ? original.getWidth()-original.getWidth()%ATTRIBUTE_BLOCK_SIZE : 0;
+		int blockedHeight = tiles ? original.getHeight()-original.getHeight()%ATTRIBUTE_BLOCK_SIZE : 0;
+		long fingerprint = BlockCache.fingerprint(OrderedDitherConverterImpl.class, ditherStrategy.getClass(), Arrays.hashCode(oo.getColourMode().getPalette()));
+		int[] block = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+		int[] matrix = new int[xMax*yMax];
+		for (int y=0; y<blockedHeight; y+=ATTRIBUTE_BLOCK_SIZE) {
+			for (int x=0; x<blockedWidth; x+=ATTRIBUTE_BLOCK_SIZE) {
+				original.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, block, 0, ATTRIBUTE_BLOCK_SIZE);
+				BlockCache.Key key = BlockCache.key(fingerprint, block);
+				int[] dithered = BlockCache.get(key);
+				if (dithered == null) {
+					dithered = ditherBlock(block, matrix, xMax, yMax);
+					BlockCache.put(key, dithered);
+				}
+				output.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, dithered, 0, ATTRIBUTE_BLOCK_SIZE);
+			}
+		}
+
+		// Any partial blocks at the right and bottom edges
 		for (int y=0; y+yMax<=original.getHeight(); y+=yMax) {
 			for (int x=0; x+xMax<=original.getWidth() && y+yMax<=original.getHeight(); x+=xMax) {
+				if (x < blockedWidth && y < blockedHeight) {
+					continue;
+				}
 				int outRgb[] = original.getRGB(x, y, xMax, yMax, null, 0, xMax);
 				outRgb = ditherStrategy.applyDither(outRgb);
 				output.setRGB(x, y, xMax, yMax, outRgb, 0, xMax);	
 			}
 		}
+		stage.stop();
 
-		output = colourChoiceStrategy.colourAttributes(output);
+		stage = StageEvent.start(Stage.Attribute);
+		AttributeScreen screen = colourChoiceStrategy instanceof GigaScreenPaletteStrategy ? null : new AttributeScreen(output.getWidth(), output.getHeight());
+		output = colourChoiceStrategy.colourAttributes(output, screen);
+		stage.stop();
 		
 		// Print the name of the preview strategy
 		if (drawStrategyLabel) {
 			PreviewLabeller.drawPreviewStrategyWithName(output, ditherStrategy.toString());
 		}
-		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output)};
+		return new ResultImage[]{new ResultImage(ResultImageType.FINAL_IMAGE, output, screen)};
+	}
+
+	/**
+	 * Applies the dither matrix to each matrix sized area of an attribute block
+	 *
+	 * @param block the attribute block pixels, dithered in place
+	 * @param matrix working array the size of the dither matrix
+	 * @param xMax the matrix width
+	 * @param yMax the matrix height
+	 * @return the dithered block
+	 */
+	private int[] ditherBlock(int[] block, int[] matrix, int xMax, int yMax) {
+		for (int y=0; y<ATTRIBUTE_BLOCK_SIZE; y+=yMax) {
+			for (int x=0; x<ATTRIBUTE_BLOCK_SIZE; x+=xMax) {
+				for (int my=0; my<yMax; ++my) {
+					System.arraycopy(block, (y+my)*ATTRIBUTE_BLOCK_SIZE+x, matrix, my*xMax, xMax);
+				}
+				int[] dithered = ditherStrategy.applyDither(matrix);
+				for (int my=0; my<yMax; ++my) {
+					System.arraycopy(dithered, my*xMax, block, (y+my)*ATTRIBUTE_BLOCK_SIZE+x, xMax);
+				}
+			}
+		}
+		return block;
 	}
 
 	@Override
@@ -0,0 +1,342 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.spectrum;
+
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.helpers.ColourHelper;
+
+import java.awt.image.BufferedImage;
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
+
+/**
+ * The native Spectrum representation of a converted image - a 1 bit per
+ * pixel bitmap plus one attribute byte per 8x8 character cell, exactly as
+ * the Spectrum holds it in display memory (albeit in linear row order).
+ *
+ * Converters populate this as they choose attributes so that the SCR,
+ * tape and rendered image outputs are all derived from the same data
+ * rather than the attributes being inferred again from the pixels.
+ *
+ * Bitmap bytes hold the leftmost pixel in bit 7, a set bit is ink.
+ * Attribute bytes hold ink in bits 0-2, paper in bits 3-5, bright
+ * in bit 6 and flash in bit 7.
+ */
+public class AttributeScreen {
+
+	/**
+	 * SCR images are fixed size (representing Spectrum memory)
+	 * - this is the size in bytes
+	 */
+	public static final int SCR_SIZE = 6912;
+
+	/**
+	 * The size of the bitmap part of an SCR in bytes
+	 */
+	private static final int SCR_BITMAP_SIZE = 6144;
+
+	private static final int INK_MASK = 0x07;
+	private static final int PAPER_SHIFT = 3;
+	private static final int BRIGHT_BIT = 0x40;
+	private static final int FLASH_BIT = 0x80;
+
+	private final int columns;
+	private final int rows;
+	private final byte[] bitmap;
+	private final byte[] attributes;
+
+	/**
+	 * Creates an empty (black) screen covering all the whole attribute
+	 * blocks in an image of the given size.
+	 *
+	 * @param width the image width in pixels
+	 * @param height the image height in pixels
+	 */
+	public AttributeScreen(int width, int height) {
+		this.columns = width/ATTRIBUTE_BLOCK_SIZE;
+		this.rows = height/ATTRIBUTE_BLOCK_SIZE;
+		this.bitmap = new byte[columns*rows*ATTRIBUTE_BLOCK_SIZE];
+		this.attributes = new byte[columns*rows];
+	}
+
+	/**
+	 * Creates a screen from an image that is already in Spectrum colours by
+	 * treating each 8x8 block in the same way as {@link #setBlock(int, int, int[])}.
+	 * Used where no converter populated screen exists (e.g. a non Spectrum sized
+	 * output that has been resized).
+	 *
+	 * @param image the image to read
+	 * @return the screen for the image
+	 */
+	public static AttributeScreen fromImage(BufferedImage image) {
+		AttributeScreen screen = new AttributeScreen(image.getWidth(), image.getHeight());
+		int[] block = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
+		for (int row=0; row<screen.rows; ++row) {
+			for (int column=0; column<screen.columns; ++column) {
+				image.getRGB(column*ATTRIBUTE_BLOCK_SIZE, row*ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, block, 0, ATTRIBUTE_BLOCK_SIZE);
+				screen.setBlock(column, row, block);
+			}
+		}
+		return screen;
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getWidth() {
+		return columns*ATTRIBUTE_BLOCK_SIZE;
+	}
+
+	public int getHeight() {
+		return rows*ATTRIBUTE_BLOCK_SIZE;
+	}
+
+	/**
+	 * Whether this screen is exactly the size of the Spectrum display
+	 *
+	 * @return true if 256x192
+	 */
+	public boolean isSpectrumSize() {
+		return columns == SpectrumDefaults.COLUMNS && rows == SpectrumDefaults.ROWS;
+	}
+
+	/**
+	 * Sets an attribute block from its 64 chosen pixel colours, which must
+	 * be at most two Spectrum colours. The first pixel's colour is ink
+	 * unless it is the more popular of the two, in which case it becomes
+	 * paper (i.e. usually a background, which looks nicer when loading).
+	 * Bright is set if either colour is from the bright set.
+	 *
+	 * @param column the attribute column
+	 * @param row the attribute row
+	 * @param blockRgb the 8x8 block of rgb values in row order
+	 */
+	public void setBlock(int column, int row, int[] blockRgb) {
+		int ink = blockRgb[0];
+		int paper = ink;
+		int inkCount = 0;
+		for (int rgb : blockRgb) {
+			if (rgb == ink) {
+				++inkCount;
+			} else {
+				paper = rgb;
+			}
+		}
+		if (inkCount > blockRgb.length-inkCount) {
+			int temp = paper;
+			paper = ink;
+			ink = temp;
+		}
+		int offset = (row*ATTRIBUTE_BLOCK_SIZE)*columns+column;
+		for (int y=0; y<ATTRIBUTE_BLOCK_SIZE; ++y) {
+			int bits = 0;
+			for (int x=0; x<ATTRIBUTE_BLOCK_SIZE; ++x) {
+				bits <<= 1;
+				if (blockRgb[y*ATTRIBUTE_BLOCK_SIZE+x] == ink) {
+					bits |= 1;
+				}
+			}
+			bitmap[offset+y*columns] = (byte)bits;
+		}
+		boolean bright = ColourHelper.isBrightSet(ink) || ColourHelper.isBrightSet(paper);
+		setAttribute(column, row, toSpectrumIndex(ink), toSpectrumIndex(paper), bright, false);
+	}
+
+	/**
+	 * Sets the attribute for a cell
+	 *
+	 * @param column the attribute column
+	 * @param row the attribute row
+	 * @param ink the ink colour index 0-7
+	 * @param paper the paper colour index 0-7
+	 * @param bright whether the cell is bright
+	 * @param flash whether the cell flashes
+	 */
+	public void setAttribute(int column, int row, int ink, int paper, boolean bright, boolean flash) {
+		int attribute = (ink & INK_MASK) | ((paper & INK_MASK) << PAPER_SHIFT);
+		if (bright) {
+			attribute |= BRIGHT_BIT;
+		}
+		if (flash) {
+			attribute |= FLASH_BIT;
+		}
+		attributes[row*columns+column] = (byte)attribute;
+	}
+
+	public byte getAttribute(int column, int row) {
+		return attributes[row*columns+column];
+	}
+
+	public int getInk(int column, int row) {
+		return getAttribute(column, row) & INK_MASK;
+	}
+
+	public int getPaper(int column, int row) {
+		return (getAttribute(column, row) >> PAPER_SHIFT) & INK_MASK;
+	}
+
+	public boolean isBright(int column, int row) {
+		return (getAttribute(column, row) & BRIGHT_BIT) != 0;
+	}
+
+	/**
+	 * Gets the bitmap byte for the 8 pixels starting at pixel row y
+	 * in the given attribute column
+	 *
+	 * @param column the attribute column
+	 * @param y the pixel row
+	 * @return the 8 pixels, leftmost in bit 7
+	 */
+	public byte getBitmapByte(int column, int y) {
+		return bitmap[y*columns+column];
+	}
+
+	/**
+	 * Whether the pixel is set as ink
+	 *
+	 * @param x the pixel x coordinate
+	 * @param y the pixel y coordinate
+	 * @return true if ink, false if paper
+	 */
+	public boolean isInk(int x, int y) {
+		return (getBitmapByte(x/ATTRIBUTE_BLOCK_SIZE, y) & (0x80 >> (x%ATTRIBUTE_BLOCK_SIZE))) != 0;
+	}
+
+	/**
+	 * The colour the Spectrum would display for a pixel
+	 *
+	 * @param x the pixel x coordinate
+	 * @param y the pixel y coordinate
+	 * @return the rgb value
+	 */
+	public int getRGB(int x, int y) {
+		int column = x/ATTRIBUTE_BLOCK_SIZE;
+		int row = y/ATTRIBUTE_BLOCK_SIZE;
+		int index = isInk(x, y) ? getInk(column, row) : getPaper(column, row);
+		return toRgb(index, isBright(column, row));
+	}
+
+	/**
+	 * Swaps a whole attribute block (pixels and attribute) with the same
+	 * block on another screen, as done when ordering GigaScreen palettes.
+	 *
+	 * @param other the screen to swap with
+	 * @param column the attribute column
+	 * @param row the attribute row
+	 */
+	public void swapBlock(AttributeScreen other, int column, int row) {
+		int offset = (row*ATTRIBUTE_BLOCK_SIZE)*columns+column;
+		for (int y=0; y<ATTRIBUTE_BLOCK_SIZE; ++y) {
+			int index = offset+y*columns;
+			byte temp = bitmap[index];
+			bitmap[index] = other.bitmap[index];
+			other.bitmap[index] = temp;
+		}
+		int index = row*columns+column;
+		byte temp = attributes[index];
+		attributes[index] = other.attributes[index];
+		other.attributes[index] = temp;
+	}
+
+	/**
+	 * Draws the screen onto the given image. Any partial attribute blocks
+	 * at the right or bottom edges of the image are left untouched.
+	 *
+	 * @param image the image to draw onto
+	 * @return the same image
+	 */
+	public BufferedImage render(BufferedImage image) {
+		int width = getWidth();
+		int[] line = new int[width];
+		for (int y=0; y<getHeight(); ++y) {
+			int row = y/ATTRIBUTE_BLOCK_SIZE;
+			for (int column=0; column<columns; ++column) {
+				boolean bright = isBright(column, row);
+				int ink = toRgb(getInk(column, row), bright);
+				int paper = toRgb(getPaper(column, row), bright);
+				int bits = getBitmapByte(column, y);
+				int start = column*ATTRIBUTE_BLOCK_SIZE;
+				for (int x=0; x<ATTRIBUTE_BLOCK_SIZE; ++x) {
+					line[start+x] = (bits & (0x80 >> x)) != 0 ? ink : paper;
+				}
+			}
+			image.setRGB(0, y, width, 1, line, 0, width);
+		}
+		return image;
+	}
+
+	/**
+	 * Creates a new image of this screen
+	 *
+	 * @return the rendered image
+	 */
+	public BufferedImage toImage() {
+		return render(new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB));
+	}
+
+	/**
+	 * Writes the screen in SCR (Spectrum display memory) order, i.e. the
+	 * bitmap in thirds, then pixel row within character, then character
+	 * row, followed by the 768 attribute bytes.
+	 *
+	 * @return the 6912 byte SCR data
+	 * @throws IllegalStateException if this screen is not 256x192
+	 */
+	public byte[] toScr() {
+		if (!isSpectrumSize()) {
+			throw new IllegalStateException("SCR data can only be created from a "+SpectrumDefaults.SCREEN_WIDTH+"x"+SpectrumDefaults.SCREEN_HEIGHT+" screen");
+		}
+		byte[] scr = new byte[SCR_SIZE];
+		for (int y=0; y<SpectrumDefaults.SCREEN_HEIGHT; ++y) {
+			int address = ((y & 0xC0) << 5) | ((y & 0x07) << 8) | ((y & 0x38) << 2);
+			System.arraycopy(bitmap, y*columns, scr, address, columns);
+		}
+		System.arraycopy(attributes, 0, scr, SCR_BITMAP_SIZE, attributes.length);
+		return scr;
+	}
+
+	/**
+	 * Converts a Spectrum rgb value to its 0-7 colour index, ignoring
+	 * brightness. Non Spectrum colours are matched to the closest one.
+	 *
+	 * @param rgb the rgb colour
+	 * @return the colour index
+	 */
+	static int toSpectrumIndex(int rgb) {
+		Integer index = SpectrumDefaults.SPECTRUM_ARGB.get(rgb);
+		if (index == null) {
+			index = SpectrumDefaults.SPECTRUM_ARGB.get(ColourHelper.getClosestColour(rgb, SpectrumDefaults.SPECTRUM_COLOURS_ALL));
+		}
+		return index > INK_MASK ? index-INK_MASK : index;
+	}
+
+	/**
+	 * Converts a Spectrum colour index and brightness to an rgb value
+	 *
+	 * @param index the colour index 0-7
+	 * @param bright whether bright is set
+	 * @return the rgb colour
+	 */
+	static int toRgb(int index, boolean bright) {
+		return bright ? SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[index] : SpectrumDefaults.SPECTRUM_COLOURS_HALF_BRIGHT[index];
+	}
+}
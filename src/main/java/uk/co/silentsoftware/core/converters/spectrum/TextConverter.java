@@ -19,13 +19,10 @@ package uk.co.silentsoftware.core.converters.spectrum;
 import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE;
 
 import java.awt.image.BufferedImage;
-import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 
-import uk.co.silentsoftware.core.converters.image.processors.CharacterConverterImpl;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+import uk.co.silentsoftware.core.converters.image.processors.CharacterSet;
 
 
 /**
@@ -34,11 +31,6 @@ import uk.co.silentsoftware.core.helpers.ColourHelper;
  */
 public class TextConverter {
 
-	/**
-	 * The UTF-8 character to 8x8 pixel map, map.
-	 */
-	private static Map<String, int[]> charSet = CharacterConverterImpl.charSet;
-	
 	/**
 	 * Iterates over the image in 8x8 blocks and finds the matching character
 	 * to replace in a text file.
@@ -51,47 +43,22 @@ public class TextConverter {
 	 * @return the UTF-8 text representation
 	 */
 	public String createText(final BufferedImage image) {
-		String text = new String("".getBytes(), Charset.forName("UTF-8"));
+		CharacterSet characterSet = CharacterSet.getSpectrumCharacterSet();
+		int paper = SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[OptionsObject.getInstance().getMonochromePaperIndex()];
+		int columns = image.getWidth()/ATTRIBUTE_BLOCK_SIZE;
+		int rows = image.getHeight()/ATTRIBUTE_BLOCK_SIZE;
+		StringBuilder text = new StringBuilder((columns+1)*rows);
+		int[] outRgb = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE];
 		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= image.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
 			for (int x = 0; x + ATTRIBUTE_BLOCK_SIZE <= image.getWidth() && y + ATTRIBUTE_BLOCK_SIZE <= image.getHeight(); x += ATTRIBUTE_BLOCK_SIZE) {
-				int outRgb[] = image.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
-				text += findBestCharacterMatch(outRgb);				
+				image.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+				
+				// Pixels that are the monochrome paper colour are white, all others black
+				int index = characterSet.findBestMatch(CharacterSet.toMask(outRgb, paper));
+				text.append(characterSet.getCharacter(index));
 			}
-			text+="\n";
+			text.append('\n');
 		}	
-		return text;
-	}	
-	
-	/**
-	 * Finds the character string best matching the pixels in the 8x8
-	 * pixel sample map
-	 * 
-	 * @param sample the sample to analyse
-	 * @return the UTF-8 character
-	 */
-	private String findBestCharacterMatch(int[] sample) {
-		sample = ColourHelper.getBlackAndWhiteFromMonochrome(sample);
-		Map<String, Integer> stats = new HashMap<String, Integer>();
-		Set<String> keys = charSet.keySet();
-		for (String key : keys) {
-			int score = 0;
-			int[] character = charSet.get(key);
-			for (int i = 0; i < character.length; ++i) {
-				if (character[i] == sample[i]) {
-					score++;
-				}
-			}
-			stats.put(key, score);
-		}
-		int bestScore = Integer.MIN_VALUE;
-		String chosenKey = null;
-		for (String key : keys) {
-			int score = stats.get(key);
-			if (score > bestScore) {
-				bestScore = score;
-				chosenKey = key;
-			}
-		}
-		return chosenKey;
+		return text.toString();
 	}
 }
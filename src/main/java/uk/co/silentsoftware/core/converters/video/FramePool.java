@@ -0,0 +1,84 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of integer pixel buffers for decoded video frames of a
+ * single size, saving a large allocation for every frame sampled.
+ */
+public class FramePool {
+
+	/**
+	 * Maximum number of idle buffers kept for reuse
+	 */
+	private static final int MAX_POOLED = 16;
+
+	private final int width;
+	private final int height;
+	private final Queue<int[]> buffers = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * @param width the frame width
+	 * @param height the frame height
+	 */
+	public FramePool(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Gets a frame from the pool, or a new one if the pool is empty.
+	 * The pixels are not cleared.
+	 *
+	 * @return the frame
+	 */
+	public PooledFrame acquire() {
+		int[] pixels = buffers.poll();
+		if (pixels == null) {
+			pixels = new int[width*height];
+		} else {
+			pooled.decrementAndGet();
+		}
+		return new PooledFrame(this, pixels, width, height);
+	}
+
+	/**
+	 * Returns a frame's pixels to the pool
+	 *
+	 * @param pixels the frame pixels
+	 */
+	void release(int[] pixels) {
+		if (pooled.incrementAndGet() <= MAX_POOLED) {
+			buffers.offer(pixels);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+}
@@ -16,6 +16,8 @@
  */
 package uk.co.silentsoftware.core.converters.video;
 
+import io.humble.ferry.Buffer;
+import io.humble.ferry.JNIReference;
 import io.humble.video.*;
 import io.humble.video.MediaDescriptor.Type;
 import io.humble.video.awt.MediaPictureConverter;
@@ -23,11 +25,22 @@ import io.humble.video.awt.MediaPictureConverterFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ResamplingFilter;
+import uk.co.silentsoftware.config.ScalingObject;
+import uk.co.silentsoftware.config.VideoSamplingMode;
+import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.VideoDecodeEvent;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 /**
  * Video decoding class based on the rather obtuse example at 
@@ -38,42 +51,39 @@ public class HumbleVideoImportEngine implements VideoImportEngine {
 
 	private final Logger log = LoggerFactory.getLogger(this.getClass());
 
+	/**
+	 * The shortest sample interval for which seeking to keyframes is tried,
+	 * below this keyframes are rarely far enough apart to be worth it
+	 */
+	private static final long MIN_SEEK_INTERVAL_NANOS = 200000000L;
+
 	private volatile boolean cancel = false;
 
 	/*
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void convertVideoToImages(File f, boolean singleImage, BlockingQueue<Image> sharedQueue, VideoLoadedLock videoLoadedLock) throws Exception {
+	public void convertVideoToImages(File f, VideoFrameQueue sharedQueue, VideoLoadedLock videoLoadedLock) throws Exception {
 		cancel = false;
 		Demuxer demuxer = Demuxer.make();
 		demuxer.open(f.getAbsolutePath(), null, false, true, null, null);
-		long streamStartTime = Global.NO_PTS;
-		int videoStreamId = -1;
-		Decoder videoDecoder = null;
-		Rational streamTimeBase = Global.getDefaultTimeBase();
-		for (int i = 0; i < demuxer.getNumStreams(); i++) {
-			final DemuxerStream stream = demuxer.getStream(i);
-			streamStartTime = stream.getStartTime();
-			final Decoder decoder = stream.getDecoder();
-			if (decoder != null && decoder.getCodecType() == Type.MEDIA_VIDEO) {
-				videoStreamId = i;
-				videoDecoder = decoder;
-				streamTimeBase = stream.getTimeBase();
-				log.debug("Timebase {}", stream.getTimeBase());
-				// stop at the first one.
-				break;
-			}
-		}
+		final int videoStreamId = findVideoStream(demuxer);
+		final DemuxerStream videoStream = demuxer.getStream(videoStreamId);
+		long streamStartTime = videoStream.getStartTime();
+		Decoder videoDecoder = videoStream.getDecoder();
+		Rational streamTimeBase = videoStream.getTimeBase();
+		log.debug("Timebase {}", streamTimeBase);
 		videoDecoder.open(null, null);
 
 		final MediaPicture picture = MediaPicture.make(videoDecoder.getWidth(), videoDecoder.getHeight(), videoDecoder.getPixelFormat());
-		final MediaPictureConverter converter = MediaPictureConverterFactory.createConverter(MediaPictureConverterFactory.HUMBLE_BGR_24, picture);
+		final Function<MediaPicture, BufferedImage> converter = createImageConverter(picture);
 		final MediaPacket packet = MediaPacket.make();
 		videoLoadedLock.preloadFinished();
 		Long nextSnapShotTime = null;
 		long sampleRateNanos = Math.round(1000000000d/OptionsObject.getInstance().getVideoFramesPerSecond());
-		log.debug("Sampling every {}ns", sampleRateNanos);
+		final boolean seeking = sampleRateNanos >= MIN_SEEK_INTERVAL_NANOS
+				&& OptionsObject.getInstance().getVideoSamplingMode() == VideoSamplingMode.Seek;
+		log.debug("Sampling every {}ns, seeking {}", sampleRateNanos, seeking);
 		final Rational systemTimeBase = Rational.make(1, 1000000000);
 		log.debug("Stream start time {}", streamStartTime);
 		try {
@@ -90,10 +100,16 @@ public class HumbleVideoImportEngine implements VideoImportEngine {
 					int bytesRead = 0;
 					do {
 						bytesRead += videoDecoder.decode(picture, packet, offset);
-						nextSnapShotTime = snapshotImageIfAtSampleTime(picture,systemTimeBase, streamStartTime, streamTimeBase, nextSnapShotTime, sharedQueue, converter, sampleRateNanos);
-						if (cancel || singleImage) {
+						Long snapShotTime = snapshotImageIfAtSampleTime(picture,systemTimeBase, streamStartTime, streamTimeBase, nextSnapShotTime, sharedQueue, converter, sampleRateNanos);
+						boolean sampled = snapShotTime != null && !snapShotTime.equals(nextSnapShotTime);
+						nextSnapShotTime = snapShotTime;
+						if (cancel || sharedQueue.isCancelled()) {
 							return;
 						}
+						if (sampled && seeking && seekToKeyFrame(demuxer, videoDecoder, videoStreamId, picture.getTimeStamp(),
+								streamStartTime+streamTimeBase.rescale(nextSnapShotTime, systemTimeBase))) {
+							break;
+						}
 						offset += bytesRead;
 					} while (offset < packet.getSize());
 				}
@@ -108,6 +124,82 @@ public class HumbleVideoImportEngine implements VideoImportEngine {
 		}
 	}
 	
+	/*
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Image extractFrame(File f, double position) throws Exception {
+		Demuxer demuxer = Demuxer.make();
+		demuxer.open(f.getAbsolutePath(), null, false, true, null, null);
+		try {
+			final int videoStreamId = findVideoStream(demuxer);
+			final DemuxerStream videoStream = demuxer.getStream(videoStreamId);
+			final Decoder videoDecoder = videoStream.getDecoder();
+			videoDecoder.open(null, null);
+			long duration = videoStream.getDuration();
+			if (duration == Global.NO_PTS) {
+				duration = videoStream.getTimeBase().rescale(demuxer.getDuration(), Global.getDefaultTimeBase());
+			}
+			long startTime = videoStream.getStartTime() == Global.NO_PTS ? 0 : videoStream.getStartTime();
+			long target = startTime + Math.round(Math.max(0, duration) * Math.min(1d, Math.max(0d, position)));
+			if (demuxer.seek(videoStreamId, Long.MIN_VALUE, target, target, 0) < 0) {
+				log.debug("Unable to seek to {}, taking the first frame", target);
+			}
+
+			final MediaPicture picture = MediaPicture.make(videoDecoder.getWidth(), videoDecoder.getHeight(), videoDecoder.getPixelFormat());
+			final MediaPictureConverter converter = MediaPictureConverterFactory.createConverter(MediaPictureConverterFactory.HUMBLE_BGR_24, picture);
+			final MediaPacket packet = MediaPacket.make();
+			BufferedImage image = null;
+			while (demuxer.read(packet) >= 0) {
+				if (packet.getStreamIndex() == videoStreamId) {
+					int offset = 0;
+					do {
+						int bytesRead = videoDecoder.decode(picture, packet, offset);
+						if (picture.isComplete()) {
+							image = converter.toImage(image, picture);
+							if (picture.getTimeStamp() >= target) {
+								return image;
+							}
+						}
+						if (bytesRead <= 0) {
+							break;
+						}
+						offset += bytesRead;
+					} while (offset < packet.getSize());
+				}
+			}
+			// Past the last packet, the decoder may still hold the frame
+			do {
+				videoDecoder.decode(picture, null, 0);
+				if (picture.isComplete()) {
+					image = converter.toImage(image, picture);
+				}
+			} while (picture.isComplete());
+			return image;
+		} finally {
+			demuxer.close();
+		}
+	}
+
+	/**
+	 * Finds the first video stream in the demuxer
+	 *
+	 * @param demuxer the open demuxer
+	 * @return the video stream index
+	 * @throws InterruptedException if interrupted reading the streams
+	 * @throws IOException if there is no video stream
+	 */
+	private static int findVideoStream(Demuxer demuxer) throws InterruptedException, IOException {
+		for (int i = 0; i < demuxer.getNumStreams(); i++) {
+			final Decoder decoder = demuxer.getStream(i).getDecoder();
+			if (decoder != null && decoder.getCodecType() == Type.MEDIA_VIDEO) {
+				// stop at the first one.
+				return i;
+			}
+		}
+		throw new IOException("No video stream found");
+	}
+
 	/**
 	 * Snapshots an image to the sharedQueue if at the requested time interval
 	 * 
@@ -117,26 +209,30 @@ public class HumbleVideoImportEngine implements VideoImportEngine {
 	 * @param streamTimeBase the stream time base
 	 * @param nextSnapShotTime the time at which the snapshot is expected
 	 * @param sharedQueue the shared processing queue
-	 * @param converter the media converter for making the snampshot
+	 * @param converter the converter for making the snapshot
 	 * @param sampleRateNanos the sampling rate for the video in nanoseconds
 	 * @return the next snapshot time (current snapshot time  + sampleRateNanos)
-	 * @throws InterruptedException if the snapshot cannot be added to the shared queue
+	 * @throws InterruptedException if interrupted waiting for space in the shared queue
 	 */
 	private Long snapshotImageIfAtSampleTime(MediaPicture picture, Rational systemTimeBase, long streamStartTime, Rational streamTimeBase, Long nextSnapShotTime, 
-			BlockingQueue<Image> sharedQueue, MediaPictureConverter converter, long sampleRateNanos) throws InterruptedException {
+			VideoFrameQueue sharedQueue, Function<MediaPicture, BufferedImage> converter, long sampleRateNanos) throws InterruptedException {
 		if (picture.isComplete()) {
 			long streamTimestamp = picture.getTimeStamp();
 		    
 			// Convert streamTimestamp into system units (i.e. nano-seconds)
 			streamTimestamp = systemTimeBase.rescale(streamTimestamp-streamStartTime, streamTimeBase);
 		    if (nextSnapShotTime == null || streamTimestamp >= nextSnapShotTime) {
-				BufferedImage image = converter.toImage(null, picture);
-				boolean added = sharedQueue.offer(image);
-				if (!added && !cancel) {
-					log.debug("Video queue full at {}... blocking", streamTimestamp);
-					sharedQueue.put(image);
-				} else {
-					log.debug("Video queue had space");
+				VideoDecodeEvent event = new VideoDecodeEvent();
+				event.begin();
+				long start = System.nanoTime();
+				BufferedImage image = converter.apply(picture);
+				Metrics.record(Stage.Read, start);
+				event.commit(this, streamTimestamp);
+				if (!sharedQueue.put(image)) {
+					log.debug("Video queue closed at {}", streamTimestamp);
+					if (image instanceof PooledFrame) {
+						((PooledFrame)image).release();
+					}
 				}
 				
 				nextSnapShotTime = streamTimestamp+sampleRateNanos;
@@ -146,6 +242,114 @@ public class HumbleVideoImportEngine implements VideoImportEngine {
 		return nextSnapShotTime;
 	}
 
+	/**
+	 * Seeks forward to the last keyframe at or before the next sample time
+	 * so the frames in between are never read or decoded. Decoding on from
+	 * the keyframe reaches the same frame as decoding every frame would.
+	 * If there is no keyframe between the current picture and the sample
+	 * time nothing changes and decoding simply carries on.
+	 *
+	 * @param demuxer the demuxer to seek
+	 * @param decoder the video decoder, flushed if the seek succeeds
+	 * @param streamId the video stream index
+	 * @param currentTimestamp the timestamp of the current picture in stream units
+	 * @param sampleTimestamp the timestamp of the next sample in stream units
+	 * @return true if the demuxer was moved
+	 * @throws InterruptedException if interrupted whilst seeking
+	 * @throws IOException if the seek fails to read the video
+	 */
+	private boolean seekToKeyFrame(Demuxer demuxer, Decoder decoder, int streamId, long currentTimestamp, long sampleTimestamp) throws InterruptedException, IOException {
+		if (sampleTimestamp <= currentTimestamp+1) {
+			return false;
+		}
+		if (demuxer.seek(streamId, currentTimestamp+1, sampleTimestamp, sampleTimestamp, 0) < 0) {
+			log.debug("No keyframe between {} and {}", currentTimestamp, sampleTimestamp);
+			return false;
+		}
+		decoder.flush();
+		log.debug("Seeked from {} towards {}", currentTimestamp, sampleTimestamp);
+		return true;
+	}
+
+	/**
+	 * Creates the converter from decoded pictures to images. Where possible
+	 * the picture is scaled to the size pre-processing will scale it to by
+	 * the native resampler, so full size frames are never converted to Java
+	 * images, and the result is written into a pooled frame. If the native
+	 * resampler is unavailable the picture is converted at full size.
+	 *
+	 * @param picture the decoded picture the converter is for
+	 * @return the picture to image converter
+	 */
+	private Function<MediaPicture, BufferedImage> createImageConverter(MediaPicture picture) {
+		OptionsObject oo = OptionsObject.getInstance();
+		ScalingObject scaling = oo.getScaling();
+		Dimension size = ImageHelper.getScaledSize(picture.getWidth(), picture.getHeight(), scaling.getWidth(), scaling.getHeight());
+		try {
+			final MediaPictureResampler resampler = MediaPictureResampler.make(size.width, size.height, PixelFormat.Type.PIX_FMT_BGRA,
+					picture.getWidth(), picture.getHeight(), picture.getFormat(), getResamplerFlags(oo.getResamplingFilter()));
+			resampler.open();
+			final MediaPicture scaled = MediaPicture.make(size.width, size.height, PixelFormat.Type.PIX_FMT_BGRA);
+			final FramePool pool = new FramePool(size.width, size.height);
+			log.debug("Decoding {}x{} video at {}x{}", picture.getWidth(), picture.getHeight(), size.width, size.height);
+			return p -> {
+				resampler.resample(scaled, p);
+				return copyToFrame(scaled, pool.acquire());
+			};
+		} catch (RuntimeException e) {
+			log.warn("Unable to resample video in the decoder, converting at full size", e);
+			final MediaPictureConverter converter = MediaPictureConverterFactory.createConverter(MediaPictureConverterFactory.HUMBLE_BGR_24, picture);
+			return p -> converter.toImage(null, p);
+		}
+	}
+
+	/**
+	 * Maps the pre-processing resampling filter to the nearest native resampler filter
+	 *
+	 * @param filter the resampling filter
+	 * @return the native resampler flags
+	 */
+	private static int getResamplerFlags(ResamplingFilter filter) {
+		switch (filter) {
+			case Nearest:
+				return MediaPictureResampler.Flag.FLAG_POINT.swigValue();
+			case Bilinear:
+				return MediaPictureResampler.Flag.FLAG_BILINEAR.swigValue();
+			case Lanczos3:
+				return MediaPictureResampler.Flag.FLAG_LANCZOS.swigValue();
+			default:
+				return MediaPictureResampler.Flag.FLAG_AREA.swigValue();
+		}
+	}
+
+	/**
+	 * Copies a BGRA picture into a frame. Read as little endian ints BGRA
+	 * pixels are already in the ARGB order the frame uses.
+	 *
+	 * @param picture the BGRA picture the same size as the frame
+	 * @param frame the frame to copy into
+	 * @return the frame
+	 */
+	private static PooledFrame copyToFrame(MediaPicture picture, PooledFrame frame) {
+		final AtomicReference<JNIReference> ref = new AtomicReference<>(null);
+		try {
+			Buffer data = picture.getData(0);
+			IntBuffer source = data.getByteBuffer(0, picture.getDataPlaneSize(0), ref).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+			int stride = picture.getLineSize(0)/Integer.BYTES;
+			int width = frame.getWidth();
+			int[] pixels = frame.getPixels();
+			for (int y=0; y<frame.getHeight(); ++y) {
+				source.position(y*stride);
+				source.get(pixels, y*width, width);
+			}
+		} finally {
+			if (ref.get() != null) {
+				ref.get().delete();
+			}
+		}
+		return frame;
+	}
+
 	/*
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,63 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A TYPE_INT_RGB video frame backed by a pooled pixel buffer. Once the
+ * frame has been pre-processed (which always copies it) it should be
+ * released so the buffer can be reused for a later frame.
+ */
+public class PooledFrame extends BufferedImage {
+
+	private static final int[] RGB_MASKS = {0xFF0000, 0xFF00, 0xFF};
+
+	private final FramePool pool;
+	private final int[] pixels;
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	PooledFrame(FramePool pool, int[] pixels, int width, int height) {
+		super(new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]),
+				Raster.createPackedRaster(new DataBufferInt(pixels, pixels.length), width, height, width, RGB_MASKS, null), false, null);
+		this.pool = pool;
+		this.pixels = pixels;
+	}
+
+	/**
+	 * Gets the backing pixels for writing the decoded frame into
+	 *
+	 * @return the frame pixels, one int per pixel in row order
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Returns the frame's buffer to its pool, the frame must not be used
+	 * afterwards. Releasing more than once has no effect.
+	 */
+	public void release() {
+		if (released.compareAndSet(false, true)) {
+			pool.release(pixels);
+		}
+	}
+}
@@ -24,6 +24,10 @@ import uk.co.caprica.vlcj.media.MediaEventListener;
 import uk.co.caprica.vlcj.player.base.MediaPlayer;
 import uk.co.caprica.vlcj.player.component.AudioPlayerComponent;
 import uk.co.caprica.vlcj.player.component.EmbeddedMediaPlayerComponent;
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.VideoDecodeEvent;
 import uk.co.silentsoftware.ui.ImageToZxSpec;
 
 import javax.swing.*;
@@ -31,8 +35,6 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
@@ -46,18 +48,6 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 
 	private Logger log = LoggerFactory.getLogger(this.getClass());
 	
-	/**
-	 * Amount of time as a minimum before we can take a single image from the
-	 * video in seconds
-	 */
-	private static final int MINIMUM_INTRO_WAIT = (int)TimeUnit.SECONDS.toMillis(3);
-
-	/**
-	 * Amount of (up to) random time we add to MINIMUM_INTRO_WAIT before we can
-	 * take a single image from the video in seconds.
-	 */
-	private static final int RANDOM_INTRO_WAIT = (int)TimeUnit.SECONDS.toMillis(5);
-	
 	/**
 	 * Amount of time in millis to wait between checks to see if the video has loaded (there
 	 * is no other way unless the VLC UI is displayed).
@@ -68,19 +58,108 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 	 * Amount of time in millis before media load fails
 	 */
 	private static final int MEDIA_PRELOAD_TIMEOUT = MEDIA_PRELOAD_WAIT * 20;
+
+	/**
+	 * Amount of time in millis to wait between checks to see if the player
+	 * has reached the time jumped to
+	 */
+	private static final int SEEK_WAIT = 10;
+
 	private volatile boolean cancel = false;
 	
 	/**
 	 * Converts the specified video file to a series of images and adds them to
-	 * the given shared queue. 
+	 * the given shared queue, snapshotting at the video sampling rate as the
+	 * video plays.
 	 * 
 	 * @param f the video file
-	 * @param singleImage whether just a single preview image is required
 	 * @param sharedQueue the shared processing queue
 	 * @throws InterruptedException if loading is interupted
 	 */
-	public void convertVideoToImages(File f, boolean singleImage, final BlockingQueue<Image> sharedQueue, VideoLoadedLock videoLoadedLock) throws InterruptedException {
+	public void convertVideoToImages(File f, final VideoFrameQueue sharedQueue, VideoLoadedLock videoLoadedLock) throws InterruptedException {
+		EmbeddedMediaPlayerComponent mediaPlayerComponent = new EmbeddedMediaPlayerComponent();
+		JWindow frame = play(f, mediaPlayerComponent);
+		final MediaPlayer player = mediaPlayerComponent.mediaPlayer();
+		long len = player.media().info().duration();
+		frame.setVisible(false);
+		log.debug("Player time: {}, Len: {}", player.status().time(), len);
+		videoLoadedLock.preloadFinished();
+		long sampleRateMillis = Math.max(1, Math.round(1000d/OptionsObject.getInstance().getVideoFramesPerSecond()));
+		long nextSnapshotTime = 0;
+		try {
+			long time;
+			while ((time = player.status().time()) < len) {
+				// Best effort :(
+				if (!player.audio().isMute()) {
+					player.audio().mute();
+				}
+				if (cancel || sharedQueue.isCancelled()) {
+					break;
+				}
+
+				// Wait for the next sample time rather than spinning on the player
+				if (time < nextSnapshotTime) {
+					Thread.sleep(Math.min(nextSnapshotTime - time, sampleRateMillis));
+					continue;
+				}
+				VideoDecodeEvent event = new VideoDecodeEvent();
+				event.begin();
+				long start = System.nanoTime();
+				Image snapshot = player.snapshots().get();
+				Metrics.record(Stage.Read, start);
+				event.commit(this, TimeUnit.MILLISECONDS.toNanos(time));
+				if (!sharedQueue.put(snapshot)) {
+					break;
+				}
+				nextSnapshotTime = time + sampleRateMillis;
+			}
+		} finally {
+			release(mediaPlayerComponent);
+			cancel = false;
+		}
+	}
+
+	/**
+	 * Extracts a single frame by jumping the player to the position once
+	 * playing has started, rather than playing up to it in real time.
+	 * 
+	 * @param f the video file
+	 * @param position how far through the video to take the frame from, 0 (start) to 1 (end)
+	 * @return the frame at or just after the position
+	 * @throws InterruptedException if loading is interupted
+	 */
+	@Override
+	public Image extractFrame(File f, double position) throws InterruptedException {
 		EmbeddedMediaPlayerComponent mediaPlayerComponent = new EmbeddedMediaPlayerComponent();
+		JWindow frame = play(f, mediaPlayerComponent);
+		final MediaPlayer player = mediaPlayerComponent.mediaPlayer();
+		try {
+			long len = player.media().info().duration();
+			long time = Math.round(Math.max(0, len-1) * Math.min(1d, Math.max(0d, position)));
+			player.controls().setTime(time);
+			int seekWait = 0;
+			while (player.status().time() < time && seekWait < MEDIA_PRELOAD_TIMEOUT) {
+				seekWait += SEEK_WAIT;
+				Thread.sleep(SEEK_WAIT);
+			}
+			log.debug("Player time: {}, requested: {}", player.status().time(), time);
+			return player.snapshots().get();
+		} finally {
+			frame.setVisible(false);
+			release(mediaPlayerComponent);
+		}
+	}
+
+	/**
+	 * Starts the video playing muted in a hidden window and waits for
+	 * playing to begin
+	 * 
+	 * @param f the video file
+	 * @param mediaPlayerComponent the player component to play in
+	 * @return the window holding the player
+	 * @throws InterruptedException if loading is interupted
+	 */
+	private JWindow play(File f, EmbeddedMediaPlayerComponent mediaPlayerComponent) throws InterruptedException {
 		JWindow frame = new JWindow();
 		frame.setBounds(0,0,1,1);
 		frame.add(mediaPlayerComponent);
@@ -104,50 +183,23 @@ public class VLCVideoImportEngine implements VideoImportEngine {
 			preloadWait += MEDIA_PRELOAD_WAIT;
 			Thread.sleep(MEDIA_PRELOAD_WAIT);
 		}
-		long len = player.media().info().duration();
-		int singleImageSelectionTime = -1;
-		if (singleImage) {
-			singleImageSelectionTime = new Random().nextInt(RANDOM_INTRO_WAIT) + MINIMUM_INTRO_WAIT;
-			if (singleImageSelectionTime > len) {
-				singleImageSelectionTime = (int) len-1;
-			}
-		}
-		frame.setVisible(false);
-		log.debug("Player time: {}, Len: {}", player.status().time(), len);
-		videoLoadedLock.preloadFinished();
+		return frame;
+	}
+
+	/**
+	 * Stops and releases the player
+	 * 
+	 * @param mediaPlayerComponent the player component to release
+	 */
+	private void release(EmbeddedMediaPlayerComponent mediaPlayerComponent) {
 		try {
-			while (player.status().time() < len) {
-				// Best effort :(
-				if (!player.audio().isMute()) {
-					player.audio().mute();
-				}
-				if (cancel) {
-					break;
-				}
-				
-				// Always add images if we don't want a single preview
-				// image or when the time exceeds the point we want a
-				// single image from
-				if (singleImageSelectionTime == -1 || player.status().time() >= singleImageSelectionTime) {
-					sharedQueue.add(player.snapshots().get());
-	
-					// We only want one image if single image selection
-					// is turned on
-					if (singleImageSelectionTime != -1 && player.status().time() >= singleImageSelectionTime) {
-						break;
-					}
-				}
-			}
-		} finally {
-			try {
-				player.controls().stop();
-				player.release();
-				mediaPlayerComponent.release();
-				cancel = false;
-			} catch (Error e) {
-				// Thrown from release on Win64 for an unknown reason
-				log.warn("Error stopping/releasing video", e);
-			}
+			MediaPlayer player = mediaPlayerComponent.mediaPlayer();
+			player.controls().stop();
+			player.release();
+			mediaPlayerComponent.release();
+		} catch (Error e) {
+			// Thrown from release on Win64 for an unknown reason
+			log.warn("Error stopping/releasing video", e);
 		}
 	}
 	
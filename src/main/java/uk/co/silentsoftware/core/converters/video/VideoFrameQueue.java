@@ -0,0 +1,195 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The queue of sampled frames between a video import engine and the
+ * converter. Its capacity is a memory budget rather than a frame count so
+ * it holds many small frames or a few full size ones, with the engine
+ * blocking while it is full. A taken frame stays charged to the budget
+ * until the converter releases it, so frames being converted count as well
+ * as those waiting. The engine signals the end of the video by finishing
+ * the queue and either side can cancel it, which wakes the other side
+ * straight away.
+ */
+public class VideoFrameQueue {
+
+	private final long capacityBytes;
+	private final Deque<Image> frames = new ArrayDeque<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private long heldBytes = 0;
+	private boolean finished = false;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param capacityBytes the memory budget for queued and unreleased frames,
+	 * a frame bigger than the whole budget is still accepted when no other
+	 * frame is held
+	 */
+	public VideoFrameQueue(long capacityBytes) {
+		this.capacityBytes = capacityBytes;
+	}
+
+	/**
+	 * Adds a frame, waiting while the queue is full
+	 *
+	 * @param frame the frame to add
+	 * @return true if added, false if the queue has been cancelled or finished
+	 * @throws InterruptedException if interrupted whilst waiting
+	 */
+	public boolean put(Image frame) throws InterruptedException {
+		long size = sizeOf(frame);
+		lock.lockInterruptibly();
+		try {
+			while (!cancelled && !finished && heldBytes > 0 && heldBytes+size > capacityBytes) {
+				notFull.await();
+			}
+			if (cancelled || finished) {
+				return false;
+			}
+			frames.add(frame);
+			heldBytes += size;
+			notEmpty.signal();
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes the next frame, waiting until one is available. The frame must
+	 * be released once it is no longer needed.
+	 *
+	 * @return the next frame or null if the video has ended or the queue has been cancelled
+	 * @throws InterruptedException if interrupted whilst waiting
+	 */
+	public Image take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (!cancelled && !finished && frames.isEmpty()) {
+				notEmpty.await();
+			}
+			if (cancelled || frames.isEmpty()) {
+				return null;
+			}
+			return frames.poll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases a taken frame from the budget, waking the engine if it is
+	 * waiting for space. Pooled frames are returned to their pool. Each
+	 * taken frame must be released exactly once.
+	 *
+	 * @param frame the taken frame
+	 */
+	public void release(Image frame) {
+		if (frame instanceof PooledFrame) {
+			((PooledFrame)frame).release();
+		}
+		lock.lock();
+		try {
+			if (!cancelled) {
+				heldBytes -= sizeOf(frame);
+				notFull.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Signals the end of the video, frames already queued can still be taken
+	 */
+	public void finish() {
+		lock.lock();
+		try {
+			finished = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancels the queue, discarding queued frames and waking any waiting
+	 * engine or converter
+	 */
+	public void cancel() {
+		lock.lock();
+		try {
+			cancelled = true;
+			for (Image frame : frames) {
+				if (frame instanceof PooledFrame) {
+					((PooledFrame)frame).release();
+				}
+			}
+			frames.clear();
+			heldBytes = 0;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Gets the number of frames waiting to be taken
+	 *
+	 * @return the queued frame count
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return frames.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Estimates the memory used by a frame
+	 *
+	 * @param frame the frame
+	 * @return the size of the frame's pixel data in bytes
+	 */
+	static long sizeOf(Image frame) {
+		if (frame instanceof BufferedImage) {
+			DataBuffer buffer = ((BufferedImage)frame).getRaster().getDataBuffer();
+			return (long)buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / Byte.SIZE;
+		}
+		return (long)frame.getWidth(null) * frame.getHeight(null) * Integer.BYTES;
+	}
+}
@@ -19,7 +19,6 @@ package uk.co.silentsoftware.core.converters.video;
 import java.awt.Image;
 import java.io.File;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * Interface wrapper for the various Java video libraries
@@ -30,12 +29,22 @@ public interface VideoImportEngine {
 	 * Converts a video file to image frames
 	 * 
 	 * @param f the video file
-	 * @param singleImage whether we just need a single image (for preview)
-	 * @param sharedQueue the concurrent queue for adding the images to
+	 * @param sharedQueue the frame queue for adding the images to, engines stop once it is cancelled
 	 * @param videoLoadedLock lock to delay queue processing until the video is loaded and streaming has started
 	 * @throws Exception if conversion fails for any reason
 	 */
-	void convertVideoToImages(File f, boolean singleImage, final BlockingQueue<Image> sharedQueue, VideoLoadedLock videoLoadedLock) throws Exception;
+	void convertVideoToImages(File f, final VideoFrameQueue sharedQueue, VideoLoadedLock videoLoadedLock) throws Exception;
+
+	/**
+	 * Extracts a single frame from part way through a video, seeking
+	 * straight to it rather than decoding the video up to that point
+	 * 
+	 * @param f the video file
+	 * @param position how far through the video to take the frame from, 0 (start) to 1 (end)
+	 * @return the frame at or just after the position or null if there is no frame
+	 * @throws Exception if extraction fails for any reason
+	 */
+	Image extractFrame(File f, double position) throws Exception;
 
 	/**
 	 * Cancels the frame extraction
@@ -0,0 +1,174 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import uk.co.silentsoftware.core.metrics.Metrics;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Memo of finished 8x8 attribute block pixels keyed by the block's input
+ * pixels and a fingerprint of every setting that affects the result.
+ * Flat backgrounds, letterbox bars and cartoon fills produce many identical
+ * blocks within a frame and across a batch so these skip the per pixel
+ * colour matching entirely. The block's attribute is derived from the
+ * finished pixels so does not need storing separately. GigaScreen blocks
+ * store just the index of their chosen attribute instead.
+ * 
+ * The cache is bounded and safe for concurrent use by the worker threads.
+ */
+public final class BlockCache {
+
+	/**
+	 * Maximum number of blocks held (roughly 10MB)
+	 */
+	static final int MAXIMUM_BLOCKS = 16384;
+
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private static final Cache<Key, int[]> CACHE = Metrics.registerCache("Block", Caffeine.newBuilder().maximumSize(MAXIMUM_BLOCKS).recordStats().build());
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private BlockCache(){}
+
+	/**
+	 * Creates a fingerprint of the settings a block result depends on.
+	 * Each stage using the cache should include something unique to it
+	 * (e.g. its class) so results from different stages never collide.
+	 *
+	 * @param settings the settings (classes, option values) affecting the result
+	 * @return the settings fingerprint
+	 */
+	public static long fingerprint(Object... settings) {
+		long hash = 0;
+		for (Object setting : settings) {
+			hash = mix(hash ^ Objects.hashCode(setting));
+		}
+		return hash;
+	}
+
+	/**
+	 * Creates the key for a block. The pixels are copied so the block can be
+	 * modified after the key is created.
+	 *
+	 * @param fingerprint the settings fingerprint
+	 * @param block the input pixels
+	 * @return the key
+	 */
+	public static Key key(long fingerprint, int[] block) {
+		return new Key(fingerprint, block.clone());
+	}
+
+	/**
+	 * Gets the finished block for the key if it has been memoised. The
+	 * returned pixels are shared and must not be modified.
+	 *
+	 * @param key the block key
+	 * @return the finished pixels or null if not cached
+	 */
+	public static int[] get(Key key) {
+		return CACHE.getIfPresent(key);
+	}
+
+	/**
+	 * Memoises the finished block for the key
+	 *
+	 * @param key the block key
+	 * @param result the finished pixels, copied
+	 */
+	public static void put(Key key, int[] result) {
+		CACHE.put(key, result.clone());
+	}
+
+	/**
+	 * Gets the proportion of lookups that found a memoised block since start up
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public static double getHitRate() {
+		return CACHE.stats().hitRate();
+	}
+
+	/**
+	 * Gets the number of lookups since start up
+	 *
+	 * @return the request count
+	 */
+	public static long getRequestCount() {
+		return CACHE.stats().requestCount();
+	}
+
+	/**
+	 * Removes all memoised blocks
+	 */
+	public static void clear() {
+		CACHE.invalidateAll();
+	}
+
+	private static long mix(long hash) {
+		hash *= HASH_MULTIPLIER;
+		return hash ^ (hash >>> 29);
+	}
+
+	/**
+	 * Block cache key. The 64 bit content hash selects the bucket but
+	 * equality compares the pixels so hash collisions are harmless.
+	 */
+	public static final class Key {
+
+		private final long fingerprint;
+		private final int[] pixels;
+		private final long hash;
+
+		private Key(long fingerprint, int[] pixels) {
+			this.fingerprint = fingerprint;
+			this.pixels = pixels;
+			long h = fingerprint;
+			for (int pixel : pixels) {
+				h = mix(h ^ pixel);
+			}
+			this.hash = h;
+		}
+
+		long getHash() {
+			return hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)o;
+			return hash == other.hash && fingerprint == other.fingerprint && Arrays.equals(pixels, other.pixels);
+		}
+	}
+}
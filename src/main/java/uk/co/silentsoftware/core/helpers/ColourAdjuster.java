@@ -0,0 +1,149 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Applies the contrast, saturation and brightness pre-process settings in a
+ * single pass over an image's pixels. Contrast and brightness use 256 entry
+ * lookup tables matching RescaleOp's results, saturation is adjusted in RGB
+ * space giving the same result as a Color.RGBtoHSB/HSBtoRGB round trip.
+ * 
+ * Images are adjusted in place, operating directly on the pixel array of
+ * integer RGB images and a row at a time for any other image type.
+ */
+public final class ColourAdjuster {
+
+	private static final int LEVELS = 256;
+
+	private static final int MAX_LEVEL = LEVELS-1;
+
+	/**
+	 * Minimum number of rows each parallel band processes
+	 */
+	private static final int MIN_BAND_ROWS = 16;
+
+	private final int[] contrastTable = new int[LEVELS];
+	private final int[] brightnessTable = new int[LEVELS];
+	private final float saturation;
+	private final boolean identity;
+
+	/**
+	 * Creates an adjuster for the given settings
+	 *
+	 * @param contrast the contrast multiplier (1 is unchanged)
+	 * @param saturation the amount to add to the saturation (0 is unchanged)
+	 * @param brightness the amount to add to each component (0 is unchanged)
+	 */
+	public ColourAdjuster(float contrast, float saturation, float brightness) {
+		for (int i=0; i<LEVELS; ++i) {
+			contrastTable[i] = clamp((int)(i*contrast));
+			brightnessTable[i] = clamp((int)(i+brightness));
+		}
+		this.saturation = saturation;
+		this.identity = contrast == 1 && saturation == 0 && brightness == 0;
+	}
+
+	/**
+	 * Adjusts the image in place
+	 *
+	 * @param image the image to adjust
+	 * @param parallel whether to split the image into bands processed in parallel
+	 * @return the adjusted image (the same instance)
+	 */
+	public BufferedImage apply(BufferedImage image, boolean parallel) {
+		if (identity) {
+			return image;
+		}
+		int height = image.getHeight();
+		int bands = parallel ? Math.min(ForkJoinPool.getCommonPoolParallelism(), height/MIN_BAND_ROWS) : 1;
+		if (bands <= 1) {
+			adjustRows(image, 0, height);
+			return image;
+		}
+		int bandRows = (height+bands-1)/bands;
+		IntStream.range(0, bands).parallel().forEach(band -> {
+			int startY = band*bandRows;
+			adjustRows(image, startY, Math.min(height, startY+bandRows));
+		});
+		return image;
+	}
+
+	private void adjustRows(BufferedImage image, int startY, int endY) {
+		int width = image.getWidth();
+		int[] pixels = ImageHelper.getDirectPixels(image);
+		if (pixels != null) {
+			adjust(pixels, startY*width, endY*width);
+			return;
+		}
+		int[] row = new int[width];
+		for (int y=startY; y<endY; ++y) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			adjust(row, 0, width);
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+	}
+
+	private void adjust(int[] pixels, int start, int end) {
+		for (int i=start; i<end; ++i) {
+			pixels[i] = adjust(pixels[i]);
+		}
+	}
+
+	/**
+	 * Adjusts a single pixel, preserving its alpha
+	 *
+	 * @param argb the pixel
+	 * @return the adjusted pixel
+	 */
+	int adjust(int argb) {
+		int red = contrastTable[(argb >> 16) & 0xFF];
+		int green = contrastTable[(argb >> 8) & 0xFF];
+		int blue = contrastTable[argb & 0xFF];
+		if (saturation != 0) {
+			int max = Math.max(red, Math.max(green, blue));
+			if (max != 0) {
+				int min = Math.min(red, Math.min(green, blue));
+				float newSaturation = ColourHelper.correctRange((float)(max-min)/max+saturation, 0, 1);
+				if (max == min) {
+					// Greys have a red hue according to Color.RGBtoHSB
+					red = max;
+					green = blue = toLevel(max*(1-newSaturation));
+				} else {
+					// Hue and brightness stay the same so each component's distance
+					// from the maximum scales with the saturation
+					float scale = newSaturation*max/(max-min);
+					red = toLevel(max-(max-red)*scale);
+					green = toLevel(max-(max-green)*scale);
+					blue = toLevel(max-(max-blue)*scale);
+				}
+			}
+		}
+		return (argb & 0xFF000000) | (brightnessTable[red] << 16) | (brightnessTable[green] << 8) | brightnessTable[blue];
+	}
+
+	private static int toLevel(float value) {
+		return clamp((int)(value+0.5f));
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(MAX_LEVEL, value));
+	}
+}
@@ -20,15 +20,15 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.config.SpectrumDefaults;
-import uk.co.silentsoftware.core.attributestrategy.GigaScreenAttributeStrategy;
 import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy;
-import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute;
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenAttribute.GigaScreenColour;
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette;
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen;
 import uk.co.silentsoftware.core.helpers.colourdistance.LuminanceColourDistance;
+import uk.co.silentsoftware.core.metrics.Metrics;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.awt.image.RescaleOp;
 import java.time.Duration;
 import java.util.List;
 import java.util.*;
@@ -43,9 +43,7 @@ public final class ColourHelper {
 
 	private static final int CACHE_TIME_SECONDS = 10;
 
-	private static final Cache<String, GigaScreenAttribute.GigaScreenColour> CACHE = Caffeine.newBuilder().expireAfterAccess(Duration.ofSeconds(CACHE_TIME_SECONDS)).build();
-
-	private static final Cache<String, int[]> AVERAGE_CACHE = Caffeine.newBuilder().expireAfterAccess(Duration.ofSeconds(CACHE_TIME_SECONDS)).build();
+	private static final Cache<String, int[]> AVERAGE_CACHE = Metrics.registerCache("AverageColour", Caffeine.newBuilder().expireAfterAccess(Duration.ofSeconds(CACHE_TIME_SECONDS)).recordStats().build());
 
 
 	/**
@@ -109,34 +107,15 @@ public final class ColourHelper {
 	}
 
 	/**
-	 * Gets the closest Gigascreen colour from a GigaScreenAttribute
+	 * Gets the closest colour of a GigaScreen attribute
 	 *
 	 * @param rgb the rgb value to find the closest gigascreen colour for
-	 * @param colourSet the attribute containing the colours
-	 * @return the closest matching giga screen colour
+	 * @param palette the GigaScreen palette
+	 * @param attribute the attribute in the palette whose colours to choose from
+	 * @return the closest matching colour of the attribute, 0 to 3
 	 */
-	public static GigaScreenAttribute.GigaScreenColour getClosestGigaScreenColour(int rgb, GigaScreenAttribute colourSet) {
-		String key = getClosestKey(rgb, colourSet, OptionsObject.getInstance().getGigaScreenAttributeStrategy());
-		GigaScreenAttribute.GigaScreenColour cachedColour = CACHE.getIfPresent(key);
-		if (cachedColour != null) {
-			return cachedColour;
-		}
-		final int[] comps = ColourHelper.intToRgbComponents(rgb);
-		double bestMatch = Double.MAX_VALUE;
-		Integer closestMatchPaletteIndex = null;
-		int[] palette = colourSet.getPalette();
-		for (int paletteIndex = 0; paletteIndex < palette.length; ++paletteIndex) {
-			int colour = palette[paletteIndex];
-			final int[] colourSetComps = ColourHelper.intToRgbComponents(colour);
-			double diff = OptionsObject.getInstance().getColourDistanceMode().getColourDistance(comps[0], comps[1], comps[2], colourSetComps);
-			if (diff < bestMatch) {
-				closestMatchPaletteIndex = paletteIndex;
-				bestMatch = diff;
-			}
-		}
-		GigaScreenColour colour = colourSet.getGigaScreenColour(closestMatchPaletteIndex);
-		CACHE.put(key, colour);
-		return colour;
+	public static int getClosestGigaScreenColour(int rgb, GigaScreenPalette palette, int attribute) {
+		return palette.getClosestColour(attribute, rgb, OptionsObject.getInstance().getColourDistanceMode());
 	}
 
 	/**
@@ -207,15 +186,22 @@ public final class ColourHelper {
 	 * Note it is expected that this method will be called AFTER the pixels have
 	 * been changed to Spectrum colours.
 	 *
+	 * If a screen is given the chosen blocks are recorded in it and the image
+	 * is rendered from the screen, so both are guaranteed to be identical.
+	 *
 	 * @param image the image to colour
 	 * @param colourChoiceStrategy the colour choice strategy
+	 * @param screen the attribute screen to populate, may be null
 	 * @return the modified image
 	 */
-	public static BufferedImage colourAttributes(BufferedImage image, ColourChoiceStrategy colourChoiceStrategy) {
+	public static BufferedImage colourAttributes(BufferedImage image, ColourChoiceStrategy colourChoiceStrategy, AttributeScreen screen) {
 
 		// Do not use bidimap because inverse map key values will be lost (i.e. many tallies will produce same key)
 		Map<Integer, Integer> map = new HashMap<>();
 		List<TallyValue> tallyValues = new LinkedList<>();
+		OptionsObject oo = OptionsObject.getInstance();
+		long fingerprint = BlockCache.fingerprint(ColourHelper.class, colourChoiceStrategy.getClass(), oo.getAttributeMode().getClass(),
+				oo.getColourDistanceMode().getClass(), oo.getMonochromeInkIndex(), oo.getMonochromePaperIndex(), oo.getBlackThreshold());
 
 		// Analyse block and choose the two most popular colours in attribute block
 		for (int y = 0; y + ATTRIBUTE_BLOCK_SIZE <= image.getHeight(); y += ATTRIBUTE_BLOCK_SIZE) {
@@ -223,6 +209,12 @@ public final class ColourHelper {
 				map.clear();
 				tallyValues.clear();
 				int outRgb[] = image.getRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, null, 0, ATTRIBUTE_BLOCK_SIZE);
+				BlockCache.Key key = BlockCache.key(fingerprint, outRgb);
+				int[] cached = BlockCache.get(key);
+				if (cached != null) {
+					setBlock(image, screen, x, y, cached);
+					continue;
+				}
 
 				for (int rgb : outRgb) {
 					final int[] comps = intToRgbComponents(rgb);
@@ -245,18 +237,33 @@ public final class ColourHelper {
 				// Enforce attribute favouritism rules on the two spectrum
 				// attribute colours (fixes the problem that colours could be from both the bright
 				// and half bright set).
-				int[] correctedAlphaColours = OptionsObject.getInstance().getAttributeMode().enforceAttributeRule(mostPopularColour, secondMostPopularColour);
+				int[] correctedAlphaColours = oo.getAttributeMode().enforceAttributeRule(mostPopularColour, secondMostPopularColour);
 
 				// Replace all colours in attribute block (which can be any spectrum colours) with the just the popular two
 				for (int i = 0; i < outRgb.length; ++i) {
 					outRgb[i] = colourChoiceStrategy.chooseBestPaletteMatch(outRgb[i], correctedAlphaColours);
 				}
-				image.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+				BlockCache.put(key, outRgb);
+				setBlock(image, screen, x, y, outRgb);
 			}
 		}
+		if (screen != null) {
+			screen.render(image);
+		}
 		return image;
 	}
 
+	/**
+	 * Writes a finished attribute block to the screen if present, otherwise the image
+	 */
+	private static void setBlock(BufferedImage image, AttributeScreen screen, int x, int y, int[] outRgb) {
+		if (screen != null) {
+			screen.setBlock(x / ATTRIBUTE_BLOCK_SIZE, y / ATTRIBUTE_BLOCK_SIZE, outRgb);
+		} else {
+			image.setRGB(x, y, ATTRIBUTE_BLOCK_SIZE, ATTRIBUTE_BLOCK_SIZE, outRgb, 0, ATTRIBUTE_BLOCK_SIZE);
+		}
+	}
+
 	/**
 	 * Determines whether the colour is from the Spectrum's bright or half
 	 * bright colour set.
@@ -277,75 +284,6 @@ public final class ColourHelper {
 		return false;
 	}
 
-	/**
-	 * Changes the contrast of an image
-	 *
-	 * @see java.awt.image.RescaleOp
-	 *
-	 * @param img the image to change the contrast of
-	 * @param amount the amount to change it (scale factor)
-	 * @return the modified image
-	 */
-	public static BufferedImage changeContrast(BufferedImage img, float amount) {
-		if (amount == 1) {
-			return img;
-		}
-		RescaleOp rescaleOp = new RescaleOp(amount, 0, null);
-		return rescaleOp.filter(img, null);
-	}
-
-	/**
-	 * Changes brightness by increasing all pixel values by a given amount
-	 *
-	 * @see java.awt.image.RescaleOp
-	 *
-	 * @param img the image to change the brightness of
-	 * @param amount the amount to change it
-	 * @return the modified image
-	 */
-	public static BufferedImage changeBrightness(BufferedImage img, float amount) {
-		if (amount == 0) {
-			return img;
-		}
-		RescaleOp rescaleOp = new RescaleOp(1, amount, null);
-		return rescaleOp.filter(img, null);
-	}
-
-	/**
-	 * Changes image saturation by a given amount
-	 *
-	 * @param img the image to change
-	 * @param amount the amount of saturation (0-1 range)
-	 * @return the modified image
-	 */
-	public static BufferedImage changeSaturation(BufferedImage img, float amount) {
-		if (amount == 0) {
-			return img;
-		}
-		for (int y = 0; y < img.getHeight(); ++y) {
-			for (int x = 0; x < img.getWidth(); ++x) {
-				img.setRGB(x, y, changePixelSaturation(img.getRGB(x, y), amount));
-			}
-		}
-		return img;
-	}
-
-	/**
-	 * Changes the saturation of an individual pixel by the given amount (0-1
-	 * range)
-	 *
-	 * @param pixel the pixel rgb to saturate
-	 * @param amount the amount to saturate
-	 * @return the modified rgb pixel
-	 */
-	private static int changePixelSaturation(int pixel, float amount) {
-		int[] rgb = intToRgbComponents(pixel);
-		float[] hsb = Color.RGBtoHSB(rgb[0], rgb[1], rgb[2], null);
-		hsb[1] += amount;
-		float saturation = correctRange(hsb[1], 0, 1);
-		return Color.HSBtoRGB(hsb[0], saturation, hsb[2]);
-	}
-
 	/**
 	 * Ensures a value is within a given range. If it exceeds or is below it is
 	 * set to the high value or low value respectively
@@ -416,65 +354,8 @@ public final class ColourHelper {
 		return ColourHelper.correctRange(component, 0, MAXIMUM_COMPONENT_VALUE);
 	}
 
-	/**
-	 * Returns an array of black and white colours representing the ink (black)
-	 * and paper (white) monochrome colours.
-	 *
-	 * Opposite function to getMonochromeFromBlackAndWhite
-	 *
-	 * @param image the monochrome image to scan
-	 * @return an array of black and white rgb values
-	 */
-	public static int[] getBlackAndWhiteFromMonochrome(int[] image) {
-		int[] copy = Arrays.copyOf(image, image.length);
-		for (int i = 0; i < copy.length; ++i) {
-			if (copy[i] == SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[OptionsObject.getInstance().getMonochromePaperIndex()]) {
-				copy[i] = Color.WHITE.getRGB();
-			} else {
-				copy[i] = Color.BLACK.getRGB();
-			}
-		}
-		return copy;
-	}
-
-	/**
-	 * Returns an array of monochrome (chosen ink and paper) colours based on an
-	 * input array of black (ink) and white (paper).
-	 *
-	 * Opposite function to getBlackAndWhiteFromMonochrome
-	 *
-	 * @param data the black and white array to get the monochrome colours for
-	 * @return the equivalent monochrome array
-	 */
-	public static int[] getMonochromeFromBlackAndWhite(final int[] data) {
-		int[] copy = Arrays.copyOf(data, data.length);
-		for (int i = 0; i < copy.length; ++i) {
-			copy[i] = getMonochromeFromBlackAndWhite(copy[i]);
-		}
-		return copy;
-	}
-
-	/**
-	 * Returns an a monochrome (chosen ink and paper) colour based on an
-	 * input array of black (ink) and white (paper).
-	 *
-	 * @param original the black and white rgb value to get the monochrome colour for
-	 * @return the equivalent monochrome colour
-	 */
-	public static int getMonochromeFromBlackAndWhite(int original) {
-		OptionsObject oo = OptionsObject.getInstance();
-		if (original == Color.WHITE.getRGB()) {
-			return SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromePaperIndex()];
-		}
-		return SpectrumDefaults.SPECTRUM_COLOURS_BRIGHT[oo.getMonochromeInkIndex()];
-	}
-
 	private static String getAverageKey(int[] palette) {
 		return "pal"+Arrays.hashCode(palette);
 	}
 
-	private static String getClosestKey(int rgb, GigaScreenAttribute attribute, GigaScreenAttributeStrategy attributeStrategy) {
-		return rgb+"-"+attribute.hashCode()+"-"+attributeStrategy.hashCode();
-	}
-
 }
@@ -19,11 +19,16 @@ package uk.co.silentsoftware.core.helpers;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ResamplingFilter;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
@@ -41,7 +46,7 @@ public final class ImageHelper {
 	private ImageHelper() {}
 
 	/**
-	 * Scale an image to a given width and height with fast scaling
+	 * Scale an image to a given width and height with fast (nearest neighbour) scaling
 	 * 
 	 * @param img the image to scale
 	 * @param width the width to scale to, or -1 to use full Spectrum width
@@ -49,11 +54,11 @@ public final class ImageHelper {
 	 * @return the resized image
 	 */
 	public static BufferedImage quickScaleImage(Image img, int width, int height) {
-		return scaleImage(img, width, height, BufferedImage.SCALE_FAST);
+		return scaleImage(img, width, height, ResamplingFilter.Nearest);
 	}
 
 	/**
-	 * Scale an image to a given width and height with smooth scaling
+	 * Scale an image to a given width and height with smooth (area average) scaling
 	 *
 	 * @param img the image to scale
 	 * @param width the width to scale to, or -1 to use full Spectrum width
@@ -61,19 +66,21 @@ public final class ImageHelper {
 	 * @return the resized image
 	 */
 	public static BufferedImage smoothScaleImage(Image img, int width, int height) {
-		return scaleImage(img, width, height, BufferedImage.SCALE_SMOOTH);
+		return scaleImage(img, width, height, ResamplingFilter.AreaAverage);
 	}
 
 	/**
-	 * Scale an image to a given width and height with the given scaling mode
+	 * Scale an image to a given width and height with the given resampling filter.
+	 * If only one dimension is -1 the image is scaled proportionally and placed
+	 * top left on a canvas of the full Spectrum size in that dimension.
 	 *
 	 * @param img the image to scale
 	 * @param width the width to scale to, or -1 to use full Spectrum width
 	 * @param height the height to scale to, or -1 to use full Spectrum height
-	 * @param scalingMode the BufferedImage scaling option
+	 * @param filter the resampling filter
 	 * @return the resized image
 	 */
-	private static BufferedImage scaleImage(Image img, int width, int height, int scalingMode) {
+	public static BufferedImage scaleImage(Image img, int width, int height, ResamplingFilter filter) {
 
 		int imgWidth = img.getWidth(null);
 		int imgHeight = img.getHeight(null);
@@ -83,24 +90,53 @@ public final class ImageHelper {
 			return copyImage(img);
 		}
 
-		// TODO: Consider re-write in a formal way, using -1 as undefined is a bit shabby
+		Dimension scaledSize = getScaledSize(imgWidth, imgHeight, width, height);
 		if (-1 == width && -1 == height) {
-			width = SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE * ((imgWidth / SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE));
-			height = SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE * ((imgHeight / SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE));
+			width = scaledSize.width;
+			height = scaledSize.height;
 		}
 		log.debug("Original width and height {}x{}, new width and height {}x{}", imgWidth, imgHeight, width, height);
-		final Image scaled = img.getScaledInstance(width, height, scalingMode);
 		if (-1 == width) {
 			width = SpectrumDefaults.SCREEN_WIDTH;
 		}
 		if (-1 == height) {
 			height = SpectrumDefaults.SCREEN_HEIGHT;
 		}
+		BufferedImage source = img instanceof BufferedImage && !((BufferedImage)img).getColorModel().hasAlpha() ? (BufferedImage)img : copyImage(img);
+		BufferedImage scaled = Resampler.resample(source, scaledSize.width, scaledSize.height, filter);
+		if (scaledSize.width == width && scaledSize.height == height) {
+			return scaled;
+		}
 		BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 		copyImage(scaled, copy);
 		return copy;
 	}
 
+	/**
+	 * Gets the size an image is scaled to for the given scaling dimensions,
+	 * before any placement on a Spectrum sized canvas
+	 *
+	 * @param imgWidth the image width
+	 * @param imgHeight the image height
+	 * @param width the width to scale to, or -1 to scale proportionally to the height
+	 * @param height the height to scale to, or -1 to scale proportionally to the width
+	 * @return the scaled size, if both dimensions are -1 the image size rounded down to whole attribute blocks
+	 */
+	public static Dimension getScaledSize(int imgWidth, int imgHeight, int width, int height) {
+		// TODO: Consider re-write in a formal way, using -1 as undefined is a bit shabby
+		if (-1 == width && -1 == height) {
+			return new Dimension(SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE * ((imgWidth / SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE)),
+					SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE * ((imgHeight / SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE)));
+		}
+		if (-1 == width) {
+			return new Dimension(Math.max(1, imgWidth*height/imgHeight), height);
+		}
+		if (-1 == height) {
+			return new Dimension(width, Math.max(1, imgHeight*width/imgWidth));
+		}
+		return new Dimension(width, height);
+	}
+
 	/**
 	 * Convenience method for copying an image without passing in an image to
 	 * copy to.
@@ -150,6 +186,27 @@ public final class ImageHelper {
 	}
 
 
+	/**
+	 * Gets the image's backing pixel array if it is a packed integer RGB
+	 * image that can be written to directly
+	 *
+	 * @param image the image
+	 * @return the pixels or null if not directly accessible
+	 */
+	static int[] getDirectPixels(BufferedImage image) {
+		int type = image.getType();
+		if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB) {
+			return null;
+		}
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		if (raster.getParent() != null || buffer.getOffset() != 0 || !(buffer instanceof DataBufferInt)
+				|| ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride() != image.getWidth()) {
+			return null;
+		}
+		return ((DataBufferInt)buffer).getData();
+	}
+
 	/**
 	 * Prepares the main preview window image prior to rendering (puts the preprocessed image left, processed
 	 * image right, does any scaling necessary to fit the screen)
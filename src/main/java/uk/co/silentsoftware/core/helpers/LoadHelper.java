@@ -0,0 +1,126 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.silentsoftware.config.SpectrumDefaults;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Reads images decoding only as many pixels as the conversion needs.
+ * Large photos are subsampled by the image reader as they are decoded
+ * so a 40 megapixel image never exists in memory at full size only
+ * to be scaled to 256x192 straight after.
+ */
+public final class LoadHelper {
+
+	private static final Logger log = LoggerFactory.getLogger(LoadHelper.class);
+
+	/**
+	 * The decoded image is kept at least this many times the target size
+	 * so the final resample still has several source pixels per output pixel
+	 */
+	private static final int SUBSAMPLE_MARGIN = 2;
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private LoadHelper(){}
+
+	/**
+	 * Reads an image that will be scaled to the given size, using the same
+	 * -1 conventions as ImageHelper.scaleImage. The returned image is at least
+	 * large enough for that scaling so still needs scaling to the exact size.
+	 *
+	 * @param f the image file
+	 * @param width the width it will be scaled to, or -1 for proportional/none
+	 * @param height the height it will be scaled to, or -1 for proportional/none
+	 * @return the image or null if the file is not a supported image format
+	 * @throws IOException if the file cannot be read
+	 */
+	public static BufferedImage readImage(File f, int width, int height) throws IOException {
+		try (ImageInputStream iis = ImageIO.createImageInputStream(f)) {
+			if (iis == null) {
+				throw new IOException("Unable to open "+f);
+			}
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+			if (!readers.hasNext()) {
+				return null;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(iis, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				configureParam(param, reader.getWidth(0), reader.getHeight(0), width, height);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Sets the subsampling and, for proportional scaling where the scaled image
+	 * would overflow the Spectrum screen, the region of the image to decode
+	 *
+	 * @param param the read parameters to configure
+	 * @param imgWidth the image width
+	 * @param imgHeight the image height
+	 * @param width the target width or -1
+	 * @param height the target height or -1
+	 */
+	static void configureParam(ImageReadParam param, int imgWidth, int imgHeight, int width, int height) {
+		if (width == -1 && height == -1) {
+			return;
+		}
+		int subsampling = Integer.MAX_VALUE;
+		if (width != -1) {
+			subsampling = Math.min(subsampling, imgWidth/(width*SUBSAMPLE_MARGIN));
+		}
+		if (height != -1) {
+			subsampling = Math.min(subsampling, imgHeight/(height*SUBSAMPLE_MARGIN));
+		}
+		subsampling = Math.max(1, subsampling);
+
+		// Proportional scaling crops whatever falls off the bottom or right of the
+		// screen so it need not be decoded, allowing a few pixels for subsampling rounding
+		int regionWidth = imgWidth;
+		int regionHeight = imgHeight;
+		if (height == -1) {
+			regionHeight = Math.min(imgHeight, (int)Math.ceil((double)SpectrumDefaults.SCREEN_HEIGHT*imgWidth/width)+subsampling*2);
+		} else if (width == -1) {
+			regionWidth = Math.min(imgWidth, (int)Math.ceil((double)SpectrumDefaults.SCREEN_WIDTH*imgHeight/height)+subsampling*2);
+		}
+		if (regionWidth != imgWidth || regionHeight != imgHeight) {
+			param.setSourceRegion(new Rectangle(0, 0, regionWidth, regionHeight));
+		}
+		if (subsampling > 1) {
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+		log.debug("Decoding {}x{} region of {}x{} image with subsampling {}", regionWidth, regionHeight, imgWidth, imgHeight, subsampling);
+	}
+}
@@ -0,0 +1,198 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimal indexed (palette) PNG writer for converted output images.
+ * Spectrum images only contain 15 colours (GigaScreen slightly more) so
+ * writing them as 4 or 8 bit indexed PNGs is far smaller and faster than
+ * ImageIO's 32 bit truecolour output.
+ *
+ * @see <a href="https://www.w3.org/TR/png/">https://www.w3.org/TR/png/</a>
+ */
+public final class PngHelper {
+
+	private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	/**
+	 * Maximum number of colours in a PNG palette
+	 */
+	private static final int MAX_PALETTE_SIZE = 256;
+
+	/**
+	 * Maximum number of colours that fit a 4 bit palette
+	 */
+	private static final int MAX_4_BIT_PALETTE_SIZE = 16;
+
+	private static final int COLOUR_TYPE_INDEXED = 3;
+
+	private static final int FILTER_NONE = 0;
+
+	/**
+	 * Deflaters are expensive to create (native memory) so reuse one per export thread
+	 */
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private PngHelper(){}
+
+	/**
+	 * Writes the image as an indexed PNG if it is opaque and has 256 colours
+	 * or fewer. Nothing is written if the image cannot be indexed.
+	 *
+	 * @param image the image to write
+	 * @param out the stream to write to
+	 * @param compressionLevel the deflate compression level (0-9)
+	 * @return true if written, false if the image has too many colours or transparency
+	 * @throws IOException if the write fails
+	 */
+	public static boolean writeIndexed(BufferedImage image, OutputStream out, int compressionLevel) throws IOException {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] palette = new int[MAX_PALETTE_SIZE];
+		int paletteSize = 0;
+		byte[] indexes = new byte[width*height];
+		int[] row = new int[width];
+		int lastRgb = 0;
+		int lastIndex = -1;
+		for (int y=0; y<height; ++y) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (int x=0; x<width; ++x) {
+				int rgb = row[x];
+				if (lastIndex == -1 || rgb != lastRgb) {
+					if ((rgb >>> 24) != 0xFF) {
+						return false;
+					}
+					lastIndex = indexOf(palette, paletteSize, rgb);
+					if (lastIndex == -1) {
+						if (paletteSize == MAX_PALETTE_SIZE) {
+							return false;
+						}
+						palette[paletteSize] = rgb;
+						lastIndex = paletteSize++;
+					}
+					lastRgb = rgb;
+				}
+				indexes[y*width+x] = (byte)lastIndex;
+			}
+		}
+		int bitDepth = paletteSize <= MAX_4_BIT_PALETTE_SIZE ? 4 : 8;
+
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.write(SIGNATURE);
+		writeHeader(dos, width, height, bitDepth);
+		writePalette(dos, palette, paletteSize);
+		writeChunk(dos, "IDAT", deflate(indexes, width, height, bitDepth, compressionLevel));
+		writeChunk(dos, "IEND", new byte[0]);
+		dos.flush();
+		return true;
+	}
+
+	private static int indexOf(int[] palette, int paletteSize, int rgb) {
+		for (int i=0; i<paletteSize; ++i) {
+			if (palette[i] == rgb) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void writeHeader(DataOutputStream dos, int width, int height, int bitDepth) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(width);
+		data.writeInt(height);
+		data.writeByte(bitDepth);
+		data.writeByte(COLOUR_TYPE_INDEXED);
+		data.writeByte(0); // deflate compression
+		data.writeByte(0); // adaptive filtering
+		data.writeByte(0); // no interlace
+		writeChunk(dos, "IHDR", header.toByteArray());
+	}
+
+	private static void writePalette(DataOutputStream dos, int[] palette, int paletteSize) throws IOException {
+		byte[] plte = new byte[paletteSize*3];
+		for (int i=0; i<paletteSize; ++i) {
+			plte[i*3] = (byte)(palette[i] >> 16);
+			plte[i*3+1] = (byte)(palette[i] >> 8);
+			plte[i*3+2] = (byte)palette[i];
+		}
+		writeChunk(dos, "PLTE", plte);
+	}
+
+	/**
+	 * Packs the palette indexes into scanlines and deflates them. Filtering
+	 * is not used since it rarely helps palette images.
+	 *
+	 * @param indexes the palette index for each pixel
+	 * @param width the image width
+	 * @param height the image height
+	 * @param bitDepth 4 or 8 bits per pixel
+	 * @param compressionLevel the deflate level
+	 * @return the deflated image data
+	 * @throws IOException if compression fails
+	 */
+	private static byte[] deflate(byte[] indexes, int width, int height, int bitDepth, int compressionLevel) throws IOException {
+		int scanlineLength = bitDepth == 8 ? width : (width+1)/2;
+		byte[] scanline = new byte[scanlineLength+1];
+		scanline[0] = FILTER_NONE;
+		Deflater deflater = DEFLATER.get();
+		deflater.reset();
+		deflater.setLevel(compressionLevel);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(indexes.length/4);
+		try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater)) {
+			for (int y=0; y<height; ++y) {
+				int offset = y*width;
+				if (bitDepth == 8) {
+					System.arraycopy(indexes, offset, scanline, 1, width);
+				} else {
+					for (int x=0; x<width; x+=2) {
+						int high = indexes[offset+x] << 4;
+						int low = x+1 < width ? indexes[offset+x+1] : 0;
+						scanline[1+x/2] = (byte)(high | low);
+					}
+				}
+				dos.write(scanline);
+			}
+			dos.finish();
+		}
+		return compressed.toByteArray();
+	}
+
+	private static void writeChunk(DataOutputStream dos, String type, byte[] data) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		dos.writeInt(data.length);
+		dos.write(typeBytes);
+		dos.write(data);
+		dos.writeInt((int)crc.getValue());
+	}
+}
@@ -0,0 +1,259 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import uk.co.silentsoftware.config.ResamplingFilter;
+import uk.co.silentsoftware.core.metrics.Metrics;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Separable image resampler working directly on integer RGB pixels. Images
+ * are scaled horizontally then vertically using per axis filter weights that
+ * depend only on the filter and the source and target sizes, so the weights
+ * are cached and reused for every frame of a video.
+ * 
+ * Large images are processed in parallel row bands on the common fork join pool.
+ */
+public final class Resampler {
+
+	/**
+	 * Minimum number of rows each parallel band processes
+	 */
+	private static final int MIN_BAND_ROWS = 16;
+
+	/**
+	 * Images with fewer source pixels than this are scaled on the calling thread
+	 */
+	private static final int PARALLEL_PIXELS = 512*384;
+
+	private static final int MAX_WEIGHT_SETS = 32;
+
+	private static final int LANCZOS_LOBES = 3;
+
+	private static final Cache<String, Weights> WEIGHTS = Metrics.registerCache("ResamplerWeights", Caffeine.newBuilder().maximumSize(MAX_WEIGHT_SETS).recordStats().build());
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private Resampler(){}
+
+	/**
+	 * Resamples an image to the given size. Any transparency
+	 * should already have been flattened.
+	 *
+	 * @param image the image to resample
+	 * @param width the target width
+	 * @param height the target height
+	 * @param filter the resampling filter
+	 * @return a new TYPE_INT_RGB image of the target size
+	 */
+	public static BufferedImage resample(BufferedImage image, int width, int height, ResamplingFilter filter) {
+		int srcWidth = image.getWidth();
+		int srcHeight = image.getHeight();
+		int[] src = ImageHelper.getDirectPixels(image);
+		if (src == null) {
+			src = image.getRGB(0, 0, srcWidth, srcHeight, null, 0, srcWidth);
+		}
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] dest = ImageHelper.getDirectPixels(result);
+		Weights horizontal = getWeights(filter, srcWidth, width);
+		Weights vertical = getWeights(filter, srcHeight, height);
+		boolean parallel = srcWidth*srcHeight >= PARALLEL_PIXELS;
+		if (filter == ResamplingFilter.Nearest) {
+			final int[] source = src;
+			forEachBand(height, parallel, y -> {
+				int srcOffset = vertical.starts[y]*srcWidth;
+				for (int x=0; x<width; ++x) {
+					dest[y*width+x] = source[srcOffset+horizontal.starts[x]];
+				}
+			});
+			return result;
+		}
+
+		// Intermediate result is kept as floats so negative lobes are not clipped early
+		float[] intermediate = new float[srcHeight*width*3];
+		final int[] source = src;
+		forEachBand(srcHeight, parallel, y -> resampleRow(source, y*srcWidth, intermediate, y*width*3, width, horizontal));
+		forEachBand(height, parallel, y -> {
+			float[] row = new float[width*3];
+			int start = vertical.starts[y];
+			for (int t=0; t<vertical.taps; ++t) {
+				float weight = vertical.weights[y*vertical.taps+t];
+				if (weight != 0) {
+					int offset = (start+t)*width*3;
+					for (int i=0; i<row.length; ++i) {
+						row[i] += intermediate[offset+i]*weight;
+					}
+				}
+			}
+			for (int x=0; x<width; ++x) {
+				dest[y*width+x] = 0xFF000000 | (toLevel(row[x*3]) << 16) | (toLevel(row[x*3+1]) << 8) | toLevel(row[x*3+2]);
+			}
+		});
+		return result;
+	}
+
+	private static void resampleRow(int[] src, int srcOffset, float[] dest, int destOffset, int width, Weights weights) {
+		for (int x=0; x<width; ++x) {
+			float red = 0, green = 0, blue = 0;
+			int start = weights.starts[x];
+			for (int t=0; t<weights.taps; ++t) {
+				float weight = weights.weights[x*weights.taps+t];
+				int rgb = src[srcOffset+start+t];
+				red += ((rgb >> 16) & 0xFF)*weight;
+				green += ((rgb >> 8) & 0xFF)*weight;
+				blue += (rgb & 0xFF)*weight;
+			}
+			dest[destOffset+x*3] = red;
+			dest[destOffset+x*3+1] = green;
+			dest[destOffset+x*3+2] = blue;
+		}
+	}
+
+	private static void forEachBand(int rows, boolean parallel, IntConsumer rowAction) {
+		int bands = parallel ? Math.min(ForkJoinPool.getCommonPoolParallelism(), rows/MIN_BAND_ROWS) : 1;
+		if (bands <= 1) {
+			for (int y=0; y<rows; ++y) {
+				rowAction.accept(y);
+			}
+			return;
+		}
+		int bandRows = (rows+bands-1)/bands;
+		IntStream.range(0, bands).parallel().forEach(band -> {
+			for (int y=band*bandRows; y<Math.min(rows, (band+1)*bandRows); ++y) {
+				rowAction.accept(y);
+			}
+		});
+	}
+
+	private static Weights getWeights(ResamplingFilter filter, int srcSize, int destSize) {
+		return WEIGHTS.get(filter.name()+"-"+srcSize+"-"+destSize, key -> createWeights(filter, srcSize, destSize));
+	}
+
+	/**
+	 * Calculates the source pixels and their weights contributing to each
+	 * target pixel along one axis
+	 *
+	 * @param filter the resampling filter
+	 * @param srcSize the source size
+	 * @param destSize the target size
+	 * @return the weights
+	 */
+	static Weights createWeights(ResamplingFilter filter, int srcSize, int destSize) {
+		double scale = (double)srcSize/destSize;
+		if (filter == ResamplingFilter.Nearest) {
+			// Same source pixel choice as Image.SCALE_FAST
+			int[] starts = new int[destSize];
+			for (int i=0; i<destSize; ++i) {
+				starts[i] = (int)((2L*i*srcSize+srcSize)/(2L*destSize));
+			}
+			return new Weights(starts, 1, new float[]{1});
+		}
+		if (filter == ResamplingFilter.AreaAverage) {
+			return createAreaWeights(srcSize, destSize, scale);
+		}
+
+		// Kernels are widened when downscaling so every source pixel contributes
+		double filterScale = Math.max(1, scale);
+		double support = (filter == ResamplingFilter.Lanczos3 ? LANCZOS_LOBES : 1)*filterScale;
+		int taps = Math.min(srcSize, (int)Math.ceil(support*2)+1);
+		int[] starts = new int[destSize];
+		float[] weights = new float[destSize*taps];
+		for (int i=0; i<destSize; ++i) {
+			double centre = (i+0.5)*scale-0.5;
+			int start = Math.max(0, Math.min(srcSize-taps, (int)Math.floor(centre-support)+1));
+			starts[i] = start;
+			double total = 0;
+			for (int t=0; t<taps; ++t) {
+				double distance = (start+t-centre)/filterScale;
+				double weight = filter == ResamplingFilter.Lanczos3 ? lanczos(distance) : Math.max(0, 1-Math.abs(distance));
+				weights[i*taps+t] = (float)weight;
+				total += weight;
+			}
+			normalise(weights, i*taps, taps, total);
+		}
+		return new Weights(starts, taps, weights);
+	}
+
+	/**
+	 * Area average weights are each source pixel's overlap with the target pixel
+	 */
+	private static Weights createAreaWeights(int srcSize, int destSize, double scale) {
+		int taps = Math.min(srcSize, (int)Math.ceil(scale)+1);
+		int[] starts = new int[destSize];
+		float[] weights = new float[destSize*taps];
+		for (int i=0; i<destSize; ++i) {
+			double left = i*scale;
+			double right = (i+1)*scale;
+			int start = Math.min(srcSize-taps, (int)Math.floor(left));
+			starts[i] = start;
+			double total = 0;
+			for (int t=0; t<taps; ++t) {
+				int pixel = start+t;
+				double weight = Math.max(0, Math.min(right, pixel+1)-Math.max(left, pixel));
+				weights[i*taps+t] = (float)weight;
+				total += weight;
+			}
+			normalise(weights, i*taps, taps, total);
+		}
+		return new Weights(starts, taps, weights);
+	}
+
+	private static void normalise(float[] weights, int offset, int taps, double total) {
+		for (int t=0; t<taps; ++t) {
+			weights[offset+t] = (float)(weights[offset+t]/total);
+		}
+	}
+
+	private static double lanczos(double x) {
+		if (x == 0) {
+			return 1;
+		}
+		if (Math.abs(x) >= LANCZOS_LOBES) {
+			return 0;
+		}
+		double px = Math.PI*x;
+		return LANCZOS_LOBES*Math.sin(px)*Math.sin(px/LANCZOS_LOBES)/(px*px);
+	}
+
+	private static int toLevel(float value) {
+		return Math.max(0, Math.min(255, (int)(value+0.5f)));
+	}
+
+	/**
+	 * The contributing source pixels for each target pixel along an axis,
+	 * a fixed number of taps from each start position
+	 */
+	static final class Weights {
+
+		final int[] starts;
+		final int taps;
+		final float[] weights;
+
+		private Weights(int[] starts, int taps, float[] weights) {
+			this.starts = starts;
+			this.taps = taps;
+			this.weights = weights;
+		}
+	}
+}
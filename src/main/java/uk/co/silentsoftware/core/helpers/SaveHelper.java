@@ -28,6 +28,7 @@ import javax.imageio.ImageIO;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.silentsoftware.config.OptionsObject;
 
 public class SaveHelper {
 	
@@ -37,6 +38,8 @@ public class SaveHelper {
 	 * The default file format and pre-suffix ".zx."
 	 */
 	public static final String FILE_SUFFIX = ".zx.";
+
+	private static final String PNG_FORMAT = "png";
 	
 	/**
 	 * Write an image directly to the specified file deleting
@@ -44,6 +47,9 @@ public class SaveHelper {
 	 * 
 	 * Follows the format [destFolder]/[fileName].zx.[formatName]
 	 * 
+	 * PNGs are written as indexed (palette) images where possible since 
+	 * converted images only use a handful of Spectrum colours.
+	 * 
 	 * @param output the image to output
 	 * @param destFolder the folder to write the image to
 	 * @param fileName the file name of the image
@@ -58,7 +64,10 @@ public class SaveHelper {
 		deleteFileIfExists(destFile);
 		log.debug("Writing image to {} with format {}", destFile, formatName);
 		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(destFile))) {
-			ImageIO.write(output, formatName, out);
+			if (!PNG_FORMAT.equalsIgnoreCase(formatName) 
+					|| !PngHelper.writeIndexed(output, out, OptionsObject.getInstance().getPngCompressionLevel())) {
+				ImageIO.write(output, formatName, out);
+			}
 		} catch(IOException io) {
 			log.error("Unable to save byte data for file {}", destFile, io);	
 			throw io;
@@ -0,0 +1,72 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for an export of a converted frame, a file write
+ * or a frame added to the animated gif or tape. Stopping the export also
+ * records its latency as the Export stage in the metrics, whether or not
+ * the event is enabled.
+ */
+@Name("uk.co.silentsoftware.Export")
+@Label("Export")
+@Description("Export of a converted frame")
+@Category({"Image to ZX Spec", "Export"})
+@StackTrace(false)
+public class ExportEvent extends Event {
+
+	@Label("Export")
+	String export;
+
+	private final transient long startNanos = System.nanoTime();
+
+	/**
+	 * @param export the description of what was exported
+	 */
+	private ExportEvent(String export) {
+		this.export = export;
+	}
+
+	/**
+	 * Starts timing an export
+	 *
+	 * @param export the description of what is exported
+	 * @return the started export event
+	 */
+	public static ExportEvent start(String export) {
+		ExportEvent event = new ExportEvent(export);
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the export, recording its latency and committing the event if enabled
+	 */
+	public void stop() {
+		Metrics.record(Stage.Export, startNanos);
+		if (shouldCommit()) {
+			commit();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event spanning the conversion of one frame, from the
+ * original image to the converted result and any SCR data. Like all the
+ * conversion events it costs next to nothing unless enabled in the
+ * recording's settings.
+ */
+@Name("uk.co.silentsoftware.FrameConversion")
+@Label("Frame Conversion")
+@Description("Conversion of a single image or video frame")
+@Category({"Image to ZX Spec", "Conversion"})
+@StackTrace(false)
+public class FrameConversionEvent extends Event {
+
+	@Label("Frame Id")
+	String frameId;
+
+	@Label("Dither Strategy")
+	String ditherStrategy;
+
+	@Label("Colour Mode")
+	String colourMode;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	/**
+	 * Commits the event if it is enabled and over any duration threshold,
+	 * the settings are only described when it is
+	 *
+	 * @param frameId the frame's output name
+	 * @param ditherStrategy the dither strategy
+	 * @param colourMode the colour mode
+	 * @param width the original image width
+	 * @param height the original image height
+	 */
+	public void commit(String frameId, Object ditherStrategy, Object colourMode, int width, int height) {
+		if (shouldCommit()) {
+			this.frameId = frameId;
+			this.ditherStrategy = String.valueOf(ditherStrategy);
+			this.colourMode = String.valueOf(colourMode);
+			this.width = width;
+			this.height = height;
+			commit();
+		}
+	}
+}
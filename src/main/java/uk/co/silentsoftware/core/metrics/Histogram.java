@@ -0,0 +1,148 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free log-linear histogram of non-negative values in the style of
+ * HdrHistogram. Each power of two range is split into equal sub buckets so
+ * every recorded value is held to within about 6% of its true value, from
+ * nanoseconds up to the full long range, in a fixed 8KB of buckets.
+ * Recording never allocates or blocks so it is safe on the hot path.
+ */
+public class Histogram {
+
+	/**
+	 * Sub buckets per power of two, 2^SUB_BUCKET_BITS
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKETS = (Long.SIZE-SUB_BUCKET_BITS+1)*SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a value, negative values are recorded as zero
+	 *
+	 * @param value the value
+	 */
+	public void record(long value) {
+		value = Math.max(value, 0);
+		counts.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the mean of the recorded values
+	 *
+	 * @return the mean or 0 if nothing has been recorded
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)sum.sum()/n;
+	}
+
+	/**
+	 * Gets the value at the given percentile. Values recorded concurrently
+	 * with the call may or may not be included.
+	 *
+	 * @param percentile the percentile between 0 and 100
+	 * @return the highest value equivalent to the percentile's bucket, capped at the
+	 * maximum recorded value, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i=0; i<BUCKETS; ++i) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long)Math.ceil(total*Math.min(percentile, 100d)/100d));
+		long seen = 0;
+		for (int i=0; i<BUCKETS; ++i) {
+			seen += snapshot[i];
+			if (seen >= target) {
+				return Math.min(highestEquivalentValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears all recorded values. Values recorded concurrently with the
+	 * reset may be partially kept.
+	 */
+	public void reset() {
+		for (int i=0; i<BUCKETS; ++i) {
+			counts.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	/**
+	 * Gets the bucket for a value. Values below SUB_BUCKETS have a bucket
+	 * each, above that the top SUB_BUCKET_BITS+1 bits pick the bucket.
+	 *
+	 * @param value the non-negative value
+	 * @return the bucket index
+	 */
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		int shift = Long.SIZE-SUB_BUCKET_BITS-1-Long.numberOfLeadingZeros(value);
+		return (shift+1)*SUB_BUCKETS+(int)((value >>> shift) & (SUB_BUCKETS-1));
+	}
+
+	/**
+	 * Gets the highest value that falls in a bucket
+	 *
+	 * @param index the bucket index
+	 * @return the highest value
+	 */
+	static long highestEquivalentValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index/SUB_BUCKETS-1;
+		long lowest = (long)(SUB_BUCKETS+index%SUB_BUCKETS) << shift;
+		return lowest+(1L << shift)-1;
+	}
+}
@@ -0,0 +1,404 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Lock-free registry of conversion pipeline metrics - per stage latency,
+ * queue depths, allocation per frame, cache hit rates and the output frame
+ * rate. Recording is a few striped counter updates so stages can record
+ * every frame without contending with each other. The metrics are
+ * published as MXBeans under uk.co.silentsoftware:type=Metrics and as a
+ * summary at the end of each run.
+ */
+public final class Metrics {
+
+	private static final Logger log = LoggerFactory.getLogger(Metrics.class);
+
+	private static final String DOMAIN = "uk.co.silentsoftware:type=Metrics";
+
+	/**
+	 * Minimum time the frames per second is averaged over
+	 */
+	private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final Histogram[] STAGE_LATENCIES = createHistograms(Stage.values().length);
+
+	private static final Histogram[] QUEUE_DEPTHS = createHistograms(QueueType.values().length);
+
+	private static final Histogram ALLOCATION = new Histogram();
+
+	private static final LongAdder FRAMES = new LongAdder();
+
+	private static final LongAdder DUPLICATE_FRAMES = new LongAdder();
+
+	private static final Map<String, Cache<?, ?>> CACHES = new ConcurrentHashMap<>();
+
+	private static final AtomicReference<Rate> RATE = new AtomicReference<>(new Rate(System.nanoTime(), 0, 0));
+
+	private static final AtomicBoolean REGISTERED = new AtomicBoolean();
+
+	private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+	private static volatile long runStart = System.nanoTime();
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private Metrics(){}
+
+	/**
+	 * Clears the metrics recorded by the previous run, other than the cache
+	 * statistics which are kept since start up
+	 */
+	public static void startRun() {
+		for (Histogram histogram : STAGE_LATENCIES) {
+			histogram.reset();
+		}
+		for (Histogram histogram : QUEUE_DEPTHS) {
+			histogram.reset();
+		}
+		ALLOCATION.reset();
+		FRAMES.reset();
+		DUPLICATE_FRAMES.reset();
+		runStart = System.nanoTime();
+		RATE.set(new Rate(runStart, 0, 0));
+	}
+
+	/**
+	 * Records the time taken by a stage
+	 *
+	 * @param stage the stage
+	 * @param startNanos the System.nanoTime() the stage started at
+	 */
+	public static void record(Stage stage, long startNanos) {
+		STAGE_LATENCIES[stage.ordinal()].record(System.nanoTime()-startNanos);
+	}
+
+	/**
+	 * Records a sample of a queue's depth
+	 *
+	 * @param queue the queue
+	 * @param depth the number of frames in the queue
+	 */
+	public static void recordQueueDepth(QueueType queue, int depth) {
+		QUEUE_DEPTHS[queue.ordinal()].record(depth);
+	}
+
+	/**
+	 * Gets the bytes allocated by the current thread so far, to pass to
+	 * recordAllocation once the frame has been converted
+	 *
+	 * @return the allocated bytes or -1 if the JVM cannot measure them
+	 */
+	public static long getAllocatedBytes() {
+		return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Records the bytes allocated by the current thread converting a frame
+	 *
+	 * @param startBytes the getAllocatedBytes() value before the conversion
+	 */
+	public static void recordAllocation(long startBytes) {
+		if (startBytes >= 0) {
+			ALLOCATION.record(getAllocatedBytes()-startBytes);
+		}
+	}
+
+	/**
+	 * Counts a frame as output
+	 */
+	public static void frameOutput() {
+		FRAMES.increment();
+	}
+
+	/**
+	 * Counts a video frame output as a repeat of the frame before it
+	 * instead of being converted
+	 */
+	public static void duplicateFrameSkipped() {
+		DUPLICATE_FRAMES.increment();
+	}
+
+	/**
+	 * Registers a cache so its hit rate is reported. The cache must be
+	 * built with recordStats() for the rate to be meaningful.
+	 *
+	 * @param name the name to report the cache under
+	 * @param cache the cache
+	 * @return the cache
+	 */
+	public static <K, V> Cache<K, V> registerCache(String name, Cache<K, V> cache) {
+		CACHES.put(name, cache);
+		return cache;
+	}
+
+	public static Histogram getStageLatency(Stage stage) {
+		return STAGE_LATENCIES[stage.ordinal()];
+	}
+
+	public static Histogram getQueueDepth(QueueType queue) {
+		return QUEUE_DEPTHS[queue.ordinal()];
+	}
+
+	public static Histogram getAllocationPerFrame() {
+		return ALLOCATION;
+	}
+
+	public static long getFramesOutput() {
+		return FRAMES.sum();
+	}
+
+	public static long getDuplicateFramesSkipped() {
+		return DUPLICATE_FRAMES.sum();
+	}
+
+	/**
+	 * Gets the output frame rate, averaged over at least the last second
+	 *
+	 * @return the frames per second
+	 */
+	public static float getFramesPerSecond() {
+		Rate rate = RATE.get();
+		long now = System.nanoTime();
+		if (now-rate.time >= RATE_INTERVAL_NANOS) {
+			long frames = FRAMES.sum();
+			Rate next = new Rate(now, frames, (frames-rate.frames)*(float)TimeUnit.SECONDS.toNanos(1)/(now-rate.time));
+
+			// Another thread updating the rate at the same time is as good
+			rate = RATE.compareAndSet(rate, next) ? next : RATE.get();
+		}
+		return rate.fps;
+	}
+
+	public static double getElapsedSeconds() {
+		return (System.nanoTime()-runStart)/(double)TimeUnit.SECONDS.toNanos(1);
+	}
+
+	/**
+	 * Gets the hit rate of each registered cache since start up
+	 *
+	 * @return the cache name to hit rate (0 to 1)
+	 */
+	public static Map<String, Double> getCacheHitRates() {
+		Map<String, Double> rates = new TreeMap<>();
+		CACHES.forEach((name, cache) -> rates.put(name, cache.stats().hitRate()));
+		return rates;
+	}
+
+	/**
+	 * Gets a human readable summary of the current or last run
+	 *
+	 * @return the summary
+	 */
+	public static String getSummary() {
+		long frames = getFramesOutput();
+		double seconds = getElapsedSeconds();
+		StringBuilder sb = new StringBuilder();
+		sb.append(format("Converted %d frames in %.2fs (%.2f fps)%n", frames, seconds, seconds > 0 ? frames/seconds : 0));
+		long duplicates = getDuplicateFramesSkipped();
+		if (duplicates > 0) {
+			sb.append(format("Repeated %d duplicate frames instead of converting them%n", duplicates));
+		}
+		sb.append(format("%-16s %8s %10s %10s %10s %10s %10s%n", "Stage (ms)", "count", "mean", "p50", "p95", "p99", "max"));
+		for (Stage stage : Stage.values()) {
+			Histogram h = getStageLatency(stage);
+			if (h.getCount() > 0) {
+				sb.append(format("%-16s %8d %10.3f %10.3f %10.3f %10.3f %10.3f%n", stage, h.getCount(), h.getMean()/NANOS_PER_MILLI,
+						h.getPercentile(50)/NANOS_PER_MILLI, h.getPercentile(95)/NANOS_PER_MILLI, h.getPercentile(99)/NANOS_PER_MILLI, h.getMax()/NANOS_PER_MILLI));
+			}
+		}
+		for (QueueType queue : QueueType.values()) {
+			Histogram h = getQueueDepth(queue);
+			if (h.getCount() > 0) {
+				sb.append(format("Queue %s depth mean %.1f, p95 %d, max %d%n", queue, h.getMean(), h.getPercentile(95), h.getMax()));
+			}
+		}
+		if (ALLOCATION.getCount() > 0) {
+			sb.append(format("Allocated per frame mean %.1fKB, p95 %dKB, max %dKB%n", ALLOCATION.getMean()/1024, ALLOCATION.getPercentile(95)/1024, ALLOCATION.getMax()/1024));
+		}
+		CACHES.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+			CacheStats stats = e.getValue().stats();
+			sb.append(format("Cache %s hit rate %.1f%% of %d lookups%n", e.getKey(), stats.hitRate()*100, stats.requestCount()));
+		});
+		return sb.toString();
+	}
+
+	/**
+	 * Registers the metrics MXBeans with the platform MBean server, only
+	 * the first call has any effect
+	 */
+	public static void registerMBeans() {
+		if (!REGISTERED.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new StandardMBean(new MetricsView(), MetricsMXBean.class, true), new ObjectName(DOMAIN));
+			for (Stage stage : Stage.values()) {
+				register(server, "stage", stage.name(), getStageLatency(stage));
+			}
+			for (QueueType queue : QueueType.values()) {
+				register(server, "queue", queue.name(), getQueueDepth(queue));
+			}
+			register(server, "name", "AllocatedBytesPerFrame", ALLOCATION);
+		} catch (Exception e) {
+			log.warn("Unable to register metrics MBeans", e);
+		}
+	}
+
+	private static void register(MBeanServer server, String key, String value, Histogram histogram) throws Exception {
+		server.registerMBean(new StandardMBean(new HistogramView(histogram), HistogramMXBean.class, true), new ObjectName(DOMAIN+","+key+"="+value));
+	}
+
+	private static String format(String format, Object... args) {
+		return String.format(Locale.ROOT, format, args);
+	}
+
+	private static Histogram[] createHistograms(int count) {
+		Histogram[] histograms = new Histogram[count];
+		for (int i=0; i<count; ++i) {
+			histograms[i] = new Histogram();
+		}
+		return histograms;
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+				if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+					return threads;
+				}
+			}
+		} catch (Throwable t) {
+			log.debug("Thread allocation not available", t);
+		}
+		return null;
+	}
+
+	/**
+	 * An immutable frame rate sample
+	 */
+	private static final class Rate {
+
+		private final long time;
+		private final long frames;
+		private final float fps;
+
+		private Rate(long time, long frames, float fps) {
+			this.time = time;
+			this.frames = frames;
+			this.fps = fps;
+		}
+	}
+
+	private static final class MetricsView implements MetricsMXBean {
+
+		@Override
+		public long getFramesOutput() {
+			return Metrics.getFramesOutput();
+		}
+
+		@Override
+		public long getDuplicateFramesSkipped() {
+			return Metrics.getDuplicateFramesSkipped();
+		}
+
+		@Override
+		public float getFramesPerSecond() {
+			return Metrics.getFramesPerSecond();
+		}
+
+		@Override
+		public double getElapsedSeconds() {
+			return Metrics.getElapsedSeconds();
+		}
+
+		@Override
+		public Map<String, Double> getCacheHitRates() {
+			return Metrics.getCacheHitRates();
+		}
+
+		@Override
+		public String getSummary() {
+			return Metrics.getSummary();
+		}
+	}
+
+	private static final class HistogramView implements HistogramMXBean {
+
+		private final Histogram histogram;
+
+		private HistogramView(Histogram histogram) {
+			this.histogram = histogram;
+		}
+
+		@Override
+		public long getCount() {
+			return histogram.getCount();
+		}
+
+		@Override
+		public double getMean() {
+			return histogram.getMean();
+		}
+
+		@Override
+		public long getP50() {
+			return histogram.getPercentile(50);
+		}
+
+		@Override
+		public long getP95() {
+			return histogram.getPercentile(95);
+		}
+
+		@Override
+		public long getP99() {
+			return histogram.getPercentile(99);
+		}
+
+		@Override
+		public long getMax() {
+			return histogram.getMax();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the conversion run totals
+ */
+public interface MetricsMXBean {
+
+	long getFramesOutput();
+
+	/**
+	 * @return the number of video frames output as a repeat of the frame before instead of converted
+	 */
+	long getDuplicateFramesSkipped();
+
+	float getFramesPerSecond();
+
+	double getElapsedSeconds();
+
+	/**
+	 * @return the hit rate (0 to 1) of each registered cache since start up
+	 */
+	Map<String, Double> getCacheHitRates();
+
+	/**
+	 * @return the end of run summary for the current or last run
+	 */
+	String getSummary();
+}
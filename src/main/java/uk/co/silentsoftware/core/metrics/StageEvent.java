@@ -0,0 +1,72 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a conversion stage of a frame. Stages run on
+ * the thread converting the frame so they nest within its frame event.
+ * Stopping the stage also records its latency in the metrics, whether or
+ * not the event is enabled.
+ */
+@Name("uk.co.silentsoftware.Stage")
+@Label("Conversion Stage")
+@Description("A single stage of a frame conversion")
+@Category({"Image to ZX Spec", "Conversion"})
+@StackTrace(false)
+public class StageEvent extends Event {
+
+	@Label("Stage")
+	String stage;
+
+	private final transient Stage type;
+
+	private final transient long startNanos = System.nanoTime();
+
+	private StageEvent(Stage type) {
+		this.type = type;
+	}
+
+	/**
+	 * Starts timing a stage
+	 *
+	 * @param stage the stage
+	 * @return the started stage event
+	 */
+	public static StageEvent start(Stage stage) {
+		StageEvent event = new StageEvent(stage);
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the stage, recording its latency and committing the event if enabled
+	 */
+	public void stop() {
+		Metrics.record(type, startNanos);
+		if (shouldCommit()) {
+			stage = type.name();
+			commit();
+		}
+	}
+}
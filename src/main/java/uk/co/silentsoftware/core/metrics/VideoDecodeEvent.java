@@ -0,0 +1,58 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for the decode of a sampled video frame into an
+ * image ready for conversion
+ */
+@Name("uk.co.silentsoftware.VideoDecode")
+@Label("Video Decode")
+@Description("Decode of a sampled video frame")
+@Category({"Image to ZX Spec", "Video"})
+@StackTrace(false)
+public class VideoDecodeEvent extends Event {
+
+	@Label("Engine")
+	String engine;
+
+	@Label("Position")
+	@Timespan(Timespan.NANOSECONDS)
+	long position;
+
+	/**
+	 * Commits the event if it is enabled and over any duration threshold
+	 *
+	 * @param engine the video import engine
+	 * @param position the frame's position in the video in nanoseconds
+	 */
+	public void commit(Object engine, long position) {
+		if (shouldCommit()) {
+			this.engine = String.valueOf(engine);
+			this.position = position;
+			commit();
+		}
+	}
+}
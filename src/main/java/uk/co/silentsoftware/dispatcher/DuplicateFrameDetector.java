@@ -0,0 +1,159 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+import uk.co.silentsoftware.config.ResamplingFilter;
+import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.helpers.Resampler;
+
+/**
+ * Detects video frames that repeat the last converted frame, so title
+ * cards, paused scenes and over sampled video are not converted again.
+ * Exact duplicates are found with a hash of every pixel of the full size
+ * frame, since a thumbnail would average away small changes such as a
+ * moving cursor. Near duplicates compare area averaged thumbnails of the
+ * frames. Frames are always compared to the last frame that was not a
+ * duplicate so a slow fade cannot creep past the threshold unconverted.
+ */
+class DuplicateFrameDetector {
+
+	static final int SIGNATURE_WIDTH = 64;
+	static final int SIGNATURE_HEIGHT = 48;
+
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+
+	private final int threshold;
+
+	private int[] lastSignature;
+
+	private long lastHash;
+	private int lastWidth = -1;
+	private int lastHeight = -1;
+
+	private volatile int skippedCount = 0;
+
+	/**
+	 * @param threshold the largest channel difference between signatures for a
+	 * frame to be a duplicate, 0 for only identical frames or negative to never
+	 * detect duplicates
+	 */
+	DuplicateFrameDetector(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Determines whether the frame is a duplicate of the last frame that
+	 * was not, otherwise it becomes the frame later frames are compared to
+	 *
+	 * @param frame the sampled frame
+	 * @return true if the frame is a duplicate
+	 */
+	boolean isDuplicate(Image frame) {
+		if (threshold < 0) {
+			return false;
+		}
+		if (threshold == 0) {
+			return isIdentical(frame);
+		}
+		int[] signature = signature(frame);
+		if (lastSignature != null && difference(lastSignature, signature) <= threshold) {
+			skippedCount++;
+			return true;
+		}
+		lastSignature = signature;
+		return false;
+	}
+
+	int getSkippedCount() {
+		return skippedCount;
+	}
+
+	/**
+	 * Determines whether the frame is pixel for pixel the same as the last
+	 * frame that was not, by comparing the hashes of the full size frames
+	 *
+	 * @param frame the sampled frame
+	 * @return true if the frame is identical
+	 */
+	private boolean isIdentical(Image frame) {
+		BufferedImage source = frame instanceof BufferedImage ? (BufferedImage)frame : ImageHelper.copyImage(frame);
+		long hash = hash(source);
+		if (source.getWidth() == lastWidth && source.getHeight() == lastHeight && hash == lastHash) {
+			skippedCount++;
+			return true;
+		}
+		lastHash = hash;
+		lastWidth = source.getWidth();
+		lastHeight = source.getHeight();
+		return false;
+	}
+
+	/**
+	 * Computes a 64 bit FNV-1a hash of every pixel of the image
+	 *
+	 * @param image the image
+	 * @return the hash
+	 */
+	static long hash(BufferedImage image) {
+		int width = image.getWidth();
+		int[] row = new int[width];
+		long hash = FNV_OFFSET_BASIS;
+		for (int y=0; y<image.getHeight(); ++y) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (int rgb : row) {
+				hash = (hash ^ (rgb & 0xFFFFFF)) * FNV_PRIME;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Computes the frame signature, its area average down to a small
+	 * fixed size
+	 *
+	 * @param frame the frame
+	 * @return the signature rgb pixels
+	 */
+	static int[] signature(Image frame) {
+		BufferedImage source = frame instanceof BufferedImage ? (BufferedImage)frame : ImageHelper.copyImage(frame);
+		BufferedImage thumbnail = Resampler.resample(source, SIGNATURE_WIDTH, SIGNATURE_HEIGHT, ResamplingFilter.AreaAverage);
+		return thumbnail.getRGB(0, 0, SIGNATURE_WIDTH, SIGNATURE_HEIGHT, null, 0, SIGNATURE_WIDTH);
+	}
+
+	/**
+	 * Gets the largest difference in any channel of any signature pixel
+	 *
+	 * @param signature1 the first signature
+	 * @param signature2 the second signature
+	 * @return the largest channel difference 0-255
+	 */
+	static int difference(int[] signature1, int[] signature2) {
+		int max = 0;
+		for (int i=0; i<signature1.length; ++i) {
+			int rgb1 = signature1[i];
+			int rgb2 = signature2[i];
+			max = Math.max(max, Math.abs(((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF)));
+			max = Math.max(max, Math.abs(((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF)));
+			max = Math.max(max, Math.abs((rgb1 & 0xFF) - (rgb2 & 0xFF)));
+		}
+		return max;
+	}
+}
@@ -0,0 +1,164 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes upcoming image files on a pool of threads so batch conversion
+ * isn't limited to reading one file at a time. At most a fixed window of
+ * files is decoded ahead of the one being dispatched, bounding memory, and
+ * images are returned in the same order as the files. A file that fails to
+ * decode is returned without an image rather than stopping the batch.
+ */
+class ImagePrefetcher implements AutoCloseable {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	/**
+	 * Number of files decoded ahead per decode thread
+	 */
+	private static final int READ_AHEAD_PER_THREAD = 2;
+
+	private final ExecutorService decodePool;
+
+	private final Iterator<File> files;
+
+	private final ImageFileReader reader;
+
+	private final int windowSize;
+
+	/**
+	 * Decodes in progress or complete, in file order
+	 */
+	private final Deque<Future<DecodedImage>> window = new ArrayDeque<>();
+
+	/**
+	 * @param files the files to decode, in order
+	 * @param threads the number of decode threads
+	 * @param reader the function decoding each file
+	 */
+	ImagePrefetcher(List<File> files, int threads, ImageFileReader reader) {
+		this.files = files.iterator();
+		this.reader = reader;
+		this.windowSize = Math.max(1, threads)*READ_AHEAD_PER_THREAD;
+		this.decodePool = Executors.newFixedThreadPool(Math.max(1, threads));
+		fillWindow();
+	}
+
+	boolean hasNext() {
+		return !window.isEmpty();
+	}
+
+	/**
+	 * Waits for and returns the next file's image, starting the
+	 * decode of another file in its place
+	 *
+	 * @return the decoded image, which holds no image if the file failed to decode
+	 * @throws InterruptedException if interrupted whilst waiting
+	 */
+	DecodedImage next() throws InterruptedException {
+		Future<DecodedImage> future = window.removeFirst();
+		fillWindow();
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			// Not expected, decode catches everything
+			throw new IllegalStateException("Decode failed", e.getCause());
+		}
+	}
+
+	private void fillWindow() {
+		while (window.size() < windowSize && files.hasNext()) {
+			File f = files.next();
+			window.addLast(decodePool.submit(() -> decode(f)));
+		}
+	}
+
+	private DecodedImage decode(File f) {
+		try {
+			BufferedImage image = reader.read(f);
+			if (image == null) {
+				log.warn("Unsupported image format {}", f);
+			}
+			return new DecodedImage(f, image, null);
+		} catch (Throwable t) {
+			// Includes out of memory for a single huge file, the rest of the batch may still fit
+			log.error("Unable to read file {}", f, t);
+			return new DecodedImage(f, null, t);
+		}
+	}
+
+	/**
+	 * Abandons any outstanding decodes
+	 */
+	@Override
+	public void close() {
+		decodePool.shutdownNow();
+		window.clear();
+	}
+
+	/**
+	 * Reads an image file
+	 */
+	interface ImageFileReader {
+		BufferedImage read(File f) throws Exception;
+	}
+
+	/**
+	 * A file and its decoded image
+	 */
+	static class DecodedImage {
+
+		private final File file;
+		private final BufferedImage image;
+		private final Throwable error;
+
+		private DecodedImage(File file, BufferedImage image, Throwable error) {
+			this.file = file;
+			this.image = image;
+			this.error = error;
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the image or null if the file could not be decoded
+		 */
+		BufferedImage getImage() {
+			return image;
+		}
+
+		Throwable getError() {
+			return error;
+		}
+	}
+}
@@ -42,6 +42,11 @@ class WorkContainer {
 	 * The equivalent SCR representation of this image
 	 */
 	private byte[] scrData;
+
+	/**
+	 * Whether this frame repeats the previous frame's output
+	 */
+	private boolean repeat = false;
 	
 	WorkContainer(ResultImage[] resultImage) {
 		this.resultImage = resultImage;
@@ -53,6 +58,36 @@ class WorkContainer {
 		this.imageId = imageId;
 	}
 	
+	/**
+	 * Creates a placeholder for a frame that repeats the previous frame,
+	 * filled in once the previous frame's output is known
+	 * 
+	 * @param imageId the id of this frame
+	 * @return the placeholder container
+	 */
+	static WorkContainer repeatOfPrevious(String imageId) {
+		WorkContainer workContainer = new WorkContainer(null, null, imageId);
+		workContainer.repeat = true;
+		return workContainer;
+	}
+
+	/**
+	 * Creates a container with the previous frame's output under this frame's id.
+	 * The images and SCR data are shared and must not be modified.
+	 * 
+	 * @param previous the previous frame's container
+	 * @return the container for this frame
+	 */
+	WorkContainer repeating(WorkContainer previous) {
+		WorkContainer workContainer = new WorkContainer(previous.resultImage, previous.preProcessedImage, imageId);
+		workContainer.scrData = previous.scrData;
+		return workContainer;
+	}
+
+	boolean isRepeat() {
+		return repeat;
+	}
+
 	String getImageId() {
 		return imageId;
 	}
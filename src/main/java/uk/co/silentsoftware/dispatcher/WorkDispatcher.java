@@ -25,6 +25,9 @@ import org.slf4j.LoggerFactory;
 import uk.co.silentsoftware.config.OptionsObject;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
+import uk.co.silentsoftware.core.converters.video.PooledFrame;
+import uk.co.silentsoftware.core.metrics.FrameConversionEvent;
+import uk.co.silentsoftware.core.metrics.Metrics;
 
 /**
  * Class to dispatch work - images to process - to work processors
@@ -36,34 +39,61 @@ class WorkDispatcher {
 	private final OptionsObject oo = OptionsObject.getInstance();
 
 	/**
-	 * Submits a frame for processing
+	 * Submits a frame for processing. Pooled video frames are released
+	 * once processed since nothing refers to the original after that.
+	 * The memory allocated converting the frame is recorded in the metrics
+	 * and the conversion is a flight recorder event.
 	 * 
 	 * @param original the original image
 	 * @param frameId the id of this frame
 	 * @return a work container holding the results of the processing
 	 */
 	WorkContainer submitFrame(final Image original, final String frameId) {
+		FrameConversionEvent event = new FrameConversionEvent();
+		event.begin();
+		long allocated = Metrics.getAllocatedBytes();
 		WorkProcessor wp = new WorkProcessor();
-		return submitInternal(original, wp, (BufferedImage preProcessed, ResultImage[] processed) -> { 
-			WorkContainer workContainer = new WorkContainer(processed, preProcessed, frameId);
-			if (scrOutputNeeded()) {
-				log.debug("Creating SCR output");
-				workContainer.setScrData(wp.convertScreen(processed));
+		try {
+			return submitInternal(original, wp, (BufferedImage preProcessed, ResultImage[] processed) -> { 
+				WorkContainer workContainer = new WorkContainer(processed, preProcessed, frameId);
+				if (scrOutputNeeded()) {
+					log.debug("Creating SCR output");
+					workContainer.setScrData(wp.convertScreen(processed));
+				}
+				return workContainer;
+			});
+		} finally {
+			if (original instanceof PooledFrame) {
+				((PooledFrame)original).release();
 			}
-			return workContainer;
-		});
+			Metrics.recordAllocation(allocated);
+			event.commit(frameId, oo.getSelectedDitherStrategy(), oo.getColourMode(), original.getWidth(null), original.getHeight(null));
+		}
 	}
 
 	/**
-	 * Submits a frame for pop up window preview processing
+	 * Pre-processes an image for the pop up window preview. This is done
+	 * once so the previews of all the dithers can share the result.
 	 * 
 	 * @param original the original image
+	 * @return the scaled and pre-processed image
+	 */
+	BufferedImage preProcessPopupPreview(final Image original) {
+		return new WorkProcessor().preProcessImage(original);
+	}
+
+	/**
+	 * Submits an already pre-processed frame for pop up window preview 
+	 * processing. The pre-processed image is not modified so the same 
+	 * image may be submitted for several dithers concurrently.
+	 * 
+	 * @param preProcessed the pre-processed image
 	 * @param dither the dither strategy to use
 	 * @return a work container holding the results of the processing
 	 */
-	WorkContainer submitPopupPreview(final Image original, final DitherStrategy dither) {
+	WorkContainer submitPopupPreview(final BufferedImage preProcessed, final DitherStrategy dither) {
 		final WorkProcessor wp = new WorkProcessor(dither);
-		return submitInternal(original, wp, (BufferedImage preProcessed, ResultImage[] processed) -> new WorkContainer(processed));
+		return new WorkContainer(wp.convertImage(preProcessed));
 	}
 
 	/**
@@ -19,34 +19,40 @@ package uk.co.silentsoftware.dispatcher;
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
 import java.awt.Image;
+import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Stream;
-
-import javax.imageio.ImageIO;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.conversantmedia.util.concurrent.DisruptorBlockingQueue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 import uk.co.silentsoftware.config.LanguageSupport;
 import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.config.ScalingObject;
 import uk.co.silentsoftware.config.SpectrumDefaults;
 import uk.co.silentsoftware.core.converters.image.CharacterDitherStrategy;
 import uk.co.silentsoftware.core.converters.image.DitherStrategy;
 import uk.co.silentsoftware.core.converters.image.ResultImage;
+import uk.co.silentsoftware.core.converters.video.VideoFrameQueue;
+import uk.co.silentsoftware.core.converters.video.VideoImportEngine;
 import uk.co.silentsoftware.core.converters.video.VideoLoadedLock;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.helpers.LoadHelper;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.QueueType;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 import uk.co.silentsoftware.ui.ImageToZxSpec.UiCallback;
 import uk.co.silentsoftware.ui.PopupPreviewFrame;
 
@@ -59,15 +65,22 @@ public class WorkManager {
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     /**
-     * Polling timeout for waiting on the work queue
+     * Fraction of the maximum heap the queue of decoded video frames may use
+     * before the video engine waits for the conversion to catch up
+     */
+    private static final int VIDEO_QUEUE_HEAP_FRACTION = 8;
+
+    /**
+     * Number of evenly spaced positions through a video that the popup
+     * preview picks a random frame from
      */
-    private static final int VIDEO_POLL_TIMEOUT = 8;
+    private static final int PREVIEW_FRAME_POSITIONS = 4;
 
     /**
-     * Maximum shared queue size (approximately 2-12 seconds of video depending
-     * on frame rate)
+     * Recently extracted popup preview video frames, keyed by file, engine
+     * and position so reopening the preview on the same video is instant
      */
-    private static final int MAX_QUEUE_SIZE = 120;
+    private static final Cache<String, Image> PREVIEW_FRAMES = Metrics.registerCache("PreviewFrames", Caffeine.newBuilder().maximumSize(PREVIEW_FRAME_POSITIONS*2).recordStats().build());
 
     /**
      * Thread pool for jobs
@@ -91,23 +104,26 @@ public class WorkManager {
     private volatile boolean cancel = false;
 
     /**
-     * The total frame count
+     * The frame queue for the video being processed, if any
      */
-    private volatile float fpsFrameCount = 0.0f;
+    private volatile VideoFrameQueue videoFrames;
 
     /**
-     * Actual frames per second
+     * The last frame output, repeated for duplicate video frames
      */
-    private volatile float fps;
+    private WorkContainer lastOutput;
 
     /**
-     * The debug frames per second counter
+     * Creates the work manager, publishing the conversion metrics over JMX
      */
-    private static Thread fpsThread;
+    public WorkManager() {
+        Metrics.registerMBeans();
+    }
 
     /**
      * Method to begin the (multi dither, not WIP) preview which submits work to
-     * the work engine
+     * the work engine. The image is pre-processed once then every dither's
+     * preview is converted from it concurrently.
      *
      * @param uiCallback the ui callback to re-enable input
      * @param preview    the frame to draw the preview images on
@@ -124,12 +140,15 @@ public class WorkManager {
             try {
                 if (ArrayUtils.isNotEmpty(inFiles)) {
                     Image image = getImage(inFiles[0]);
-                    image = ImageHelper.quickScaleImage(image, SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT);
+                    image = ImageHelper.scaleImage(image, SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT, oo.getResamplingFilter());
+                    BufferedImage preProcessed = workDispatcher.preProcessPopupPreview(image);
 
                     // uiCallback.disableInput();
-                    generatePopupPreviewDithers(image, oo.getOrderedDithers());
-                    generatePopupPreviewDithers(image, oo.getErrorDithers());
-                    generatePopupPreviewDithers(image, oo.getOtherDithers());
+                    List<DitherStrategy> dithers = new ArrayList<>();
+                    Collections.addAll(dithers, oo.getOrderedDithers());
+                    Collections.addAll(dithers, oo.getErrorDithers());
+                    Collections.addAll(dithers, oo.getOtherDithers());
+                    generatePopupPreviewDithers(preProcessed, dithers);
                     // uiCallback.enableInput();
                 }
             } catch (Throwable e) {
@@ -150,46 +169,64 @@ public class WorkManager {
         if (isVideo(f)) {
             return getRandomFrameFromVideo(f);
         }
-        return ImageIO.read(f);
+        return LoadHelper.readImage(f, SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT);
     }
 
     /**
-     * Gets a random frame from the video file
+     * Gets a random frame from the video file, from one of a few positions
+     * through the video so previously extracted frames can be reused
      *
      * @param f the video file
      * @return an image frame from the video file
      * @throws Exception if there are any processing errors
      */
     private Image getRandomFrameFromVideo(File f) throws Exception {
-        BlockingQueue<Image> queue = new DisruptorBlockingQueue<>(MAX_QUEUE_SIZE);
-        final VideoLoadedLock videoLoadedLock = new VideoLoadedLock();
-        OptionsObject.getInstance().getVideoImportEngine().convertVideoToImages(f, true, queue, videoLoadedLock);
-        videoLoadedLock.waitFor();
-        return queue.poll();
+        VideoImportEngine engine = OptionsObject.getInstance().getVideoImportEngine();
+        int slot = new Random().nextInt(PREVIEW_FRAME_POSITIONS);
+        String key = f.getAbsolutePath() + "|" + f.lastModified() + "|" + engine + "|" + slot;
+        Image image = PREVIEW_FRAMES.getIfPresent(key);
+        if (image == null) {
+            long start = System.currentTimeMillis();
+            image = engine.extractFrame(f, (slot + 1d) / (PREVIEW_FRAME_POSITIONS + 1));
+            log.debug("Extracted preview frame {} in {}ms", key, System.currentTimeMillis() - start);
+            if (image != null) {
+                PREVIEW_FRAMES.put(key, image);
+            }
+        }
+        return image;
     }
 
     /**
-     * Draws a set of dithers, derived from the provided image, onto the popup
-     * preview frame
+     * Converts the pre-processed image with each dither concurrently on the
+     * worker pool, drawing each result into its own tile of the preview.
+     * Tiles are laid out in dither order whichever finishes first and the
+     * preview frame coalesces their repaints.
      *
-     * @param image   the image to apply the dithers to
-     * @param dithers the dither strategies to apply
+     * @param preProcessed the pre-processed image to convert
+     * @param dithers      the dithers to preview
      */
-    private <T extends DitherStrategy> void generatePopupPreviewDithers(Image image, @SuppressWarnings("unchecked") T... dithers) {
-        Stream<T> stream = Arrays.stream(dithers);
-        Runnable runnable = () -> {
-            stream.forEach(dither -> {
-                WorkContainer workContainer = workDispatcher.submitPopupPreview(image, dither);
-                Optional<ResultImage> resultImage = ResultImage.getFinalImage(workContainer.getResultImage());
-                if (!resultImage.isPresent()) {
-                    log.error("Unable to get final image for preview");
-                    return;
+    private void generatePopupPreviewDithers(BufferedImage preProcessed, List<DitherStrategy> dithers) {
+        BufferedImage previewImage = PopupPreviewFrame.getPreviewImage();
+        for (DitherStrategy dither : dithers) {
+            Point point = PopupPreviewFrame.getPoint();
+            exec.execute(() -> {
+                try {
+                    WorkContainer workContainer = workDispatcher.submitPopupPreview(preProcessed, dither);
+                    Optional<ResultImage> resultImage = ResultImage.getFinalImage(workContainer.getResultImage());
+                    if (!resultImage.isPresent()) {
+                        log.error("Unable to get final image for preview");
+                        return;
+                    }
+                    BufferedImage tile = resultImage.get().getImage();
+                    synchronized (previewImage) {
+                        ImageHelper.copyImage(tile, previewImage, point);
+                    }
+                    PopupPreviewFrame.repaintImage();
+                } catch (Throwable t) {
+                    log.error("Preview failed for {}", dither, t);
                 }
-                ImageHelper.copyImage(resultImage.get().getImage(), PopupPreviewFrame.getPreviewImage(), PopupPreviewFrame.getPoint());
-                PopupPreviewFrame.repaintImage();
             });
-        };
-        exec.submit(runnable);
+        }
     }
 
     /**
@@ -203,6 +240,7 @@ public class WorkManager {
      */
     public void processFiles(final UiCallback uiCallback, File[] inFiles, File outFolder) {
         this.cancel = false;
+        Metrics.startRun();
         validateSettings(uiCallback);
         uiCallback.disableInput();
         uiCallback.setStatusMessage(LanguageSupport.getCaption("main_working"));
@@ -233,18 +271,59 @@ public class WorkManager {
     }
 
     /**
-     * Polls video and submits frames to the work engine for processing
+     * Converts a video, outputting each converted frame and re-enabling the
+     * UI once it has finished
      *
      * @param uiCallback the callback to control the ui
      * @param inputFile  the video file to process
      * @param outFolder  the output folder
-     * @throws InterruptedException if the processing is interrupted
      */
-    private void processVideo(UiCallback uiCallback, File inputFile, File outFolder) throws InterruptedException {
-        final BlockingQueue<Image> sharedQueue = new DisruptorBlockingQueue<>(MAX_QUEUE_SIZE);
-        waitForVideoToSpoolUp(sharedQueue, uiCallback, inputFile);
+    private void processVideo(UiCallback uiCallback, File inputFile, File outFolder) {
+        WorkOutputter workOutputter = null;
+        try {
+            workOutputter = new WorkOutputter(this, uiCallback, outFolder);
+            relayVideo(OptionsObject.getInstance().getVideoImportEngine(), inputFile, outputTo(workOutputter),
+                    t -> uiCallback.setStatusMessage(t.getMessage()));
+        } finally {
+            try {
+                if (workOutputter != null) {
+                    workOutputter.processEndStep();
+                }
+            } catch (Exception e) {
+                log.error("Unable to process end step", e);
+            }
+            enableInput(uiCallback, LanguageSupport.getCaption("main_operation_finished"));
+        }
+        log.debug("Finished polling result queue");
+    }
+
+    /**
+     * Polls the video engine's frames and submits them to the work engine for
+     * processing, handing the results to the output in frame order. Duplicate
+     * frames are output as a repeat of the frame before instead of converted.
+     * Each frame's latency from leaving the video queue to being output is 
+     * recorded as the Frame stage. Returns once every frame has been output, 
+     * or the video fails or is cancelled.
+     *
+     * @param engine    the engine to decode the video with
+     * @param inputFile the video file to process
+     * @param output    the ordered output for converted frames
+     * @param errors    told of failures decoding the video or converting a frame
+     */
+    void relayVideo(VideoImportEngine engine, File inputFile, Consumer<WorkContainer> output, Consumer<Throwable> errors) {
+        final VideoFrameQueue sharedQueue = new VideoFrameQueue(Runtime.getRuntime().maxMemory()/VIDEO_QUEUE_HEAP_FRACTION);
+        videoFrames = sharedQueue;
+        waitForVideoToSpoolUp(engine, sharedQueue, inputFile, errors);
         Image buf;
         Map<Integer, WorkContainer> results = new ConcurrentHashMap<>();
+        DuplicateFrameDetector duplicateFrameDetector = new DuplicateFrameDetector(OptionsObject.getInstance().getDuplicateFrameSkip().getThreshold());
+
+        // When each frame waiting to be output was taken from the queue, frames are output in order
+        Deque<Long> takenNanos = new ArrayDeque<>();
+        Consumer<WorkContainer> timedOutput = workContainer -> {
+            output.accept(workContainer);
+            Metrics.record(Stage.Frame, takenNanos.poll());
+        };
 
         // Unique frame number for a job
         int sequenceNumber = 0;
@@ -252,53 +331,78 @@ public class WorkManager {
         // The last unique frame number that was processed and outputed
         int outputSequenceNumber = 0;
 
-        WorkOutputter workOutputter = null;
         try {
-            workOutputter = new WorkOutputter(this, uiCallback, outFolder);
-            while ((buf = sharedQueue.poll(VIDEO_POLL_TIMEOUT, TimeUnit.SECONDS)) != null) {
+            while ((buf = sharedQueue.take()) != null) {
                 if (cancel) {
-                    OptionsObject.getInstance().getVideoImportEngine().cancel();
+                    engine.cancel();
+                    sharedQueue.cancel();
                     return;
                 }
-                int oldOutputSequenceNumber = outputSequenceNumber;
-                processFrame(sequenceNumber+"_"+inputFile.getName(), sequenceNumber, results, buf, uiCallback);
-                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, workOutputter);
-                sequenceNumber++;
-                // Only increase the fps count if it's actually removed an image from
-                // the queue (as opposed to starting the job and waiting for it to become
-                // available)
-                if (outputSequenceNumber > oldOutputSequenceNumber) {
-                    fpsFrameCount++;
+                takenNanos.add(System.nanoTime());
+                Metrics.recordQueueDepth(QueueType.VideoFrames, sharedQueue.size());
+                Metrics.recordQueueDepth(QueueType.InFlightFrames, sequenceNumber-outputSequenceNumber);
+                String name = sequenceNumber+"_"+inputFile.getName();
+                if (duplicateFrameDetector.isDuplicate(buf)) {
+                    results.put(sequenceNumber, WorkContainer.repeatOfPrevious(name));
+                    Metrics.duplicateFrameSkipped();
+                    sharedQueue.release(buf);
+                } else {
+                    processFrame(name, sequenceNumber, results, buf, errors, sharedQueue);
                 }
+                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, timedOutput);
+                sequenceNumber++;
             }
-            log.debug("Image relay finished awaiting remaining results");
-            outputRemainingFrames(outputSequenceNumber, sequenceNumber, results, workOutputter);
+            log.debug("Image relay finished awaiting remaining results, {} duplicate frames skipped", duplicateFrameDetector.getSkippedCount());
+            outputRemainingFrames(outputSequenceNumber, sequenceNumber, results, timedOutput);
+        } catch (InterruptedException ie) {
+            log.warn("Interrupted reading files");
+            sharedQueue.cancel();
+            Thread.currentThread().interrupt();
         } finally {
-            try {
-                if (workOutputter != null) {
-                    workOutputter.processEndStep();
-                }
-            } catch (Exception e) {
-                log.error("Unable to process end step", e);
-            }
-            enableInput(uiCallback, LanguageSupport.getCaption("main_operation_finished"));
+            videoFrames = null;
         }
-        log.debug("Finished polling result queue");
     }
 
-    private void waitForVideoToSpoolUp(BlockingQueue<Image> sharedQueue, UiCallback uiCallback, File inputFile) {
+    /**
+     * Starts the video engine decoding into the queue, waiting until the
+     * video has loaded. The queue is finished however the engine ends.
+     *
+     * @param engine      the engine to decode the video with
+     * @param sharedQueue the queue for the decoded frames
+     * @param inputFile   the video file to decode
+     * @param errors      told if the engine fails
+     */
+    private void waitForVideoToSpoolUp(VideoImportEngine engine, VideoFrameQueue sharedQueue, File inputFile, Consumer<Throwable> errors) {
         final VideoLoadedLock videoLoadedLock = new VideoLoadedLock();
         exec.execute(() -> {
             try {
-                OptionsObject.getInstance().getVideoImportEngine().convertVideoToImages(inputFile, false, sharedQueue, videoLoadedLock);
+                engine.convertVideoToImages(inputFile, sharedQueue, videoLoadedLock);
             } catch (Throwable t) {
                 log.error("Failed to convert video", t);
-                enableInput(uiCallback, t.getMessage());
+                errors.accept(t);
+            } finally {
+                sharedQueue.finish();
             }
         });
         videoLoadedLock.waitFor();
     }
 
+    /**
+     * Gets the ordered output for the outputter, which also previews each
+     * frame on the UI feeder thread
+     *
+     * @param workOutputter the outputter
+     * @return the output
+     */
+    private Consumer<WorkContainer> outputTo(WorkOutputter workOutputter) {
+        return workContainer -> {
+            uiFeederThread.execute(() -> workOutputter.previewFrame(workContainer));
+
+            // Frames must be output on a single thread due to chronological sequence requirements for some exporters
+            workOutputter.outputFrame(workContainer);
+        };
+    }
+
     /**
      * Inner core method for the process files method that specifically deals
      * with a single files. The files are loaded as images and these are put
@@ -315,28 +419,32 @@ public class WorkManager {
             return;
         }
         WorkOutputter workOutputter = null;
-        try {
+        List<File> files = Arrays.asList(inFiles);
+        try (ImagePrefetcher prefetcher = new ImagePrefetcher(files, OptionsObject.getInstance().getDecodeThreads(), this::readImage)) {
             int sequenceNumber = 0;
             int outputSequenceNumber = 0;
             Map<Integer, WorkContainer> results = new ConcurrentHashMap<>();
-            List<File> files = Arrays.asList(inFiles);
             workOutputter = new WorkOutputter(this, uiCallback, outFolder);
-            for (File f : files) {
+            Consumer<WorkContainer> output = outputTo(workOutputter);
+            Consumer<Throwable> errors = t -> uiCallback.setStatusMessage(t.getMessage());
+            while (prefetcher.hasNext()) {
                 if (cancel) {
                     return;
                 }
-                int oldOutputSequenceNumber = outputSequenceNumber;
-                processFrame(f.getName(), sequenceNumber, results, readImage(f), uiCallback);
-                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, workOutputter);
-                sequenceNumber++;
-                // Only increase the fps count if it's actually removed an image
-                // from the queue (as opposed to starting the job and waiting for it to become
-                // available)
-                if (outputSequenceNumber > oldOutputSequenceNumber) {
-                    fpsFrameCount++;
+                ImagePrefetcher.DecodedImage decoded = prefetcher.next();
+                if (decoded.getImage() == null) {
+                    uiCallback.setStatusMessage(getCaption("main_file_skipped") + " " + decoded.getFile().getName());
+                    continue;
                 }
+                Metrics.recordQueueDepth(QueueType.InFlightFrames, sequenceNumber-outputSequenceNumber);
+                processFrame(decoded.getFile().getName(), sequenceNumber, results, decoded.getImage(), errors, null);
+                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, output);
+                sequenceNumber++;
             }
-            outputRemainingFrames(outputSequenceNumber, sequenceNumber, results, workOutputter);
+            outputRemainingFrames(outputSequenceNumber, sequenceNumber, results, output);
+        } catch (InterruptedException ie) {
+            log.warn("Interrupted reading files");
+            Thread.currentThread().interrupt();
         } finally {
             try {
                 workOutputter.processEndStep();
@@ -347,48 +455,64 @@ public class WorkManager {
         }
     }
 
-    private void outputRemainingFrames(int outputSequenceNumber, int sequenceNumber, Map<Integer, WorkContainer> results, WorkOutputter workOutputter) {
+    private void outputRemainingFrames(int outputSequenceNumber, int sequenceNumber, Map<Integer, WorkContainer> results, Consumer<WorkContainer> output) {
         if (!cancel) {
             while (outputSequenceNumber < sequenceNumber) {
-                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, workOutputter);
+                outputSequenceNumber = outputNextImage(results, outputSequenceNumber, output);
             }
         }
     }
 
     /**
-     * Processes a single frame in a new thread
+     * Processes a single frame in a new thread. A video frame is kept charged 
+     * to the video frame queue's memory budget until it has been converted so
+     * the frames being converted are bounded as well as the queued ones.
      *
      * @param name                 the output name
      * @param sequenceNumber       the sequence number for this frame
      * @param results              the results map with frame number to image
      * @param image                the image to convert
-     * @param uiCallback           the uicallback for error messages
-     * @return the last outputted sequence number
+     * @param errors               told if the frame cannot be submitted
+     * @param frames               the queue the frame was taken from, null if it was not
      */
     private void processFrame(String name, int sequenceNumber, Map<Integer, WorkContainer> results,
-                             Image image, UiCallback uiCallback) {
+                             Image image, Consumer<Throwable> errors, VideoFrameQueue frames) {
         try {
-            exec.execute(() -> results.put(sequenceNumber, workDispatcher.submitFrame(image, StringUtils.EMPTY + name)));
+            exec.execute(() -> {
+                try {
+                    results.put(sequenceNumber, workDispatcher.submitFrame(image, StringUtils.EMPTY + name));
+                } finally {
+                    releaseFrame(image, frames);
+                }
+            });
         } catch (OutOfMemoryError oome) {
-            uiCallback.setStatusMessage(oome.getMessage());
+            releaseFrame(image, frames);
+            errors.accept(oome);
             log.error("Out of memory on frame", oome);
         } catch (Throwable t) {
             // Ignore it and try to continue
+            releaseFrame(image, frames);
             log.error("Unhandled throwable", t);
         }
     }
 
+    private void releaseFrame(Image image, VideoFrameQueue frames) {
+        if (frames != null) {
+            frames.release(image);
+        }
+    }
+
     /**
      * Outputs the given output sequence number frame if it has been processed
      * otherwise returns
      *
      * @param results              the map of workcontainer results
      * @param outputSequenceNumber the frame number to output
-     * @param workOutputter        the output object instance
+     * @param output               the ordered output for the frames
      * @return the updated outputted sequence number if a frame was output,
      * otherwise the original outputSequenceNumber
      */
-    private int outputNextImage(Map<Integer, WorkContainer> results, int outputSequenceNumber, WorkOutputter workOutputter) {
+    private int outputNextImage(Map<Integer, WorkContainer> results, int outputSequenceNumber, Consumer<WorkContainer> output) {
         // Yield gives the system a chance to breath - the work has just been added for processing
         // but may not yet be available. Removing this call results in 10-20% better performance but
         // stuttering video preview
@@ -397,63 +521,32 @@ public class WorkManager {
         }
 
         if (!cancel && results.size() > 0) {
-            WorkContainer workContainer = results.get(outputSequenceNumber);
-            if (workContainer != null) {
-                uiFeederThread.execute(() -> workOutputter.previewFrame(workContainer));
-
-                // Frames must be output on a single thread due to chronological sequence requirements for some exporters
-                workOutputter.outputFrame(workContainer);
+            WorkContainer result = results.get(outputSequenceNumber);
+            if (result != null) {
+                WorkContainer workContainer = result.isRepeat() ? result.repeating(lastOutput) : result;
+                lastOutput = workContainer;
+                output.accept(workContainer);
                 results.remove(outputSequenceNumber);
                 outputSequenceNumber++;
+                Metrics.frameOutput();
             }
         }
         return outputSequenceNumber;
     }
 
     /**
-     * Reads an image file
+     * Reads an image file, decoding it at no more than the size the
+     * selected scaling needs
      *
      * @param f the image file to read
      * @return the buffered image for the file
      */
-    private BufferedImage readImage(final File f) {
-        try {
-            return ImageIO.read(f);
-        } catch (IOException e) {
-            log.error("Unable to read file", f, e);
-            throw new IllegalStateException("Reading file failed", e);
-        }
-    }
-
-    /**
-     * A simple implementation of an FPS calculator
-     * TODO: Not very single responsibility in this class, move out.
-     */
-    public void startFpsCalculator() {
-        // Old school threading for the fps calculator
-        resetFrameCount();
-        if (OptionsObject.getInstance().getFpsCounter() && (fpsThread == null || !fpsThread.isAlive())) {
-            fpsThread = new Thread(() -> {
-                while (OptionsObject.getInstance().getFpsCounter()) {
-                    final float startCount = fpsFrameCount;
-                    final long time = System.currentTimeMillis();
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ignore) {
-                    }
-                    final long diff = System.currentTimeMillis() - time;
-                    float framesPerSecond = (fpsFrameCount - startCount) / ((float) diff / 1000f);
-
-                    // Ignore below 0 - caused by frame counter being reset
-                    if (framesPerSecond >= 0) {
-                        fps = framesPerSecond;
-                    }
-                }
-            });
-            fpsThread.setDaemon(true);
-            fpsThread.setPriority(Thread.MIN_PRIORITY);
-            fpsThread.start();
-        }
+    private BufferedImage readImage(final File f) throws IOException {
+        ScalingObject so = OptionsObject.getInstance().getScaling();
+        StageEvent stage = StageEvent.start(Stage.Read);
+        BufferedImage image = LoadHelper.readImage(f, so.getWidth(), so.getHeight());
+        stage.stop();
+        return image;
     }
 
     /**
@@ -508,12 +601,12 @@ public class WorkManager {
     }
 
     /**
-     * Gets the fps value
+     * Gets the output frame rate from the metrics
      *
      * @return the fps value
      */
     float getFps() {
-        return fps;
+        return Metrics.getFramesPerSecond();
     }
 
     /**
@@ -528,12 +621,10 @@ public class WorkManager {
      */
     public void cancel() {
         this.cancel = true;
-    }
-
-    /**
-     * Reset the number of frames processed
-     */
-    private void resetFrameCount() {
-        fpsFrameCount = 0;
+        VideoFrameQueue frames = videoFrames;
+        if (frames != null) {
+            OptionsObject.getInstance().getVideoImportEngine().cancel();
+            frames.cancel();
+        }
     }
 }
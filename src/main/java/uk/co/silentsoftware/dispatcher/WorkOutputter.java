@@ -27,6 +27,10 @@ import uk.co.silentsoftware.core.converters.spectrum.TextConverter;
 import uk.co.silentsoftware.core.converters.video.GifConverter;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
 import uk.co.silentsoftware.core.helpers.SaveHelper;
+import uk.co.silentsoftware.core.metrics.ExportEvent;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 import uk.co.silentsoftware.ui.ImageToZxSpec.UiCallback;
 
 import java.awt.image.BufferedImage;
@@ -34,6 +38,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
@@ -41,6 +51,10 @@ import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
  * Manages the work output, i.e. using the work container results it 
  * decides what needs to be output based on the user's chosen options 
  * and calls the relevant converter classes.
+ * 
+ * Order sensitive output (tape, gif) is built on the calling (ordered)
+ * thread, whereas per frame files (image, SCR, text) are written 
+ * asynchronously on a small bounded export pool.
  */
 class WorkOutputter {
 
@@ -71,6 +85,27 @@ class WorkOutputter {
 	 */
 	private static final String DEFAULT_BASE_FILE_NAME = "Img2ZXSpec";
 
+	/**
+	 * Number of threads writing per frame files
+	 */
+	private static final int EXPORT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors()/2);
+
+	/**
+	 * Maximum number of queued per frame exports, when full the ordered
+	 * output thread writes the file itself (i.e. back pressure)
+	 */
+	private static final int EXPORT_QUEUE_SIZE = 64;
+
+	/**
+	 * Maximum time to wait for outstanding exports to finish
+	 */
+	private static final int EXPORT_TIMEOUT_MINUTES = 10;
+
+	/**
+	 * Maximum number of failed exports to list in the failure warning
+	 */
+	private static final int MAX_REPORTED_FAILURES = 10;
+
 	private final UiCallback uiCallback;
 
 	private final File outFolder;
@@ -81,6 +116,17 @@ class WorkOutputter {
 	
 	private final OptionsObject optionsObject = OptionsObject.getInstance();
 
+	/**
+	 * Pool for the order insensitive per frame file exports
+	 */
+	private final ThreadPoolExecutor exportPool = new ThreadPoolExecutor(EXPORT_THREADS, EXPORT_THREADS, 0L, TimeUnit.MILLISECONDS, 
+			new ArrayBlockingQueue<>(EXPORT_QUEUE_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+
+	/**
+	 * Descriptions of any per frame exports that failed
+	 */
+	private final Queue<String> exportFailures = new ConcurrentLinkedQueue<>();
+
 	WorkOutputter(final WorkManager workManager, final UiCallback uiCallback, final File outFolder) {
 		this.workManager = workManager;
 		this.uiCallback = uiCallback;
@@ -94,6 +140,8 @@ class WorkOutputter {
 	/**
 	 * Outputs the the result from the work container
 	 * E.g. shows a preview, adds a frame to the gif etc.
+	 * The final image is only fetched (and so possibly rendered) 
+	 * by the exports that need it.
 	 * 
 	 * @param workContainer the populated work container
 	 */
@@ -105,7 +153,7 @@ class WorkOutputter {
 			log.warn("Final image was not present");
 			return;
 		}
-		BufferedImage imageResult = finalImage.get().getImage();
+		ResultImage imageResult = finalImage.get();
 		
 		// Add a section to the tape
 		addTapePart(workContainer.getScrData());
@@ -116,23 +164,13 @@ class WorkOutputter {
 		String name = workContainer.getImageId();
 		
 		// Export the image to the filesystem
-		try {
-			exportImage(imageResult, name);
-		} catch (IOException io) {
-			uiCallback.setStatusMessage("Failed to write image for input: "+name);
-		} 
+		exportImage(imageResult, name);
+		
 		// Export an SCR to the filesystem
-		try {
-			exportScreen(workContainer.getScrData(), name);
-		} catch (IOException io) {
-			uiCallback.setStatusMessage("Failed to write SCR for input: "+name);			
-		}
+		exportScreen(workContainer.getScrData(), name);
+		
 		// Export a text file of the image to the filesystem
-		try {
-			exportText(imageResult, name);
-		} catch (IOException io) {
-			uiCallback.setStatusMessage("Failed to write text file for input: "+name);			
-		}
+		exportText(imageResult, name);
 	}
 	
 	/**
@@ -152,15 +190,20 @@ class WorkOutputter {
 		if (!finalImage.isPresent()) {
 			return;
 		}
+		StageEvent stage = StageEvent.start(Stage.Preview);
 		drawAndUpdatePreview(uiCallback, preProcessedResult, finalImage.get().getImage());
+		stage.stop();
 	}
 	
 	/**
 	 * Some exporters require closing or finalising, this step does that
-	 * then uses the uicallback to tell the user the work is complete
+	 * then uses the uicallback to tell the user the work is complete.
+	 * The run's metrics summary is logged once the frame exports finish.
 	 */
 	void processEndStep() {
 		try {
+			awaitExports();
+			log.info("Conversion metrics\n{}", Metrics.getSummary());
 			exportTape();
 			exportGif();
 		} catch (Exception e) {
@@ -172,15 +215,60 @@ class WorkOutputter {
 		}
 	}
 
+	/**
+	 * Waits for all outstanding per frame exports to be written and 
+	 * warns the user of any that failed
+	 */
+	private void awaitExports() {
+		exportPool.shutdown();
+		try {
+			if (!exportPool.awaitTermination(EXPORT_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+				log.warn("Timed out waiting for file exports to complete");
+			}
+		} catch (InterruptedException ie) {
+			log.warn("Interrupted waiting for file exports to complete");
+			Thread.currentThread().interrupt();
+		}
+		if (!exportFailures.isEmpty()) {
+			String failures = exportFailures.stream().limit(MAX_REPORTED_FAILURES).collect(Collectors.joining("\n"));
+			log.error("{} file exports failed", exportFailures.size());
+			uiCallback.displayWarning(getCaption("dialog_export_failed_title"), 
+					getCaption("dialog_export_failed") + " " + exportFailures.size() + "\n" + failures);
+		}
+	}
+
+	/**
+	 * Writes a file on the export pool, recording rather than
+	 * throwing any failure
+	 * 
+	 * @param description the description of the file for failure reporting
+	 * @param export the export to run
+	 */
+	private void submitExport(final String description, final Export export) {
+		exportPool.execute(() -> {
+			ExportEvent event = ExportEvent.start(description);
+			try {
+				export.write();
+			} catch (IOException | RuntimeException e) {
+				log.error("Failed to write " + description, e);
+				exportFailures.add(description);
+			} finally {
+				event.stop();
+			}
+		});
+	}
+
 	/**
 	 * Adds an image to the gif buffer
 	 * 
-	 * @param image the image to add 
+	 * @param image the result with the image to add 
 	 */
-	private void addGifPart(BufferedImage image) {
+	private void addGifPart(ResultImage image) {
 		if (OptionsObject.getInstance().getExportAnimGif()) {
 			log.debug("Adding gif part");
-			gifConverter.addFrame(image);
+			ExportEvent event = ExportEvent.start("gif frame");
+			gifConverter.addFrame(image.getImage());
+			event.stop();
 		}
 	}
 
@@ -192,6 +280,7 @@ class WorkOutputter {
 	private void addTapePart(byte[] scrData) {
 		if (OptionsObject.getInstance().getExportTape()) {
 			log.debug("Adding scr to tape part");
+			ExportEvent event = ExportEvent.start("tape part");
 			// Gigascreens are 2 screens in 1 and thus we need to split the scr data
 			convertedTap.add(tapeConverter.createTapPart(scrConverter.getScr1(scrData)));
 			Optional<byte[]> scr2 = scrConverter.getScr2(scrData);
@@ -199,6 +288,7 @@ class WorkOutputter {
 				log.debug("Adding scr2 to tape part");
 				convertedTap.add(tapeConverter.createTapPart(scr2.get()));
 			}
+			event.stop();
 		}	
 	}
 	
@@ -234,44 +324,48 @@ class WorkOutputter {
 	}
 
 	/**
-	 * Dumps the image to a text file
+	 * Asynchronously dumps the image to a text file
 	 * 
-	 * @param image the image to output as text
+	 * @param image the result with the image to output as text
 	 * @param name the file name
-	 * @throws IOException if the export fails
 	 */
-	private void exportText(BufferedImage image, String name) throws IOException {
+	private void exportText(ResultImage image, String name) {
 		if (OptionsObject.getInstance().getExportText()) {
-			log.debug("Exporting text result");
-			SaveHelper.saveBytes(textConverter.createText(image).getBytes(), new File(outFolder + "/" + name + ".txt"));
+			submitExport("text file for input: "+name, () -> {
+				log.debug("Exporting text result");
+				SaveHelper.saveBytes(textConverter.createText(image.getImage()).getBytes(), new File(outFolder + "/" + name + ".txt"));
+			});
 		}
 	}
 
 	/**
-	 * Dumps the scr data to a file
+	 * Asynchronously dumps the scr data to a file
 	 * 
 	 * @param scrData the byte data to output
 	 * @param name the file name
-	 * @throws IOException if the export fails
 	 */
-	private void exportScreen(byte[] scrData, String name) throws IOException {
+	private void exportScreen(byte[] scrData, String name) {
 		if (OptionsObject.getInstance().getExportScreen()) {
-			log.debug("Exporting scr result");
-			SaveHelper.saveBytes(scrData, new File(outFolder + "/" + name + ".scr"));
+			submitExport("SCR for input: "+name, () -> {
+				log.debug("Exporting scr result");
+				SaveHelper.saveBytes(scrData, new File(outFolder + "/" + name + ".scr"));
+			});
 		}
 	}
 
 	/**
-	 * Dumps the image data to a file
+	 * Asynchronously dumps the image data to a file
 	 * 
-	 * @param imageResult the image to output
+	 * @param imageResult the result with the image to output
 	 * @param name the file name
-	 * @throws IOException if the export fails
 	 */
-	private void exportImage(BufferedImage imageResult, String name) throws IOException {
+	private void exportImage(ResultImage imageResult, String name) {
 		if (OptionsObject.getInstance().getExportImage()) {
-			log.debug("Exporting image result");
-			SaveHelper.saveImage(imageResult, outFolder, name, OptionsObject.getInstance().getImageFormat());
+			final String format = OptionsObject.getInstance().getImageFormat();
+			submitExport("image for input: "+name, () -> {
+				log.debug("Exporting image result");
+				SaveHelper.saveImage(imageResult.getImage(), outFolder, name, format);
+			});
 		}
 	}
 	
@@ -286,4 +380,11 @@ class WorkOutputter {
 	private void drawAndUpdatePreview(UiCallback uiCallback, BufferedImage preprocessed, BufferedImage result) {
 		uiCallback.updateMainImage(ImageHelper.prepareMainPreview(preprocessed, result, workManager.getFps()));
 	}
+
+	/**
+	 * A single file write
+	 */
+	private interface Export {
+		void write() throws IOException;
+	}
 }
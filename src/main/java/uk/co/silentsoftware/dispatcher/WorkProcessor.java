@@ -32,8 +32,10 @@ import uk.co.silentsoftware.core.converters.image.ResultImage;
 import uk.co.silentsoftware.core.converters.image.processors.GigaScreenConverterImpl;
 import uk.co.silentsoftware.core.converters.image.processors.ImageConverter;
 import uk.co.silentsoftware.core.converters.spectrum.ScrConverter;
-import uk.co.silentsoftware.core.helpers.ColourHelper;
+import uk.co.silentsoftware.core.helpers.ColourAdjuster;
 import uk.co.silentsoftware.core.helpers.ImageHelper;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.StageEvent;
 
 /**
  * Wrapper class for a work processing unit that
@@ -58,6 +60,12 @@ class WorkProcessor {
 	private static final ScrConverter screenConverter = new ScrConverter();
 
 	private final OptionsObject oo = OptionsObject.getInstance();
+
+	/**
+	 * Images at least this size are pre-processed in parallel bands,
+	 * smaller images aren't worth the hand off cost
+	 */
+	private static final int PARALLEL_PREPROCESS_PIXELS = 512*384;
 	
 	/**
 	 * Main work processor constructor used for actual results
@@ -91,11 +99,14 @@ class WorkProcessor {
 	 * @return the scr byte data
 	 */
 	byte[] convertScreen(ResultImage[] original) {
+		StageEvent stage = StageEvent.start(Stage.ScrEncode);
 		try {
 			return screenConverter.convert(original, imageConverter);
 		} catch(Exception e) {
 			log.error("Error occurred converting scr", e);
 			JOptionPane.showMessageDialog(null, "An error has occurred: "+e.getMessage(), "Guru meditation", JOptionPane.OK_OPTION);  
+		} finally {
+			stage.stop();
 		}
 		return null;
 	}
@@ -131,10 +142,13 @@ class WorkProcessor {
 	 */
 	BufferedImage preProcessImage(final Image original) {
 		ScalingObject so = oo.getScaling();
-		BufferedImage scaled = ImageHelper.quickScaleImage(original, so.getWidth(), so.getHeight());
-		scaled = ColourHelper.changeContrast(scaled, oo.getContrast());
-		scaled = ColourHelper.changeSaturation(scaled, oo.getSaturation());
-		scaled = ColourHelper.changeBrightness(scaled, oo.getBrightness());
-		return scaled;
+		StageEvent stage = StageEvent.start(Stage.Scale);
+		BufferedImage scaled = ImageHelper.scaleImage(original, so.getWidth(), so.getHeight(), oo.getResamplingFilter());
+		stage.stop();
+		stage = StageEvent.start(Stage.PreProcess);
+		ColourAdjuster adjuster = new ColourAdjuster(oo.getContrast(), oo.getSaturation(), oo.getBrightness());
+		BufferedImage preProcessed = adjuster.apply(scaled, scaled.getWidth()*scaled.getHeight() >= PARALLEL_PREPROCESS_PIXELS);
+		stage.stop();
+		return preProcessed;
 	}
 }
@@ -480,7 +480,6 @@ public class ImageToZxSpec {
             boolean isConverting = convertButton.getIcon().equals(CONVERT_ICON);
             if (isConverting){
                 try {
-                    workManager.startFpsCalculator();
                     workManager.processFiles(new UiCallback(), inFiles, outFolder);
                 } catch(Exception e) {
                     JOptionPane.showMessageDialog(null, getCaption("dialog_error")+e.getMessage(), getCaption("dialog_error_title"), JOptionPane.ERROR_MESSAGE);
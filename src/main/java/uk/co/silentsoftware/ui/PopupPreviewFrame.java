@@ -26,6 +26,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.dnd.DropTarget;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static uk.co.silentsoftware.config.LanguageSupport.getCaption;
 
@@ -41,6 +42,18 @@ public class PopupPreviewFrame extends JFrame {
 	private static final int WIDTH = 1024;
 	private static final int HEIGHT = 768;
 	private static final int PANEL_HEIGHT = 768;
+
+	/**
+	 * Interval in which finished preview tiles are repainted together,
+	 * roughly one display refresh
+	 */
+	private static final int REPAINT_INTERVAL_MS = 16;
+
+	/**
+	 * Whether a repaint has been scheduled but has not happened yet
+	 */
+	private static final AtomicBoolean repaintPending = new AtomicBoolean();
+	private static final Timer repaintTimer = createRepaintTimer();
 	private static BufferedImage previewImage;
 	private static int imagePositionX = 0;
 	private static int imagePositionY = 0;
@@ -129,13 +142,31 @@ public class PopupPreviewFrame extends JFrame {
 		imagePanel.setPreferredSize(new Dimension(WIDTH, HEIGHT));
 	}
 
+	/**
+	 * Creates the one shot timer that repaints the preview on the
+	 * event dispatch thread
+	 * 
+	 * @return the repaint timer
+	 */
+	private static Timer createRepaintTimer() {
+		Timer timer = new Timer(REPAINT_INTERVAL_MS, e -> {
+			repaintPending.set(false);
+			imagePanel.repaint();
+		});
+		timer.setRepeats(false);
+		return timer;
+	}
+
 	/**
 	 * Repaint method to allow repainting while threads
 	 * are still processing the results to draw on this
-	 * dialog
+	 * dialog. May be called from any thread, calls within 
+	 * the repaint interval result in a single repaint.
 	 */
 	public static void repaintImage() {
-		imagePanel.repaint(100);
+		if (repaintPending.compareAndSet(false, true)) {
+			repaintTimer.start();
+		}
 	}
 
 	/**
@@ -126,7 +126,7 @@ class PreferencesDialog extends JFrame  {
 	private JPanel createPreProcessOptions() {
 		final OptionsObject oo = OptionsObject.getInstance();
 		JPanel panel = new JPanel();
-		panel.setLayout(new GridLayout(6,2));
+		panel.setLayout(new GridLayout(8,2));
 		JLabel label = new JLabel(getCaption("pp_scaling"), JLabel.CENTER);
 		scaling = new JComboBox<>(oo.getScalings());
 		scaling.setSelectedItem(oo.getScaling());
@@ -137,6 +137,15 @@ class PreferencesDialog extends JFrame  {
         });
 		panel.add(label);
 		panel.add(scaling);
+		label = new JLabel(getCaption("pp_filter"), JLabel.CENTER);
+		final JComboBox<ResamplingFilter> filterOptions = new JComboBox<>(oo.getResamplingFilters());
+		filterOptions.setSelectedItem(oo.getResamplingFilter());
+		filterOptions.addActionListener(event -> {
+            oo.setResamplingFilter((ResamplingFilter)filterOptions.getSelectedItem());
+            PreferencesService.save();
+        });
+		panel.add(label);
+		panel.add(filterOptions);
 		label = new JLabel(getCaption("pp_video_rate"), JLabel.CENTER);
 		final JTextField sampleRate = new JTextField();
 		sampleRate.setHorizontalAlignment(JTextField.RIGHT);
@@ -163,6 +172,15 @@ class PreferencesDialog extends JFrame  {
 		});
 		panel.add(label);
 		panel.add(sampleRate);
+		label = new JLabel(getCaption("pp_duplicates"), JLabel.CENTER);
+		final JComboBox<DuplicateFrameSkip> duplicateOptions = new JComboBox<>(oo.getDuplicateFrameSkips());
+		duplicateOptions.setSelectedItem(oo.getDuplicateFrameSkip());
+		duplicateOptions.addActionListener(event -> {
+            oo.setDuplicateFrameSkip((DuplicateFrameSkip)duplicateOptions.getSelectedItem());
+            PreferencesService.save();
+        });
+		panel.add(label);
+		panel.add(duplicateOptions);
 		label = new JLabel(getCaption("pp_saturation"), JLabel.CENTER);
 		final JSlider satSlider = new JSlider(-100, 100);
 		satSlider.setMajorTickSpacing(25);
@@ -225,7 +243,7 @@ class PreferencesDialog extends JFrame  {
 	private JPanel createAdvancedOptions() {
 		final OptionsObject oo = OptionsObject.getInstance();
 		JPanel panel = new JPanel();
-		panel.setLayout(new GridLayout(6,2));
+		panel.setLayout(new GridLayout(8,2));
 		JLabel label = new JLabel(getCaption("adv_serpentine"), JLabel.CENTER);
 		final JCheckBox serpentine = new JCheckBox();
 		serpentine.setSelected(oo.getSerpentine());
@@ -281,6 +299,26 @@ class PreferencesDialog extends JFrame  {
         });
 		panel.add(label);
 		panel.add(turbo); 	
+
+		label = new JLabel(getCaption("adv_video_sampling"), JLabel.CENTER);
+		final JComboBox<VideoSamplingMode> videoSampling = new JComboBox<>(oo.getVideoSamplingModes());
+		videoSampling.setSelectedItem(oo.getVideoSamplingMode());
+		videoSampling.addActionListener(event -> {
+            oo.setVideoSamplingMode((VideoSamplingMode)videoSampling.getSelectedItem());
+            PreferencesService.save();
+        });
+		panel.add(label);
+		panel.add(videoSampling);
+
+		label = new JLabel(getCaption("adv_decode_threads"), JLabel.CENTER);
+		final JComboBox<Integer> decodeThreads = new JComboBox<>(oo.getDecodeThreadCounts());
+		decodeThreads.setSelectedItem(oo.getDecodeThreads());
+		decodeThreads.addActionListener(event -> {
+            oo.setDecodeThreads((Integer)decodeThreads.getSelectedItem());
+            PreferencesService.save();
+        });
+		panel.add(label);
+		panel.add(decodeThreads);
 		return panel;
 	}
 	
@@ -437,7 +475,7 @@ class PreferencesDialog extends JFrame  {
 	private JPanel createGeneralOptions() {
 		final OptionsObject oo = OptionsObject.getInstance();
 		JPanel panel = new JPanel();
-		panel.setLayout(new GridLayout(10,2));
+		panel.setLayout(new GridLayout(11,2));
 		JLabel label = new JLabel(getCaption("misc_image_output"), JLabel.CENTER);
 		panel.add(label);
 		final JComboBox<String> formatsBox = new JComboBox<>(oo.getImageFormats());
@@ -447,6 +485,15 @@ class PreferencesDialog extends JFrame  {
             PreferencesService.save();
         });
 		panel.add(formatsBox);
+		label = new JLabel(getCaption("misc_png_compression"), JLabel.CENTER);
+		panel.add(label);
+		final JComboBox<Integer> pngCompressionBox = new JComboBox<>(oo.getPngCompressionLevels());
+		pngCompressionBox.setSelectedItem(oo.getPngCompressionLevel());
+		pngCompressionBox.addActionListener(event -> {
+            oo.setPngCompressionLevel((Integer)pngCompressionBox.getSelectedItem());
+            PreferencesService.save();
+        });
+		panel.add(pngCompressionBox);
 		label = new JLabel(getCaption("misc_tap_loader"), JLabel.CENTER);
 		panel.add(label);
 		final JComboBox<BasicLoader> loadersBox = new JComboBox<>(oo.getBasicLoaders());
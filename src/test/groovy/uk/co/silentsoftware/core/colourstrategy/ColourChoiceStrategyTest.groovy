@@ -16,10 +16,16 @@
  */
 package uk.co.silentsoftware.core.colourstrategy
 
+import org.junit.After
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
 import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.config.SpectrumDefaults
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenPalette
+import uk.co.silentsoftware.core.helpers.BlockCache
+
+import java.awt.image.BufferedImage
 
 class ColourChoiceStrategyTest {
 	
@@ -46,4 +52,57 @@ class ColourChoiceStrategyTest {
 		ColourChoiceStrategy strategy = new GigaScreenPaletteStrategy()
 		strategy.chooseBestPaletteMatch(0xFFBBCCDDi, createPopularColours())
 	}
+
+	@After
+	void tearDown() {
+		BlockCache.clear()
+	}
+
+	private static BufferedImage createGigaScreenImage(long seed) {
+		Random random = new Random(seed)
+		BufferedImage image = new BufferedImage(32, 16, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<image.getHeight(); ++y) {
+			for (int x=0; x<image.getWidth(); ++x) {
+				image.setRGB(x, y, SpectrumDefaults.GIGASCREEN_COLOURS_ALL[random.nextInt(SpectrumDefaults.GIGASCREEN_COLOURS_ALL.length)])
+			}
+		}
+		return image
+	}
+
+	@Test
+	void testGigaScreenAttributesAreChosenPerBlock() {
+		GigaScreenPalette palette = SpectrumDefaults.GIGASCREEN_MIXED_PALETTE
+		BufferedImage image = createGigaScreenImage(48)
+		int[][] attributes = new GigaScreenPaletteStrategy().getGigaScreenAttributes(image, palette)
+		Assert.assertEquals(4, attributes.length)
+		Assert.assertEquals(2, attributes[0].length)
+		int[] block = image.getRGB(24, 8, 8, 8, null, 0, 8)
+		Assert.assertEquals(palette.getBestAttribute(block, OptionsObject.getInstance().getColourDistanceMode()), attributes[3][1])
+	}
+
+	/**
+	 * Identical content in a different image, or in part of one, reuses
+	 * the attributes already chosen for it
+	 */
+	@Test
+	void testGigaScreenAttributesAreCachedByBlockContent() {
+		GigaScreenPalette palette = SpectrumDefaults.GIGASCREEN_MIXED_PALETTE
+		GigaScreenPaletteStrategy strategy = new GigaScreenPaletteStrategy()
+		int[][] first = strategy.getGigaScreenAttributes(createGigaScreenImage(49), palette)
+		long requests = BlockCache.getRequestCount()
+		Assert.assertTrue(Arrays.deepEquals(first, strategy.getGigaScreenAttributes(createGigaScreenImage(49), palette)))
+		Assert.assertEquals(requests+8, BlockCache.getRequestCount())
+
+		// A block already in the cache is never searched for again
+		BufferedImage image = createGigaScreenImage(49)
+		int[] flat = new int[64]
+		Arrays.fill(flat, SpectrumDefaults.GIGASCREEN_COLOURS_ALL[7])
+		image.setRGB(8, 0, 8, 8, flat, 0, 8)
+		long fingerprint = BlockCache.fingerprint(GigaScreenPaletteStrategy.class, palette, OptionsObject.getInstance().getColourDistanceMode().getClass())
+		BlockCache.put(BlockCache.key(fingerprint, image.getRGB(8, 0, 8, 8, null, 0, 8)), [5] as int[])
+		int[][] partial = strategy.getGigaScreenAttributes(image, palette)
+		Assert.assertEquals(5, partial[1][0])
+		Assert.assertEquals(first[0][0], partial[0][0])
+		Assert.assertEquals(first[2][1], partial[2][1])
+	}
 }
@@ -0,0 +1,241 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters
+
+import groovy.transform.CompileStatic
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.config.SpectrumDefaults
+import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy
+import uk.co.silentsoftware.core.colourstrategy.FullPaletteStrategy
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy
+import uk.co.silentsoftware.core.colourstrategy.MonochromePaletteStrategy
+import uk.co.silentsoftware.core.converters.image.DitherStrategy
+import uk.co.silentsoftware.core.converters.image.ResultImage
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.FloydSteinbergDitherStrategy
+import uk.co.silentsoftware.core.converters.image.orderedditherstrategy.BayerFourByFourDitherStrategy
+import uk.co.silentsoftware.core.converters.image.processors.CharacterConverterImpl
+import uk.co.silentsoftware.core.converters.image.processors.ErrorDiffusionConverterImpl
+import uk.co.silentsoftware.core.converters.image.processors.GigaScreenConverterImpl
+import uk.co.silentsoftware.core.converters.image.processors.ImageConverter
+import uk.co.silentsoftware.core.converters.image.processors.OrderedDitherConverterImpl
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen
+import uk.co.silentsoftware.core.converters.spectrum.ScrConverter
+import uk.co.silentsoftware.core.converters.spectrum.TapeConverter
+import uk.co.silentsoftware.core.helpers.BlockCache
+import uk.co.silentsoftware.core.helpers.ImageHelper
+import uk.co.silentsoftware.core.metrics.Metrics
+
+import com.sun.management.HotSpotDiagnosticMXBean
+
+import java.awt.image.BufferedImage
+import java.lang.management.ManagementFactory
+
+/**
+ * Checks the memory allocated converting a Spectrum screen sized frame
+ * against the budgets in allocation-budgets.properties, to catch per pixel
+ * allocation creeping into the hot paths. Each path is warmed up first but
+ * the converted block cache is cleared before every iteration so the
+ * uncached conversion is what is measured. The test runs in its own
+ * surefire execution with escape analysis disabled, as how much allocation
+ * the JIT removes otherwise varies with the JDK, the machine and which
+ * tests ran before. When a change legitimately alters allocation update
+ * the budget to the measured value reported by the failure plus 10%.
+ */
+class AllocationBudgetTest {
+
+	private static final String BUDGETS = "/allocation-budgets.properties"
+
+	private static final int WARM_UP = 20
+
+	private static final int ITERATIONS = 10
+
+	private static final long SEED = 0x5A58L
+
+	private final OptionsObject oo = OptionsObject.getInstance()
+
+	private DitherStrategy originalDither
+	private ColourChoiceStrategy originalColourMode
+	private boolean originalExportScreen
+
+	@Before
+	void setUp() {
+		originalDither = oo.getSelectedDitherStrategy()
+		originalColourMode = oo.getColourMode()
+		originalExportScreen = oo.getExportScreen()
+	}
+
+	@After
+	void tearDown() {
+		oo.setSelectedDitherStrategy(originalDither)
+		oo.setColourMode(originalColourMode)
+		oo.setExportScreen(originalExportScreen)
+	}
+
+	@Test
+	void testErrorDiffusionConverter() {
+		select(FloydSteinbergDitherStrategy, FullPaletteStrategy)
+		assertConverterWithinBudget("ErrorDiffusionConverterImpl", new ErrorDiffusionConverterImpl())
+	}
+
+	@Test
+	void testOrderedDitherConverter() {
+		select(BayerFourByFourDitherStrategy, FullPaletteStrategy)
+		assertConverterWithinBudget("OrderedDitherConverterImpl", new OrderedDitherConverterImpl())
+	}
+
+	@Test
+	void testCharacterConverter() {
+		select(FloydSteinbergDitherStrategy, MonochromePaletteStrategy)
+		assertConverterWithinBudget("CharacterConverterImpl", new CharacterConverterImpl())
+	}
+
+	@Test
+	void testGigaScreenConverter() {
+		select(FloydSteinbergDitherStrategy, GigaScreenPaletteStrategy)
+		oo.setExportScreen(true)
+		assertConverterWithinBudget("GigaScreenConverterImpl", new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl()))
+	}
+
+	@Test
+	void testFullPaletteColourAttributes() {
+		assertColourAttributesWithinBudget(FullPaletteStrategy)
+	}
+
+	@Test
+	void testMonochromeColourAttributes() {
+		assertColourAttributesWithinBudget(MonochromePaletteStrategy)
+	}
+
+	@Test
+	void testScrConverter() {
+		select(FloydSteinbergDitherStrategy, FullPaletteStrategy)
+		ImageConverter converter = new ErrorDiffusionConverterImpl()
+		ResultImage[] result = converter.convert(createImage())
+		ScrConverter scrConverter = new ScrConverter()
+		assertWithinBudget("ScrConverter.convert", measure({}, { scrConverter.convert(result, converter) }))
+	}
+
+	@Test
+	void testGigaScreenScrConverter() {
+		select(FloydSteinbergDitherStrategy, GigaScreenPaletteStrategy)
+		ImageConverter converter = new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl())
+		ResultImage[] result = converter.convert(createImage())
+		ScrConverter scrConverter = new ScrConverter()
+		assertWithinBudget("ScrConverter.convert.GigaScreen", measure({}, { scrConverter.convert(result, converter) }))
+	}
+
+	@Test
+	void testTapeConverter() {
+		select(FloydSteinbergDitherStrategy, FullPaletteStrategy)
+		ImageConverter converter = new ErrorDiffusionConverterImpl()
+		byte[] scr = new ScrConverter().convert(converter.convert(createImage()), converter)
+		TapeConverter tapeConverter = new TapeConverter()
+		assertWithinBudget("TapeConverter.createTapPart", measure({}, { tapeConverter.createTapPart(scr) }))
+		List<byte[]> parts = [tapeConverter.createTapPart(scr)]*8
+		assertWithinBudget("TapeConverter.createTap", measure({}, { tapeConverter.createTap(parts) }))
+	}
+
+	private void select(Class<? extends DitherStrategy> dither, Class<? extends ColourChoiceStrategy> colourMode) {
+		DitherStrategy[] dithers = (oo.getErrorDithers() as List) + (oo.getOrderedDithers() as List)
+		oo.setSelectedDitherStrategy(dithers.find { dither.isInstance(it) })
+		oo.setColourMode(oo.getColourModes().find { colourMode.isInstance(it) })
+	}
+
+	private void assertConverterWithinBudget(String name, ImageConverter converter) {
+		BufferedImage image = createImage()
+		assertWithinBudget(name, measure({}, { converter.convert(image) }))
+	}
+
+	/**
+	 * Measures colouring the attributes of an already dithered image, the
+	 * copy of the dithered image for each iteration is not counted
+	 */
+	private void assertColourAttributesWithinBudget(Class<? extends ColourChoiceStrategy> colourMode) {
+		select(FloydSteinbergDitherStrategy, colourMode)
+		ColourChoiceStrategy strategy = oo.getColourMode()
+		BufferedImage dithered = new ErrorDiffusionConverterImpl().convert(createImage())[0].getImage()
+		BufferedImage[] copy = new BufferedImage[1]
+		AttributeScreen[] screen = new AttributeScreen[1]
+		long bytes = measure({
+			copy[0] = ImageHelper.copyImage(dithered)
+			screen[0] = new AttributeScreen(dithered.getWidth(), dithered.getHeight())
+		}, { strategy.colourAttributes(copy[0], screen[0]) })
+		assertWithinBudget(colourMode.getSimpleName()+".colourAttributes", bytes)
+	}
+
+	/**
+	 * Gets the mean bytes allocated by the current thread running the work,
+	 * after warming it up. The block cache is cleared before every iteration.
+	 *
+	 * @param setup run before each iteration, not measured
+	 * @param work the work to measure
+	 * @return the mean bytes allocated per iteration
+	 */
+	@CompileStatic
+	private static long measure(Closure<?> setup, Closure<?> work) {
+		for (int i=0; i<WARM_UP; ++i) {
+			BlockCache.clear()
+			setup.call()
+			work.call()
+		}
+		long total = 0
+		for (int i=0; i<ITERATIONS; ++i) {
+			BlockCache.clear()
+			setup.call()
+			long start = Metrics.getAllocatedBytes()
+			work.call()
+			total += Metrics.getAllocatedBytes()-start
+		}
+		return total/ITERATIONS as long
+	}
+
+	private static void assertWithinBudget(String name, long bytes) {
+		Assert.assertTrue("Thread allocation measurement is not supported by this JVM", Metrics.getAllocatedBytes() >= 0)
+		HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean)
+		Assert.assertEquals("Budgets are measured without escape analysis, run with -XX:-DoEscapeAnalysis as mvn test does",
+				"false", hotSpot.getVMOption("DoEscapeAnalysis").getValue())
+		Properties budgets = new Properties()
+		AllocationBudgetTest.class.getResourceAsStream(BUDGETS).withCloseable { budgets.load(it) }
+		String budget = budgets.getProperty(name)
+		Assert.assertNotNull("No allocation budget for "+name+", measured "+bytes+" bytes", budget)
+		Assert.assertTrue(name+" allocated "+bytes+" bytes, budget is "+budget, bytes <= Long.parseLong(budget))
+	}
+
+	/**
+	 * Creates a Spectrum screen sized image of gradients with some noise
+	 */
+	private static BufferedImage createImage() {
+		Random random = new Random(SEED)
+		int width = SpectrumDefaults.SCREEN_WIDTH
+		int height = SpectrumDefaults.SCREEN_HEIGHT
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				int noise = random.nextInt(24)-12
+				int red = Math.max(0, Math.min(255, (255*x/width as int)+noise))
+				int green = Math.max(0, Math.min(255, (255*y/height as int)+noise))
+				int blue = Math.max(0, Math.min(255, (255*((x+y)%64)/64 as int)+noise))
+				image.setRGB(x, y, red << 16 | green << 8 | blue)
+			}
+		}
+		return image
+	}
+}
@@ -0,0 +1,104 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.beans.XMLDecoder
+import java.nio.ByteBuffer
+import java.util.zip.GZIPInputStream
+
+class CharacterSetTest {
+
+	private static final int INK = 0xFF000000i
+	private static final int PAPER = 0xFFFFFFFFi
+
+	@Test
+	void testMaskTopLeftPixelIsTopBit() {
+		int[] block = new int[64]
+		Arrays.fill(block, INK)
+		block[0] = PAPER
+		block[63] = PAPER
+		Assert.assertEquals(0x8000000000000001L, CharacterSet.toMask(block, PAPER))
+	}
+
+	@Test
+	void testMaskRoundTrip() {
+		int[] block = new int[64]
+		Random random = new Random(1)
+		for (int i=0; i<block.length; ++i) {
+			block[i] = random.nextBoolean() ? INK : PAPER
+		}
+		long mask = CharacterSet.toMask(block, PAPER)
+		Assert.assertArrayEquals(block, CharacterSet.toBlock(mask, INK, PAPER, new int[64]))
+	}
+
+	@Test
+	void testFindBestMatch() {
+		CharacterSet characterSet = new CharacterSet([" ", "#", "-"] as String[], [-1L, 0L, 0xFFFFFF0000FFFFFFL] as long[])
+		Assert.assertEquals(" ", characterSet.getCharacter(characterSet.findBestMatch(-1L)))
+		Assert.assertEquals("#", characterSet.getCharacter(characterSet.findBestMatch(0x0000000000000001L)))
+		Assert.assertEquals("-", characterSet.getCharacter(characterSet.findBestMatch(0xFFFFFF0000FFFF00L)))
+	}
+
+	/**
+	 * First character wins when characters score equally
+	 */
+	@Test
+	void testFindBestMatchTieIsFirst() {
+		CharacterSet characterSet = new CharacterSet(["a", "b"] as String[], [0xFFFFFFFF00000000L, 0x00000000FFFFFFFFL] as long[])
+		Assert.assertEquals(0, characterSet.findBestMatch(0L))
+	}
+
+	@Test
+	void testWriteReadRoundTrip() {
+		CharacterSet characterSet = new CharacterSet(["a", "\u00A9"] as String[], [0x0123456789ABCDEFL, -2L] as long[])
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		characterSet.write(out)
+		CharacterSet read = CharacterSet.read(ByteBuffer.wrap(out.toByteArray()))
+		Assert.assertEquals(2, read.size())
+		Assert.assertEquals("\u00A9", read.getCharacter(1))
+		Assert.assertEquals(0x0123456789ABCDEFL, read.getMask(0))
+		Assert.assertEquals(-2L, read.getMask(1))
+	}
+
+	@Test(expected = IOException.class)
+	void testReadTruncated() {
+		CharacterSet characterSet = new CharacterSet(["a"] as String[], [1L] as long[])
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		characterSet.write(out)
+		CharacterSet.read(ByteBuffer.wrap(Arrays.copyOf(out.toByteArray(), out.size()-1)))
+	}
+
+	/**
+	 * The binary resource must be regenerated (generate-charset profile) if the xml changes
+	 */
+	@Test
+	void testSpectrumCharacterSetMatchesXml() {
+		Map<String, int[]> xml = new XMLDecoder(new GZIPInputStream(new FileInputStream("src/tools/resources/characters.xml.gz"))).withCloseable {
+			(Map<String, int[]>) it.readObject()
+		}
+		CharacterSet expected = new CharacterSet(xml)
+		CharacterSet actual = CharacterSet.getSpectrumCharacterSet()
+		Assert.assertEquals(expected.size(), actual.size())
+		for (int i=0; i<expected.size(); ++i) {
+			Assert.assertEquals(expected.getCharacter(i), actual.getCharacter(i))
+			Assert.assertEquals(expected.getMask(i), actual.getMask(i))
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import uk.co.silentsoftware.config.GigaScreenPaletteOrder
+import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.config.SpectrumDefaults
+import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy
+import uk.co.silentsoftware.core.converters.image.ResultImage
+import uk.co.silentsoftware.core.converters.spectrum.AttributeScreen
+import uk.co.silentsoftware.core.helpers.ColourHelper
+
+import java.awt.image.BufferedImage
+
+import static uk.co.silentsoftware.config.SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE
+
+class GigaScreenConverterImplTest {
+
+	private final OptionsObject oo = OptionsObject.getInstance()
+
+	private ColourChoiceStrategy originalColourMode
+	private GigaScreenPaletteOrder originalPaletteOrder
+	private boolean originalExportScreen
+
+	@Before
+	void setUp() {
+		originalColourMode = oo.getColourMode()
+		originalPaletteOrder = oo.getGigaScreenPaletteOrder()
+		originalExportScreen = oo.getExportScreen()
+		oo.setColourMode(oo.getColourModes().find { it instanceof GigaScreenPaletteStrategy })
+		oo.setExportScreen(true)
+	}
+
+	@After
+	void tearDown() {
+		oo.setColourMode(originalColourMode)
+		oo.setGigaScreenPaletteOrder(originalPaletteOrder)
+		oo.setExportScreen(originalExportScreen)
+	}
+
+	private static BufferedImage createImage() {
+		Random random = new Random(49)
+		BufferedImage image = new BufferedImage(SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<image.getHeight(); ++y) {
+			for (int x=0; x<image.getWidth(); ++x) {
+				image.setRGB(x, y, ColourHelper.componentsToAlphaRgb(x, y, random.nextInt(256)))
+			}
+		}
+		return image
+	}
+
+	private static int[] getBlock(AttributeScreen screen, int column, int row) {
+		int[] block = new int[ATTRIBUTE_BLOCK_SIZE*ATTRIBUTE_BLOCK_SIZE]
+		for (int y=0; y<ATTRIBUTE_BLOCK_SIZE; ++y) {
+			for (int x=0; x<ATTRIBUTE_BLOCK_SIZE; ++x) {
+				block[y*ATTRIBUTE_BLOCK_SIZE+x] = screen.getRGB(column*ATTRIBUTE_BLOCK_SIZE+x, row*ATTRIBUTE_BLOCK_SIZE+y)
+			}
+		}
+		return block
+	}
+
+	/**
+	 * The combined image must be the persistence of vision mix of the two
+	 * screens, whichever order each block's screens were put in
+	 */
+	@Test
+	void testCombinedImageIsMixOfScreens() {
+		oo.setGigaScreenPaletteOrder(GigaScreenPaletteOrder.Luminosity)
+		ResultImage[] result = new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl()).convert(createImage())
+		Assert.assertEquals(3, result.length)
+		AttributeScreen screen1 = result[1].getAttributeScreen().get()
+		AttributeScreen screen2 = result[2].getAttributeScreen().get()
+		BufferedImage image = result[0].getImage()
+		for (int y=0; y<image.getHeight(); ++y) {
+			for (int x=0; x<image.getWidth(); ++x) {
+				int[] rgb1 = ColourHelper.intToRgbComponents(screen1.getRGB(x, y))
+				int[] rgb2 = ColourHelper.intToRgbComponents(screen2.getRGB(x, y))
+				int mix = ColourHelper.componentsToAlphaRgb((int)((rgb1[0]+rgb2[0])/2), (int)((rgb1[1]+rgb2[1])/2), (int)((rgb1[2]+rgb2[2])/2))
+				Assert.assertEquals("pixel "+x+","+y, mix, image.getRGB(x, y))
+			}
+		}
+	}
+
+	@Test
+	void testLuminosityOrderPutsDarkerBlockFirst() {
+		oo.setGigaScreenPaletteOrder(GigaScreenPaletteOrder.Luminosity)
+		ResultImage[] result = new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl()).convert(createImage())
+		AttributeScreen screen1 = result[1].getAttributeScreen().get()
+		AttributeScreen screen2 = result[2].getAttributeScreen().get()
+		for (int row=0; row<screen1.getRows(); ++row) {
+			for (int column=0; column<screen1.getColumns(); ++column) {
+				Assert.assertTrue(ColourHelper.luminositySum(getBlock(screen1, column, row)) <= ColourHelper.luminositySum(getBlock(screen2, column, row)))
+			}
+		}
+	}
+
+	@Test
+	void testSupportingImagesAreRenderedFromScreens() {
+		ResultImage[] result = new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl()).convert(createImage())
+		for (int r=1; r<result.length; ++r) {
+			AttributeScreen screen = result[r].getAttributeScreen().get()
+			BufferedImage image = result[r].getImage()
+			Assert.assertEquals(SpectrumDefaults.SCREEN_WIDTH, image.getWidth())
+			Assert.assertEquals(SpectrumDefaults.SCREEN_HEIGHT, image.getHeight())
+			for (int y=0; y<image.getHeight(); y+=3) {
+				for (int x=0; x<image.getWidth(); x+=3) {
+					Assert.assertEquals(screen.getRGB(x, y), image.getRGB(x, y))
+				}
+			}
+		}
+	}
+
+	@Test
+	void testImagesAreRenderedOnce() {
+		ResultImage[] result = new GigaScreenConverterImpl(new ErrorDiffusionConverterImpl()).convert(createImage())
+		Assert.assertTrue(ResultImage.getFinalImage(result).isPresent())
+		Assert.assertSame(result[0].getImage(), result[0].getImage())
+		Assert.assertSame(result[1].getImage(), result[1].getImage())
+	}
+}
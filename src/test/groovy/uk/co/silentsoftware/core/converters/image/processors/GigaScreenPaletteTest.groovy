@@ -0,0 +1,95 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Test
+import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.config.SpectrumDefaults
+import uk.co.silentsoftware.core.helpers.colourdistance.ColourDistanceStrategy
+
+class GigaScreenPaletteTest {
+
+	private final ColourDistanceStrategy colourDistance = OptionsObject.getInstance().getColourDistanceMode()
+
+	@After
+	void tearDown() {
+		OptionsObject.getInstance().setColourDistanceStrategy(colourDistance)
+	}
+
+	@Test
+	void testTablesMatchAttributes() {
+		GigaScreenAttribute[] attributes = SpectrumDefaults.GIGASCREEN_MIXED_ATTRIBUTES
+		GigaScreenPalette palette = SpectrumDefaults.GIGASCREEN_MIXED_PALETTE
+		Assert.assertEquals(attributes.length, palette.size())
+		for (int a=0; a<attributes.length; ++a) {
+			for (int c=0; c<GigaScreenPalette.COLOURS_PER_ATTRIBUTE; ++c) {
+				GigaScreenAttribute.GigaScreenColour colour = attributes[a].getGigaScreenColour(c)
+				Assert.assertEquals(colour.getGigascreenColour(), palette.getColour(a, c))
+				Assert.assertEquals(colour.getScreen1Colour(), palette.getScreen1Colour(a, c))
+				Assert.assertEquals(colour.getScreen2Colour(), palette.getScreen2Colour(a, c))
+			}
+		}
+		Assert.assertTrue(palette.getDistinctColours().length <= SpectrumDefaults.GIGASCREEN_COLOURS_ALL.length)
+	}
+
+	/**
+	 * The flattened scoring must choose exactly the attribute that scoring
+	 * each attribute object does, including the first of any equal scores
+	 */
+	@Test
+	void testBestAttributeMatchesAttributeScoring() {
+		Random random = new Random(47)
+		GigaScreenAttribute[] attributes = SpectrumDefaults.GIGASCREEN_HALF_BRIGHT_ATTRIBUTES
+		GigaScreenPalette palette = SpectrumDefaults.GIGASCREEN_HALF_BRIGHT_PALETTE
+		for (ColourDistanceStrategy distance : OptionsObject.getInstance().getColourDistances()) {
+			OptionsObject.getInstance().setColourDistanceStrategy(distance)
+			for (int i=0; i<20; ++i) {
+				int[] block = new int[64]
+				for (int p=0; p<block.length; ++p) {
+					block[p] = i % 2 == 0 ? 0xFF000000i | random.nextInt(0x1000000)
+							: SpectrumDefaults.GIGASCREEN_COLOURS_ALL[random.nextInt(6)]
+				}
+				double lowest = Double.MAX_VALUE
+				int expected = 0
+				for (int a=0; a<attributes.length; ++a) {
+					double score = attributes[a].getScoreForAttributeBlock(block)
+					if (score < lowest) {
+						lowest = score
+						expected = a
+					}
+				}
+				Assert.assertEquals(distance.toString(), expected, palette.getBestAttribute(block, distance))
+			}
+		}
+	}
+
+	@Test
+	void testClosestColour() {
+		GigaScreenPalette palette = SpectrumDefaults.GIGASCREEN_BRIGHT_PALETTE
+		for (int c=0; c<GigaScreenPalette.COLOURS_PER_ATTRIBUTE; ++c) {
+			int colour = palette.getColour(5, c)
+			Assert.assertEquals(colour, palette.getColour(5, palette.getClosestColour(5, colour, colourDistance)))
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	void testBestAttributeNeedsWholeBlock() {
+		SpectrumDefaults.GIGASCREEN_BRIGHT_PALETTE.getBestAttribute(new int[8], colourDistance)
+	}
+}
@@ -0,0 +1,120 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.spectrum
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.image.BufferedImage
+
+class AttributeScreenTest {
+
+	private static final int BLACK = 0xFF000000i
+	private static final int BRIGHT_WHITE = 0xFFFFFFFFi
+	private static final int HALF_BLUE = 0xFF0000CDi
+
+	private static int[] block(int first, int rest, int firstCount) {
+		int[] block = new int[64]
+		for (int i=0; i<64; ++i) {
+			block[i] = i < firstCount ? first : rest
+		}
+		return block
+	}
+
+	/**
+	 * Least popular colour in the block (the first pixel) is ink
+	 */
+	@Test
+	void testSetBlockFirstColourIsInk() {
+		AttributeScreen screen = new AttributeScreen(256, 192)
+		screen.setBlock(0, 0, block(BLACK, BRIGHT_WHITE, 1))
+		Assert.assertEquals(0, screen.getInk(0, 0))
+		Assert.assertEquals(7, screen.getPaper(0, 0))
+		Assert.assertTrue(screen.isBright(0, 0))
+		Assert.assertEquals((byte)0x80, screen.getBitmapByte(0, 0))
+		Assert.assertEquals((byte)0x00, screen.getBitmapByte(0, 1))
+	}
+
+	/**
+	 * Most popular colour becomes paper even if it is the first pixel
+	 */
+	@Test
+	void testSetBlockMostPopularColourIsPaper() {
+		AttributeScreen screen = new AttributeScreen(256, 192)
+		screen.setBlock(1, 0, block(HALF_BLUE, BLACK, 40))
+		Assert.assertEquals(0, screen.getInk(1, 0))
+		Assert.assertEquals(1, screen.getPaper(1, 0))
+		Assert.assertFalse(screen.isBright(1, 0))
+		Assert.assertEquals((byte)0x00, screen.getBitmapByte(1, 0))
+		Assert.assertEquals((byte)0xFF, screen.getBitmapByte(1, 7))
+	}
+
+	@Test
+	void testRenderMatchesBlock() {
+		AttributeScreen screen = new AttributeScreen(16, 8)
+		int[] original = block(HALF_BLUE, BLACK, 27)
+		screen.setBlock(1, 0, original)
+		BufferedImage image = screen.toImage()
+		int[] rendered = image.getRGB(8, 0, 8, 8, null, 0, 8)
+		Assert.assertArrayEquals(original, rendered)
+		Assert.assertEquals(BLACK, image.getRGB(0, 0))
+	}
+
+	/**
+	 * Bitmap bytes are written in thirds, pixel row then character row order
+	 * followed by the attributes
+	 */
+	@Test
+	void testToScrLayout() {
+		AttributeScreen screen = new AttributeScreen(256, 192)
+		int[] topLeft = new int[64]
+		Arrays.fill(topLeft, BRIGHT_WHITE)
+		topLeft[8] = BLACK // second pixel row
+		screen.setBlock(0, 0, topLeft)
+		screen.setBlock(0, 1, block(BLACK, BRIGHT_WHITE, 1)) // second character row
+		screen.setBlock(31, 8, block(BLACK, BRIGHT_WHITE, 1)) // start of the middle third
+		screen.setAttribute(2, 23, 1, 2, true, true)
+
+		byte[] scr = screen.toScr()
+		Assert.assertEquals(AttributeScreen.SCR_SIZE, scr.length)
+		Assert.assertEquals((byte)0x80, scr[256])
+		Assert.assertEquals((byte)0x80, scr[32])
+		Assert.assertEquals((byte)0x80, scr[2048+31])
+		Assert.assertEquals((byte)0x78, scr[6144])
+		Assert.assertEquals((byte)0xD1, scr[6144+23*32+2])
+	}
+
+	@Test(expected = IllegalStateException.class)
+	void testToScrRequiresSpectrumSize() {
+		new AttributeScreen(320, 200).toScr()
+	}
+
+	@Test
+	void testSwapBlock() {
+		AttributeScreen screen1 = new AttributeScreen(256, 192)
+		AttributeScreen screen2 = new AttributeScreen(256, 192)
+		screen1.setBlock(3, 4, block(BLACK, BRIGHT_WHITE, 1))
+		screen2.setBlock(3, 4, block(HALF_BLUE, BLACK, 40))
+		byte attribute1 = screen1.getAttribute(3, 4)
+		byte attribute2 = screen2.getAttribute(3, 4)
+		screen1.swapBlock(screen2, 3, 4)
+		Assert.assertEquals(attribute2, screen1.getAttribute(3, 4))
+		Assert.assertEquals(attribute1, screen2.getAttribute(3, 4))
+		Assert.assertEquals((byte)0x00, screen1.getBitmapByte(3, 32))
+		Assert.assertEquals((byte)0x80, screen2.getBitmapByte(3, 32))
+	}
+}
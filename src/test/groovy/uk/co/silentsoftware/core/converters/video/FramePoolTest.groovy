@@ -0,0 +1,58 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.image.BufferedImage
+
+class FramePoolTest {
+
+	@Test
+	void testFrameIsIntRgbBackedByPixels() {
+		PooledFrame frame = new FramePool(4, 3).acquire()
+		Assert.assertEquals(BufferedImage.TYPE_INT_RGB, frame.getType())
+		Assert.assertEquals(12, frame.getPixels().length)
+		frame.getPixels()[1*4+2] = 0x123456
+		Assert.assertEquals(0xFF123456i, frame.getRGB(2, 1))
+	}
+
+	@Test
+	void testReleasedPixelsAreReused() {
+		FramePool pool = new FramePool(4, 3)
+		PooledFrame first = pool.acquire()
+		int[] pixels = first.getPixels()
+		first.release()
+		Assert.assertSame(pixels, pool.acquire().getPixels())
+		Assert.assertNotSame(pixels, pool.acquire().getPixels())
+	}
+
+	/**
+	 * Releasing twice must not hand the same pixels to two frames
+	 */
+	@Test
+	void testDoubleReleaseIgnored() {
+		FramePool pool = new FramePool(4, 3)
+		PooledFrame frame = pool.acquire()
+		frame.release()
+		frame.release()
+		PooledFrame first = pool.acquire()
+		PooledFrame second = pool.acquire()
+		Assert.assertNotSame(first.getPixels(), second.getPixels())
+	}
+}
@@ -0,0 +1,248 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.silentsoftware.config.OptionsObject;
+import uk.co.silentsoftware.core.metrics.Metrics;
+import uk.co.silentsoftware.core.metrics.Stage;
+import uk.co.silentsoftware.core.metrics.VideoDecodeEvent;
+
+/**
+ * Video engine that generates its frames rather than decoding a file, for
+ * reproducible pipeline throughput measurements without a video codec.
+ * The video is a sequence of scenes, each a moving gradient, random noise
+ * or scrolling tiles, with a hard cut between them. Every frame is a pure
+ * function of the seed and the frame number so the same engine settings
+ * always produce the same video. Frames are sampled at the options' frames
+ * per second just as a decoded video would be.
+ */
+public class SyntheticVideoImportEngine implements VideoImportEngine {
+
+	private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+	/**
+	 * Length of each scene before the cut to the next
+	 */
+	private static final double SCENE_SECONDS = 2;
+
+	/**
+	 * Size of the scrolling tiles in pixels
+	 */
+	private static final int TILE_SIZE = 16;
+
+	/**
+	 * Pixels the tiles move each frame
+	 */
+	private static final int SCROLL_SPEED = 3;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	/**
+	 * The kinds of scene, in the order they are cut between
+	 */
+	enum Scene {
+		Gradient, Noise, Scrolling
+	}
+
+	private final int width;
+	private final int height;
+	private final double framesPerSecond;
+	private final int frameCount;
+	private final int sceneLength;
+	private final long seed;
+
+	private volatile boolean cancel = false;
+
+	/**
+	 * @param width the frame width
+	 * @param height the frame height
+	 * @param framesPerSecond the source frame rate, before sampling
+	 * @param durationSeconds the length of the video
+	 * @param seed the seed for the scene colours and noise
+	 */
+	public SyntheticVideoImportEngine(int width, int height, double framesPerSecond, double durationSeconds, long seed) {
+		if (width <= 0 || height <= 0 || framesPerSecond <= 0 || durationSeconds <= 0) {
+			throw new IllegalArgumentException("Video size, frame rate and duration must be positive");
+		}
+		this.width = width;
+		this.height = height;
+		this.framesPerSecond = framesPerSecond;
+		this.frameCount = Math.max(1, (int)Math.round(framesPerSecond*durationSeconds));
+		this.sceneLength = Math.max(1, (int)Math.round(framesPerSecond*SCENE_SECONDS));
+		this.seed = seed;
+	}
+
+	/**
+	 * Generates the video's frames into the queue. The file is not read
+	 * and may be anything, including null.
+	 */
+	@Override
+	public void convertVideoToImages(File f, VideoFrameQueue sharedQueue, VideoLoadedLock videoLoadedLock) throws Exception {
+		cancel = false;
+		FramePool pool = new FramePool(width, height);
+		videoLoadedLock.preloadFinished();
+		long sampleRateNanos = Math.round(NANOS_PER_SECOND/OptionsObject.getInstance().getVideoFramesPerSecond());
+		long nextSnapShotTime = 0;
+		try {
+			for (int i=0; i<frameCount; ++i) {
+				long timestamp = getTimestamp(i);
+				if (timestamp < nextSnapShotTime) {
+					continue;
+				}
+				VideoDecodeEvent event = new VideoDecodeEvent();
+				event.begin();
+				long start = System.nanoTime();
+				PooledFrame frame = pool.acquire();
+				render(i, frame.getPixels());
+				Metrics.record(Stage.Read, start);
+				event.commit(this, timestamp);
+				if (!sharedQueue.put(frame)) {
+					log.debug("Video queue closed at {}", timestamp);
+					frame.release();
+					return;
+				}
+				nextSnapShotTime = timestamp+sampleRateNanos;
+				if (cancel || sharedQueue.isCancelled()) {
+					return;
+				}
+			}
+		} finally {
+			cancel = false;
+		}
+	}
+
+	/*
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Image extractFrame(File f, double position) {
+		int index = (int)Math.round((frameCount-1)*Math.min(1d, Math.max(0d, position)));
+		return getFrame(index);
+	}
+
+	/**
+	 * Gets a single frame of the video
+	 *
+	 * @param index the frame number, from 0
+	 * @return the frame
+	 */
+	public BufferedImage getFrame(int index) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		render(index, ((DataBufferInt)image.getRaster().getDataBuffer()).getData());
+		return image;
+	}
+
+	/**
+	 * Draws a frame
+	 *
+	 * @param index the frame number
+	 * @param pixels the frame's pixels to write, one int per pixel in row order
+	 */
+	void render(int index, int[] pixels) {
+		int scene = index/sceneLength;
+		int t = index%sceneLength;
+		SplittableRandom sceneRandom = new SplittableRandom(seed+scene);
+		switch (getScene(index)) {
+			case Gradient:
+				renderGradient(pixels, t, sceneRandom.nextInt(256));
+				break;
+			case Noise:
+				renderNoise(pixels, new SplittableRandom(sceneRandom.nextLong()+t));
+				break;
+			default:
+				renderScrolling(pixels, t, new int[]{sceneRandom.nextInt(0x1000000), sceneRandom.nextInt(0x1000000),
+						sceneRandom.nextInt(0x1000000), sceneRandom.nextInt(0x1000000)});
+		}
+	}
+
+	private void renderGradient(int[] pixels, int t, int hue) {
+		for (int y=0; y<height; ++y) {
+			int green = (y*255/height+t*2) & 0xFF;
+			for (int x=0; x<width; ++x) {
+				int red = (x*255/width+t*4+hue) & 0xFF;
+				int blue = ((x+y)*255/(width+height)+hue) & 0xFF;
+				pixels[y*width+x] = red << 16 | green << 8 | blue;
+			}
+		}
+	}
+
+	private static void renderNoise(int[] pixels, SplittableRandom random) {
+		for (int i=0; i<pixels.length; ++i) {
+			pixels[i] = random.nextInt(0x1000000);
+		}
+	}
+
+	private void renderScrolling(int[] pixels, int t, int[] colours) {
+		int offset = t*SCROLL_SPEED;
+		for (int y=0; y<height; ++y) {
+			int tileY = (y+offset/2)/TILE_SIZE;
+			for (int x=0; x<width; ++x) {
+				int tileX = (x+offset)/TILE_SIZE;
+				pixels[y*width+x] = colours[(tileX*7+tileY*13) & 3];
+			}
+		}
+	}
+
+	/**
+	 * Gets the kind of scene a frame is in
+	 *
+	 * @param index the frame number
+	 * @return the scene
+	 */
+	Scene getScene(int index) {
+		return Scene.values()[index/sceneLength%Scene.values().length];
+	}
+
+	/**
+	 * Gets a frame's position in the video
+	 *
+	 * @param index the frame number
+	 * @return the position in nanoseconds
+	 */
+	long getTimestamp(int index) {
+		return Math.round(index*NANOS_PER_SECOND/framesPerSecond);
+	}
+
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/*
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void cancel() {
+		this.cancel = true;
+	}
+
+	/*
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "Synthetic "+width+"x"+height+"@"+framesPerSecond;
+	}
+}
@@ -0,0 +1,111 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import uk.co.silentsoftware.config.OptionsObject
+
+import java.awt.image.BufferedImage
+import java.awt.image.DataBufferInt
+
+class SyntheticVideoImportEngineTest {
+
+	private double framesPerSecond
+
+	@Before
+	void setUp() {
+		framesPerSecond = OptionsObject.getInstance().getVideoFramesPerSecond()
+		OptionsObject.getInstance().setVideoFramesPerSecond(10)
+	}
+
+	@After
+	void tearDown() {
+		OptionsObject.getInstance().setVideoFramesPerSecond(framesPerSecond)
+	}
+
+	private static List<int[]> convert(SyntheticVideoImportEngine engine) {
+		VideoFrameQueue queue = new VideoFrameQueue(Long.MAX_VALUE)
+		engine.convertVideoToImages(null, queue, new VideoLoadedLock())
+		queue.finish()
+		List<int[]> frames = []
+		BufferedImage frame
+		while ((frame = queue.take() as BufferedImage) != null) {
+			frames.add(((DataBufferInt)frame.getRaster().getDataBuffer()).getData().clone())
+			((PooledFrame)frame).release()
+		}
+		return frames
+	}
+
+	@Test
+	void testSameSeedGivesSameVideo() {
+		List<int[]> first = convert(new SyntheticVideoImportEngine(64, 48, 25, 7, 42))
+		List<int[]> second = convert(new SyntheticVideoImportEngine(64, 48, 25, 7, 42))
+		Assert.assertEquals(first.size(), second.size())
+		for (int i=0; i<first.size(); ++i) {
+			Assert.assertArrayEquals("Frame "+i, first[i], second[i])
+		}
+		List<int[]> other = convert(new SyntheticVideoImportEngine(64, 48, 25, 7, 43))
+		Assert.assertFalse(Arrays.equals(first[0], other[0]))
+	}
+
+	/**
+	 * As with the decoding engines a sample is the first frame at least
+	 * 100ms after the last, so every third frame of a 25fps video
+	 */
+	@Test
+	void testFramesAreSampled() {
+		SyntheticVideoImportEngine engine = new SyntheticVideoImportEngine(32, 24, 25, 7, 1)
+		Assert.assertEquals(175, engine.getFrameCount())
+		Assert.assertEquals(59, convert(engine).size())
+	}
+
+	@Test
+	void testScenesCutBetweenKinds() {
+		SyntheticVideoImportEngine engine = new SyntheticVideoImportEngine(32, 24, 25, 7, 1)
+		Assert.assertEquals(SyntheticVideoImportEngine.Scene.Gradient, engine.getScene(49))
+		Assert.assertEquals(SyntheticVideoImportEngine.Scene.Noise, engine.getScene(50))
+		Assert.assertEquals(SyntheticVideoImportEngine.Scene.Scrolling, engine.getScene(100))
+		Assert.assertEquals(SyntheticVideoImportEngine.Scene.Gradient, engine.getScene(150))
+
+		// Noise changes every frame, scrolling tiles move
+		Assert.assertFalse(Arrays.equals(pixels(engine.getFrame(50)), pixels(engine.getFrame(51))))
+		Assert.assertFalse(Arrays.equals(pixels(engine.getFrame(100)), pixels(engine.getFrame(101))))
+	}
+
+	@Test
+	void testExtractFrameMatchesVideo() {
+		SyntheticVideoImportEngine engine = new SyntheticVideoImportEngine(32, 24, 25, 7, 1)
+		Assert.assertArrayEquals(pixels(engine.getFrame(0)), pixels(engine.extractFrame(null, 0) as BufferedImage))
+		Assert.assertArrayEquals(pixels(engine.getFrame(174)), pixels(engine.extractFrame(null, 1) as BufferedImage))
+		Assert.assertArrayEquals(convert(engine)[0], pixels(engine.getFrame(0)))
+	}
+
+	@Test
+	void testCancelledQueueStopsTheVideo() {
+		VideoFrameQueue queue = new VideoFrameQueue(Long.MAX_VALUE)
+		queue.cancel()
+		new SyntheticVideoImportEngine(32, 24, 25, 7, 1).convertVideoToImages(null, queue, new VideoLoadedLock())
+		Assert.assertEquals(0, queue.size())
+	}
+
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt)image.getRaster().getDataBuffer()).getData()
+	}
+}
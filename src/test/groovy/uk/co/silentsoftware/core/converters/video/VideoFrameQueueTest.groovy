@@ -0,0 +1,118 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.video
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.image.BufferedImage
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
+
+class VideoFrameQueueTest {
+
+	private static final long FRAME_BYTES = 16*16*4
+
+	private static BufferedImage frame() {
+		return new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB)
+	}
+
+	@Test
+	void testSizeOf() {
+		Assert.assertEquals(FRAME_BYTES, VideoFrameQueue.sizeOf(frame()))
+		Assert.assertEquals(16*16*3L, VideoFrameQueue.sizeOf(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR)))
+	}
+
+	@Test
+	void testFinishedQueueDrainsThenEnds() {
+		VideoFrameQueue queue = new VideoFrameQueue(FRAME_BYTES*4)
+		BufferedImage first = frame()
+		BufferedImage second = frame()
+		Assert.assertTrue(queue.put(first))
+		Assert.assertTrue(queue.put(second))
+		queue.finish()
+		Assert.assertFalse(queue.put(frame()))
+		Assert.assertSame(first, queue.take())
+		Assert.assertSame(second, queue.take())
+		Assert.assertNull(queue.take())
+	}
+
+	/**
+	 * A frame bigger than the budget is accepted into an empty queue
+	 * but the next frame waits until it has been taken and released
+	 */
+	@Test
+	void testPutBlocksWhenOverBudget() {
+		VideoFrameQueue queue = new VideoFrameQueue(FRAME_BYTES/2 as long)
+		Assert.assertTrue(queue.put(frame()))
+		CountDownLatch added = new CountDownLatch(1)
+		Thread producer = Thread.start {
+			queue.put(frame())
+			added.countDown()
+		}
+		Assert.assertFalse(added.await(100, TimeUnit.MILLISECONDS))
+		BufferedImage taken = queue.take() as BufferedImage
+		Assert.assertNotNull(taken)
+		Assert.assertFalse(added.await(100, TimeUnit.MILLISECONDS))
+		queue.release(taken)
+		Assert.assertTrue(added.await(5, TimeUnit.SECONDS))
+		producer.join()
+	}
+
+	@Test
+	void testReleaseReturnsPooledFrames() {
+		FramePool pool = new FramePool(16, 16)
+		PooledFrame pooled = pool.acquire()
+		VideoFrameQueue queue = new VideoFrameQueue(FRAME_BYTES*4)
+		queue.put(pooled)
+		queue.release(queue.take())
+		Assert.assertSame(pooled.getPixels(), pool.acquire().getPixels())
+	}
+
+	@Test
+	void testCancelUnblocksBothSides() {
+		VideoFrameQueue full = new VideoFrameQueue(FRAME_BYTES)
+		full.put(frame())
+		AtomicReference<Boolean> putResult = new AtomicReference<>()
+		Thread producer = Thread.start { putResult.set(full.put(frame())) }
+
+		VideoFrameQueue empty = new VideoFrameQueue(FRAME_BYTES)
+		AtomicReference<Object> takeResult = new AtomicReference<>("waiting")
+		Thread consumer = Thread.start { takeResult.set(empty.take()) }
+
+		Thread.sleep(50)
+		full.cancel()
+		empty.cancel()
+		producer.join(5000)
+		consumer.join(5000)
+		Assert.assertFalse(putResult.get())
+		Assert.assertNull(takeResult.get())
+		Assert.assertNull(full.take())
+		Assert.assertTrue(full.isCancelled())
+	}
+
+	@Test
+	void testCancelReleasesPooledFrames() {
+		FramePool pool = new FramePool(16, 16)
+		PooledFrame pooled = pool.acquire()
+		VideoFrameQueue queue = new VideoFrameQueue(FRAME_BYTES*4)
+		queue.put(pooled)
+		queue.cancel()
+		Assert.assertSame(pooled.getPixels(), pool.acquire().getPixels())
+	}
+}
@@ -0,0 +1,62 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers
+
+import org.junit.Assert
+import org.junit.Test
+
+class BlockCacheTest {
+
+	private static int[] block(int rgb) {
+		int[] block = new int[64]
+		Arrays.fill(block, rgb)
+		return block
+	}
+
+	@Test
+	void testKeyIsUnaffectedByLaterBlockChanges() {
+		long fingerprint = BlockCache.fingerprint(BlockCacheTest.class, 1)
+		int[] pixels = block(0xFF112233i)
+		BlockCache.Key key = BlockCache.key(fingerprint, pixels)
+		pixels[0] = 0xFF000000i
+		BlockCache.put(key, pixels)
+
+		int[] cached = BlockCache.get(BlockCache.key(fingerprint, block(0xFF112233i)))
+		Assert.assertArrayEquals(pixels, cached)
+		Assert.assertNull(BlockCache.get(BlockCache.key(fingerprint, pixels)))
+	}
+
+	@Test
+	void testDifferentSettingsDoNotShareResults() {
+		int[] pixels = block(0xFF445566i)
+		BlockCache.put(BlockCache.key(BlockCache.fingerprint(BlockCacheTest.class, 2), pixels), pixels)
+		Assert.assertNull(BlockCache.get(BlockCache.key(BlockCache.fingerprint(BlockCacheTest.class, 3), pixels)))
+		Assert.assertNotEquals(BlockCache.fingerprint(BlockCacheTest.class, 2), BlockCache.fingerprint(BlockCacheTest.class, 3))
+	}
+
+	@Test
+	void testHitRateIsRecorded() {
+		long requests = BlockCache.getRequestCount()
+		int[] pixels = block(0xFF778899i)
+		BlockCache.Key key = BlockCache.key(BlockCache.fingerprint(BlockCacheTest.class, 4), pixels)
+		BlockCache.get(key)
+		BlockCache.put(key, pixels)
+		BlockCache.get(key)
+		Assert.assertEquals(requests+2, BlockCache.getRequestCount())
+		Assert.assertTrue(BlockCache.getHitRate() > 0)
+	}
+}
@@ -0,0 +1,100 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.Color
+import java.awt.image.BufferedImage
+import java.awt.image.RescaleOp
+
+class ColourAdjusterTest {
+
+	private static BufferedImage createImage(int type) {
+		Random random = new Random(1)
+		BufferedImage image = new BufferedImage(64, 48, type)
+		for (int y=0; y<image.getHeight(); ++y) {
+			for (int x=0; x<image.getWidth(); ++x) {
+				image.setRGB(x, y, 0xFF000000i | random.nextInt(0x1000000))
+			}
+		}
+		return image
+	}
+
+	private static BufferedImage copy(BufferedImage image) {
+		return new BufferedImage(image.getColorModel(), image.copyData(null), false, null)
+	}
+
+	@Test
+	void testContrastAndBrightnessMatchRescaleOp() {
+		BufferedImage original = createImage(BufferedImage.TYPE_INT_RGB)
+		BufferedImage expected = new RescaleOp(1.35f, 0, null).filter(original, null)
+		expected = new RescaleOp(1, -17.5f, null).filter(expected, null)
+
+		BufferedImage adjusted = copy(original)
+		Assert.assertSame(adjusted, new ColourAdjuster(1.35f, 0, -17.5f).apply(adjusted, false))
+		for (int y=0; y<original.getHeight(); ++y) {
+			for (int x=0; x<original.getWidth(); ++x) {
+				Assert.assertEquals(expected.getRGB(x, y), adjusted.getRGB(x, y))
+			}
+		}
+	}
+
+	/**
+	 * Saturation is calculated without HSB conversion so allow for rounding
+	 */
+	@Test
+	void testSaturationMatchesHsb() {
+		ColourAdjuster adjuster = new ColourAdjuster(1, 0.3f, 0)
+		BufferedImage original = createImage(BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<original.getHeight(); ++y) {
+			for (int x=0; x<original.getWidth(); ++x) {
+				int rgb = original.getRGB(x, y)
+				float[] hsb = Color.RGBtoHSB((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, null)
+				Color expected = new Color(Color.HSBtoRGB(hsb[0], Math.min(1f, (float)(hsb[1]+0.3f)) as float, hsb[2]))
+				Color actual = new Color(adjuster.adjust(rgb))
+				Assert.assertEquals(expected.getRed(), actual.getRed(), 1)
+				Assert.assertEquals(expected.getGreen(), actual.getGreen(), 1)
+				Assert.assertEquals(expected.getBlue(), actual.getBlue(), 1)
+			}
+		}
+	}
+
+	@Test
+	void testParallelAndOtherImageTypesMatch() {
+		ColourAdjuster adjuster = new ColourAdjuster(0.8f, -0.2f, 10)
+		BufferedImage original = createImage(BufferedImage.TYPE_INT_RGB)
+		BufferedImage serial = adjuster.apply(copy(original), false)
+		BufferedImage parallel = adjuster.apply(copy(original), true)
+		BufferedImage bgr = createImage(BufferedImage.TYPE_3BYTE_BGR)
+		adjuster.apply(bgr, true)
+		for (int y=0; y<original.getHeight(); ++y) {
+			for (int x=0; x<original.getWidth(); ++x) {
+				Assert.assertEquals(serial.getRGB(x, y), parallel.getRGB(x, y))
+				Assert.assertEquals(serial.getRGB(x, y), bgr.getRGB(x, y))
+			}
+		}
+	}
+
+	@Test
+	void testIdentityLeavesImageUnchanged() {
+		BufferedImage original = createImage(BufferedImage.TYPE_INT_RGB)
+		BufferedImage adjusted = new ColourAdjuster(1, 0, 0).apply(copy(original), true)
+		Assert.assertEquals(original.getRGB(5, 5), adjusted.getRGB(5, 5))
+	}
+}
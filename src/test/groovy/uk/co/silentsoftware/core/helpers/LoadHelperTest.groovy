@@ -0,0 +1,81 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers
+
+import org.junit.Assert
+import org.junit.Test
+import uk.co.silentsoftware.config.ResamplingFilter
+
+import javax.imageio.ImageIO
+import java.awt.image.BufferedImage
+
+class LoadHelperTest {
+
+	private static File newFile() {
+		File file = File.createTempFile("loadhelper", ".png")
+		file.deleteOnExit()
+		return file
+	}
+
+	private File writeImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				image.setRGB(x, y, (x & 0xFF) << 16 | (y & 0xFF))
+			}
+		}
+		File file = newFile()
+		ImageIO.write(image, "png", file)
+		return file
+	}
+
+	@Test
+	void testLargeImageIsSubsampled() {
+		BufferedImage image = LoadHelper.readImage(writeImage(2048, 1536), 256, 192)
+		Assert.assertEquals(512, image.getWidth())
+		Assert.assertEquals(384, image.getHeight())
+	}
+
+	@Test
+	void testSmallImageIsReadInFull() {
+		BufferedImage image = LoadHelper.readImage(writeImage(300, 200), 256, 192)
+		Assert.assertEquals(300, image.getWidth())
+		Assert.assertEquals(200, image.getHeight())
+		Assert.assertEquals(LoadHelper.readImage(writeImage(300, 200), -1, -1).getWidth(), 300)
+	}
+
+	/**
+	 * Only the part of a tall image that will be visible after proportional
+	 * scaling is decoded, and it still fills the screen once scaled
+	 */
+	@Test
+	void testProportionalScalingDecodesVisibleRegion() {
+		BufferedImage image = LoadHelper.readImage(writeImage(1030, 4000), 256, -1)
+		Assert.assertEquals(515, image.getWidth())
+		Assert.assertTrue(image.getHeight() < 500)
+		BufferedImage scaled = ImageHelper.scaleImage(image, 256, -1, ResamplingFilter.AreaAverage)
+		Assert.assertEquals(192, scaled.getHeight())
+		Assert.assertNotEquals(0xFF000000i, scaled.getRGB(255, 191))
+	}
+
+	@Test
+	void testUnsupportedFileReturnsNull() {
+		File file = newFile()
+		file.text = "not an image"
+		Assert.assertNull(LoadHelper.readImage(file, 256, 192))
+	}
+}
@@ -0,0 +1,95 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers
+
+import org.junit.Assert
+import org.junit.Test
+import uk.co.silentsoftware.config.SpectrumDefaults
+
+import javax.imageio.ImageIO
+import java.awt.image.BufferedImage
+
+class PngHelperTest {
+
+	/**
+	 * Offset of the bit depth byte (signature + IHDR length, type, width, height)
+	 */
+	private static final int BIT_DEPTH_OFFSET = 24
+
+	private static BufferedImage createImage(int width, int height, int[] colours) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				image.setRGB(x, y, colours[(x+y*3) % colours.length])
+			}
+		}
+		return image
+	}
+
+	private static void assertSameImage(BufferedImage expected, byte[] png) {
+		BufferedImage actual = ImageIO.read(new ByteArrayInputStream(png))
+		Assert.assertEquals(expected.getWidth(), actual.getWidth())
+		Assert.assertEquals(expected.getHeight(), actual.getHeight())
+		for (int y=0; y<expected.getHeight(); ++y) {
+			for (int x=0; x<expected.getWidth(); ++x) {
+				Assert.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y))
+			}
+		}
+	}
+
+	@Test
+	void testSpectrumColoursWrittenAsFourBit() {
+		BufferedImage image = createImage(257, 19, SpectrumDefaults.SPECTRUM_COLOURS_ALL)
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		Assert.assertTrue(PngHelper.writeIndexed(image, out, 6))
+		byte[] png = out.toByteArray()
+		Assert.assertEquals(4, png[BIT_DEPTH_OFFSET])
+		assertSameImage(image, png)
+	}
+
+	@Test
+	void testManyColoursWrittenAsEightBit() {
+		int[] colours = new int[200]
+		for (int i=0; i<colours.length; ++i) {
+			colours[i] = 0xFF000000i | (i * 0x010203)
+		}
+		BufferedImage image = createImage(64, 48, colours)
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		Assert.assertTrue(PngHelper.writeIndexed(image, out, 1))
+		byte[] png = out.toByteArray()
+		Assert.assertEquals(8, png[BIT_DEPTH_OFFSET])
+		assertSameImage(image, png)
+	}
+
+	@Test
+	void testTooManyColoursNotWritten() {
+		int[] colours = new int[300]
+		for (int i=0; i<colours.length; ++i) {
+			colours[i] = 0xFF000000i | i
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		Assert.assertFalse(PngHelper.writeIndexed(createImage(300, 1, colours), out, 6))
+		Assert.assertEquals(0, out.size())
+	}
+
+	@Test
+	void testTransparencyNotWritten() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		Assert.assertFalse(PngHelper.writeIndexed(createImage(8, 8, [0xFF000000i, 0x00FFFFFFi] as int[]), out, 6))
+		Assert.assertEquals(0, out.size())
+	}
+}
@@ -0,0 +1,112 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.helpers
+
+import org.junit.Assert
+import org.junit.Test
+import uk.co.silentsoftware.config.ResamplingFilter
+
+import java.awt.Image
+import java.awt.image.BufferedImage
+
+class ResamplerTest {
+
+	private static BufferedImage createImage(int width, int height) {
+		Random random = new Random(1)
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				image.setRGB(x, y, random.nextInt(0x1000000))
+			}
+		}
+		return image
+	}
+
+	private static BufferedImage scaledInstance(BufferedImage image, int width, int height, int hints) {
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+		result.createGraphics().drawImage(image.getScaledInstance(width, height, hints), 0, 0, null)
+		return result
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		Assert.assertEquals(expected.getWidth(), actual.getWidth())
+		Assert.assertEquals(expected.getHeight(), actual.getHeight())
+		for (int y=0; y<expected.getHeight(); ++y) {
+			for (int x=0; x<expected.getWidth(); ++x) {
+				Assert.assertEquals(expected.getRGB(x, y), actual.getRGB(x, y))
+			}
+		}
+	}
+
+	/**
+	 * Nearest and area average behave as Image.SCALE_FAST and SCALE_SMOOTH did
+	 */
+	@Test
+	void testMatchesScaledInstance() {
+		BufferedImage image = createImage(200, 150)
+		assertSameImage(scaledInstance(image, 64, 48, Image.SCALE_FAST), Resampler.resample(image, 64, 48, ResamplingFilter.Nearest))
+		assertSameImage(scaledInstance(image, 64, 48, Image.SCALE_SMOOTH), Resampler.resample(image, 64, 48, ResamplingFilter.AreaAverage))
+		assertSameImage(scaledInstance(image, 300, 170, Image.SCALE_SMOOTH), Resampler.resample(image, 300, 170, ResamplingFilter.AreaAverage))
+	}
+
+	@Test
+	void testWeightsAreNormalised() {
+		for (ResamplingFilter filter : ResamplingFilter.values()) {
+			for (int[] sizes : [[1920, 256], [256, 256], [100, 256], [3, 1]]) {
+				Resampler.Weights weights = Resampler.createWeights(filter, sizes[0], sizes[1])
+				for (int i=0; i<sizes[1]; ++i) {
+					Assert.assertTrue(weights.starts[i] >= 0 && weights.starts[i]+weights.taps <= sizes[0])
+					if (filter != ResamplingFilter.Nearest) {
+						float total = 0
+						for (int t=0; t<weights.taps; ++t) {
+							total += weights.weights[i*weights.taps+t]
+						}
+						Assert.assertEquals(1f, total, 0.0001f)
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void testFlatColourIsPreserved() {
+		BufferedImage image = new BufferedImage(97, 61, BufferedImage.TYPE_3BYTE_BGR)
+		image.createGraphics().with {
+			setColor(new java.awt.Color(0x40A0F0))
+			fillRect(0, 0, 97, 61)
+		}
+		for (ResamplingFilter filter : ResamplingFilter.values()) {
+			BufferedImage scaled = Resampler.resample(image, 40, 130, filter)
+			Assert.assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType())
+			Assert.assertEquals(0xFF40A0F0i, scaled.getRGB(0, 0))
+			Assert.assertEquals(0xFF40A0F0i, scaled.getRGB(39, 129))
+		}
+	}
+
+	/**
+	 * Proportional scaling places the scaled image top left on a Spectrum sized canvas
+	 */
+	@Test
+	void testProportionalScaling() {
+		BufferedImage image = createImage(512, 256)
+		BufferedImage scaled = ImageHelper.scaleImage(image, 256, -1, ResamplingFilter.Bilinear)
+		Assert.assertEquals(256, scaled.getWidth())
+		Assert.assertEquals(192, scaled.getHeight())
+		Assert.assertNotEquals(0xFF000000i, scaled.getRGB(10, 127))
+		Assert.assertEquals(0xFF000000i, scaled.getRGB(10, 128))
+	}
+}
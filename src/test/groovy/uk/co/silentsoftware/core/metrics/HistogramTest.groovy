@@ -0,0 +1,77 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics
+
+import org.junit.Assert
+import org.junit.Test
+
+class HistogramTest {
+
+	@Test
+	void testEmpty() {
+		Histogram histogram = new Histogram()
+		Assert.assertEquals(0, histogram.getCount())
+		Assert.assertEquals(0, histogram.getMean(), 0)
+		Assert.assertEquals(0, histogram.getPercentile(99))
+	}
+
+	@Test
+	void testBucketsCoverEveryValue() {
+		long[] values = [0, 1, 15, 16, 17, 31, 32, 1000, 999_999, 123_456_789_012L, Long.MAX_VALUE]
+		for (long value : values) {
+			int index = Histogram.indexOf(value)
+			long highest = Histogram.highestEquivalentValue(index)
+			Assert.assertTrue("Value "+value, highest >= value)
+			Assert.assertTrue("Value "+value+" within 1/16", highest-value <= value/16)
+			Assert.assertEquals(index, Histogram.indexOf(highest))
+		}
+	}
+
+	@Test
+	void testPercentiles() {
+		Histogram histogram = new Histogram()
+		for (int i=1; i<=1000; ++i) {
+			histogram.record(i*1000)
+		}
+		Assert.assertEquals(1000, histogram.getCount())
+		Assert.assertEquals(500_500, histogram.getMean(), 0.001)
+		Assert.assertEquals(1_000_000, histogram.getMax())
+		Assert.assertEquals(500_000, histogram.getPercentile(50), 500_000/16)
+		Assert.assertEquals(990_000, histogram.getPercentile(99), 990_000/16)
+		Assert.assertEquals(1_000_000, histogram.getPercentile(100))
+	}
+
+	@Test
+	void testConcurrentRecording() {
+		Histogram histogram = new Histogram()
+		List<Thread> threads = (1..4).collect { n -> Thread.start { 10_000.times { histogram.record(n) } } }
+		threads*.join()
+		Assert.assertEquals(40_000, histogram.getCount())
+		Assert.assertEquals(2.5, histogram.getMean(), 0.0001)
+		Assert.assertEquals(4, histogram.getMax())
+	}
+
+	@Test
+	void testReset() {
+		Histogram histogram = new Histogram()
+		histogram.record(42)
+		histogram.reset()
+		Assert.assertEquals(0, histogram.getCount())
+		Assert.assertEquals(0, histogram.getMax())
+		Assert.assertEquals(0, histogram.getPercentile(50))
+	}
+}
@@ -0,0 +1,95 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics
+
+import com.github.benmanes.caffeine.cache.Cache
+import com.github.benmanes.caffeine.cache.Caffeine
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+
+class MetricsTest {
+
+	@Before
+	void setUp() {
+		Metrics.startRun()
+	}
+
+	@Test
+	void testStageLatencyRecorded() {
+		Metrics.record(Stage.Dither, System.nanoTime()-1_000_000)
+		Histogram dither = Metrics.getStageLatency(Stage.Dither)
+		Assert.assertEquals(1, dither.getCount())
+		Assert.assertTrue(dither.getMax() >= 1_000_000)
+		Assert.assertEquals(0, Metrics.getStageLatency(Stage.Attribute).getCount())
+	}
+
+	@Test
+	void testStartRunClearsRun() {
+		Metrics.record(Stage.Read, System.nanoTime())
+		Metrics.recordQueueDepth(QueueType.VideoFrames, 3)
+		Metrics.frameOutput()
+		Metrics.startRun()
+		Assert.assertEquals(0, Metrics.getStageLatency(Stage.Read).getCount())
+		Assert.assertEquals(0, Metrics.getQueueDepth(QueueType.VideoFrames).getCount())
+		Assert.assertEquals(0, Metrics.getFramesOutput())
+	}
+
+	@Test
+	void testAllocationRecorded() {
+		long start = Metrics.getAllocatedBytes()
+		byte[] allocated = new byte[1024*1024]
+		Metrics.recordAllocation(start)
+		if (start >= 0) {
+			Assert.assertTrue(Metrics.getAllocationPerFrame().getMax() >= allocated.length)
+		} else {
+			Assert.assertEquals(0, Metrics.getAllocationPerFrame().getCount())
+		}
+	}
+
+	@Test
+	void testCacheHitRate() {
+		Cache<String, String> cache = Metrics.registerCache("MetricsTest", Caffeine.newBuilder().recordStats().build())
+		cache.put("a", "a")
+		cache.getIfPresent("a")
+		cache.getIfPresent("b")
+		Assert.assertEquals(0.5, Metrics.getCacheHitRates().get("MetricsTest"), 0.0001)
+	}
+
+	@Test
+	void testSummary() {
+		Metrics.record(Stage.PreProcess, System.nanoTime())
+		Metrics.recordQueueDepth(QueueType.InFlightFrames, 2)
+		Metrics.frameOutput()
+		String summary = Metrics.getSummary()
+		Assert.assertTrue(summary, summary.startsWith("Converted 1 frames"))
+		Assert.assertTrue(summary, summary.contains("PreProcess"))
+		Assert.assertFalse(summary, summary.contains("Export"))
+		Assert.assertTrue(summary, summary.contains("Queue InFlightFrames depth"))
+		Assert.assertFalse(summary, summary.contains("duplicate"))
+	}
+
+	@Test
+	void testDuplicateFramesSkipped() {
+		Metrics.duplicateFrameSkipped()
+		Metrics.duplicateFrameSkipped()
+		Assert.assertEquals(2, Metrics.getDuplicateFramesSkipped())
+		Assert.assertTrue(Metrics.getSummary().contains("Repeated 2 duplicate frames"))
+		Metrics.startRun()
+		Assert.assertEquals(0, Metrics.getDuplicateFramesSkipped())
+	}
+}
@@ -0,0 +1,63 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.metrics
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingFile
+import org.junit.Assert
+import org.junit.Test
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class StageEventTest {
+
+	@Test
+	void testStageRecordedWhenDisabled() {
+		Metrics.startRun()
+		StageEvent.start(Stage.Scale).stop()
+		Assert.assertEquals(1, Metrics.getStageLatency(Stage.Scale).getCount())
+	}
+
+	@Test
+	void testEventsCommittedWhenEnabled() {
+		Path file = Files.createTempFile("stage", ".jfr")
+		try {
+			Recording recording = new Recording()
+			recording.enable("uk.co.silentsoftware.Stage")
+			recording.enable("uk.co.silentsoftware.FrameConversion")
+			recording.start()
+			StageEvent.start(Stage.Dither).stop()
+			FrameConversionEvent frame = new FrameConversionEvent()
+			frame.begin()
+			frame.commit("frame1", "dither", "colours", 320, 240)
+			recording.stop()
+			recording.dump(file)
+			recording.close()
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file)
+			RecordedEvent stage = events.find { it.getEventType().getName() == "uk.co.silentsoftware.Stage" }
+			Assert.assertEquals("Dither", stage.getString("stage"))
+			RecordedEvent conversion = events.find { it.getEventType().getName() == "uk.co.silentsoftware.FrameConversion" }
+			Assert.assertEquals("frame1", conversion.getString("frameId"))
+			Assert.assertEquals(320, conversion.getInt("width"))
+		} finally {
+			Files.deleteIfExists(file)
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.image.BufferedImage
+
+class DuplicateFrameDetectorTest {
+
+	private static BufferedImage frame(int rgb) {
+		BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB)
+		for (int y=0; y<240; ++y) {
+			for (int x=0; x<320; ++x) {
+				image.setRGB(x, y, x < 160 ? rgb : 0x204060)
+			}
+		}
+		return image
+	}
+
+	@Test
+	void testIdenticalFramesAreDuplicates() {
+		DuplicateFrameDetector detector = new DuplicateFrameDetector(0)
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertTrue(detector.isDuplicate(frame(0x808080)))
+		Assert.assertFalse(detector.isDuplicate(frame(0x8080FF)))
+		Assert.assertEquals(1, detector.getSkippedCount())
+	}
+
+	/**
+	 * A change too small to survive the thumbnail, such as a single pixel,
+	 * must still stop an exact match
+	 */
+	@Test
+	void testExactDetectsSinglePixelChange() {
+		DuplicateFrameDetector detector = new DuplicateFrameDetector(0)
+		BufferedImage changed = frame(0x808080)
+		changed.setRGB(200, 100, 0x214060)
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertFalse(detector.isDuplicate(changed))
+		Assert.assertTrue(detector.isDuplicate(changed))
+	}
+
+	@Test
+	void testThreshold() {
+		DuplicateFrameDetector detector = new DuplicateFrameDetector(2)
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertTrue(detector.isDuplicate(frame(0x818282)))
+		Assert.assertFalse(detector.isDuplicate(frame(0x808083)))
+	}
+
+	/**
+	 * A slow fade must be caught once it drifts from the last converted
+	 * frame even if each frame is within the threshold of the one before
+	 */
+	@Test
+	void testComparedToLastConvertedFrame() {
+		DuplicateFrameDetector detector = new DuplicateFrameDetector(2)
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertTrue(detector.isDuplicate(frame(0x818181)))
+		Assert.assertTrue(detector.isDuplicate(frame(0x828282)))
+		Assert.assertFalse(detector.isDuplicate(frame(0x838383)))
+	}
+
+	@Test
+	void testOffNeverDetects() {
+		DuplicateFrameDetector detector = new DuplicateFrameDetector(-1)
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertFalse(detector.isDuplicate(frame(0x808080)))
+		Assert.assertEquals(0, detector.getSkippedCount())
+	}
+}
@@ -0,0 +1,307 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher
+
+import org.junit.Assert
+import uk.co.silentsoftware.config.GigaScreenPaletteOrder
+import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.config.ResamplingFilter
+import uk.co.silentsoftware.config.ScalingObject
+import uk.co.silentsoftware.config.SpectrumDefaults
+import uk.co.silentsoftware.core.attributestrategy.AttributeStrategy
+import uk.co.silentsoftware.core.colourstrategy.ColourChoiceStrategy
+import uk.co.silentsoftware.core.colourstrategy.GigaScreenPaletteStrategy
+import uk.co.silentsoftware.core.converters.image.DitherStrategy
+import uk.co.silentsoftware.core.converters.image.ResultImage
+import uk.co.silentsoftware.core.converters.image.errordiffusionstrategy.ErrorDiffusionDitherStrategy
+import uk.co.silentsoftware.core.converters.image.CharacterDitherStrategy
+import uk.co.silentsoftware.core.converters.spectrum.ScrConverter
+import uk.co.silentsoftware.core.converters.spectrum.TapeConverter
+import uk.co.silentsoftware.core.helpers.BlockCache
+
+import java.awt.image.BufferedImage
+import java.security.MessageDigest
+import java.util.function.Function
+
+/**
+ * Bit exact equivalence checks for the conversion engines. Golden digests
+ * pin the output of every conversion combination run through the work
+ * dispatcher, and the differential check compares a candidate engine
+ * with a reference one on randomised images.
+ */
+class GoldenHarness {
+
+	private static final long SEED = 0x5A58L
+
+	private static final String[] HEX = (0..255).collect { String.format("%02x", it) } as String[]
+
+	/**
+	 * A conversion combination, the options are applied by select
+	 */
+	static class Combination {
+		DitherStrategy dither
+		ColourChoiceStrategy colourMode
+		Object attributeMode
+		boolean serpentine
+		boolean constrained
+		ScalingObject scaling = OptionsObject.getInstance().zxScaling
+		GigaScreenPaletteOrder paletteOrder = GigaScreenPaletteOrder.Luminosity
+
+		String getKey() {
+			String key = [dither, colourMode, attributeMode].collect { it.getClass().getSimpleName() }.join(".")
+			key += (serpentine ? ".serpentine" : "") + (constrained ? ".constrained" : "")
+			key += scaling == OptionsObject.INTERLACED ? ".interlaced" : ""
+			return key + (paletteOrder != GigaScreenPaletteOrder.Luminosity ? "."+paletteOrder.name() : "")
+		}
+
+		void select(OptionsObject oo) {
+			oo.setSelectedDitherStrategy(dither)
+			oo.setColourMode(colourMode)
+			if (attributeMode instanceof AttributeStrategy) {
+				oo.setAttributeMode((AttributeStrategy)attributeMode)
+			} else {
+				oo.setGigaScreenAttributeStrategy(attributeMode)
+			}
+			oo.setSerpentine(serpentine)
+			oo.setConstrainedErrorDiffusion(constrained)
+			oo.setScaling(scaling)
+			oo.setGigaScreenPaletteOrder(paletteOrder)
+		}
+	}
+
+	/**
+	 * Every dither strategy with every colour mode and each of its attribute
+	 * modes. Serpentine and constrained error diffusion are only varied for
+	 * the dithers that use error diffusion. GigaScreen is also converted
+	 * interlaced and with every other screen palette order, for the first
+	 * error diffusion and ordered dithers since neither depends on the dither.
+	 *
+	 * @return the combinations
+	 */
+	static List<Combination> combinations() {
+		OptionsObject oo = OptionsObject.getInstance()
+		List<DitherStrategy> dithers = (oo.getErrorDithers() as List) + (oo.getOrderedDithers() as List) + (oo.getOtherDithers() as List)
+		List<Combination> combinations = []
+		for (DitherStrategy dither : dithers) {
+			boolean diffuses = dither instanceof ErrorDiffusionDitherStrategy || dither instanceof CharacterDitherStrategy
+			List<Boolean> flags = diffuses ? [false, true] : [false]
+			for (ColourChoiceStrategy colourMode : oo.getColourModes()) {
+				List attributeModes = colourMode instanceof GigaScreenPaletteStrategy ? oo.getGigaScreenAttributeStrategies() as List : oo.getAttributeModes() as List
+				for (Object attributeMode : attributeModes) {
+					for (boolean serpentine : flags) {
+						for (boolean constrained : flags) {
+							combinations.add(new Combination(dither: dither, colourMode: colourMode, attributeMode: attributeMode,
+									serpentine: serpentine, constrained: constrained))
+						}
+					}
+				}
+			}
+		}
+		for (DitherStrategy dither : [oo.getErrorDithers()[0], oo.getOrderedDithers()[0]]) {
+			ColourChoiceStrategy colourMode = oo.getColourModes().find { it instanceof GigaScreenPaletteStrategy }
+			for (Object attributeMode : oo.getGigaScreenAttributeStrategies()) {
+				combinations.add(new Combination(dither: dither, colourMode: colourMode, attributeMode: attributeMode, scaling: OptionsObject.INTERLACED))
+				for (GigaScreenPaletteOrder paletteOrder : GigaScreenPaletteOrder.values() - GigaScreenPaletteOrder.Luminosity) {
+					combinations.add(new Combination(dither: dither, colourMode: colourMode, attributeMode: attributeMode, paletteOrder: paletteOrder))
+				}
+			}
+		}
+		return combinations
+	}
+
+	/**
+	 * Resets the options that affect conversion to their defaults, with SCR
+	 * output on, and empties the converted block cache
+	 *
+	 * @return the options
+	 */
+	static OptionsObject resetOptions() {
+		OptionsObject oo = OptionsObject.getInstance()
+		oo.setScaling(oo.zxScaling)
+		oo.setResamplingFilter(ResamplingFilter.AreaAverage)
+		oo.setContrast(1)
+		oo.setBrightness(0)
+		oo.setSaturation(0)
+		oo.setBlackThreshold(128)
+		oo.setMonochromeInkIndex(0)
+		oo.setMonochromePaperIndex(7)
+		oo.setOrderedDitherIntensity(1)
+		oo.setSerpentine(false)
+		oo.setConstrainedErrorDiffusion(false)
+		oo.setColourDistanceStrategy(oo.getColourDistances()[0])
+		oo.setColourMode(oo.getColourModes()[0])
+		oo.setAttributeMode(oo.getAttributeModes()[0])
+		oo.setGigaScreenAttributeStrategy(oo.getGigaScreenAttributeStrategies()[0])
+		oo.setGigaScreenPaletteOrder(GigaScreenPaletteOrder.Luminosity)
+		oo.setExportScreen(true)
+		oo.setExportTape(false)
+		BlockCache.clear()
+		return oo
+	}
+
+	/**
+	 * Converts the image through the work dispatcher with the current options
+	 * and digests the result pixels, the SCR and the tape parts made from it
+	 *
+	 * @param dispatcher the dispatcher
+	 * @param image the image to convert
+	 * @return the pixel, SCR and TAP digests separated by commas
+	 */
+	static String digest(WorkDispatcher dispatcher, BufferedImage image) {
+		WorkContainer container = dispatcher.submitFrame(image, "golden")
+		ScrConverter scrConverter = new ScrConverter()
+		TapeConverter tapeConverter = new TapeConverter()
+		byte[] scr = container.getScrData()
+		MessageDigest tap = MessageDigest.getInstance("SHA-256")
+		tap.update(tapeConverter.createTapPart(scrConverter.getScr1(scr)))
+		scrConverter.getScr2(scr).ifPresent { tap.update(tapeConverter.createTapPart(it)) }
+		return [toHex(digestPixels(container.getResultImage())), toHex(MessageDigest.getInstance("SHA-256").digest(scr)), toHex(tap.digest())].join(",")
+	}
+
+	/**
+	 * Digests the dimensions and ARGB pixels of every result image
+	 *
+	 * @param results the results
+	 * @return the SHA-256 digest
+	 */
+	static byte[] digestPixels(ResultImage[] results) {
+		MessageDigest md = MessageDigest.getInstance("SHA-256")
+		for (ResultImage result : results) {
+			BufferedImage image = result.getImage()
+			int[] row = new int[image.getWidth()]
+			md.update(header(image.getWidth(), image.getHeight()))
+			for (int y=0; y<image.getHeight(); ++y) {
+				image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth())
+				md.update(toBytes(row))
+			}
+		}
+		return md.digest()
+	}
+
+	/**
+	 * Checks a candidate engine gives pixel identical results to the reference
+	 * engine for randomised images - noise, gradients, flat attribute blocks
+	 * and images of only a few colours - of random sizes.
+	 *
+	 * @param samples the number of random images
+	 * @param seed the random seed, reported on failure to reproduce it
+	 * @param reference the reference engine
+	 * @param candidate the engine to check
+	 */
+	static void assertEquivalent(int samples, long seed, Function<BufferedImage, ResultImage[]> reference, Function<BufferedImage, ResultImage[]> candidate) {
+		Random random = new Random(seed)
+		for (int i=0; i<samples; ++i) {
+			int width = SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE*(1+random.nextInt(SpectrumDefaults.COLUMNS))
+			int height = SpectrumDefaults.ATTRIBUTE_BLOCK_SIZE*(1+random.nextInt(SpectrumDefaults.ROWS))
+			BufferedImage image = createRandomImage(random, width, height)
+			ResultImage[] expected = reference.apply(copy(image))
+			ResultImage[] actual = candidate.apply(copy(image))
+			Assert.assertEquals("Result count, seed "+seed+" sample "+i, expected.length, actual.length)
+			for (int r=0; r<expected.length; ++r) {
+				assertSamePixels("seed "+seed+" sample "+i+" result "+r, expected[r].getImage(), actual[r].getImage())
+			}
+		}
+	}
+
+	/**
+	 * Creates the deterministic golden input image
+	 *
+	 * @return a Spectrum screen sized image
+	 */
+	static BufferedImage createGoldenImage() {
+		return createRandomImage(new Random(SEED), SpectrumDefaults.SCREEN_WIDTH, SpectrumDefaults.SCREEN_HEIGHT, 0)
+	}
+
+	private static BufferedImage createRandomImage(Random random, int width, int height) {
+		return createRandomImage(random, width, height, random.nextInt(4))
+	}
+
+	private static BufferedImage createRandomImage(Random random, int width, int height, int kind) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)
+		int[] colours = (0..<4).collect { random.nextInt(0x1000000) } as int[]
+		int[] blocks = (0..<(width/8*height/8 as int)).collect { random.nextInt(0x1000000) } as int[]
+		for (int y=0; y<height; ++y) {
+			for (int x=0; x<width; ++x) {
+				int rgb
+				switch (kind) {
+					case 1:
+						rgb = random.nextInt(0x1000000)
+						break
+					case 2:
+						rgb = blocks[(y/8 as int)*(width/8 as int)+(x/8 as int)]
+						break
+					case 3:
+						rgb = colours[random.nextInt(colours.length)]
+						break
+					default:
+						int noise = random.nextInt(24)-12
+						int red = clamp((255*x/width as int)+noise)
+						int green = clamp((255*y/height as int)+noise)
+						int blue = clamp((255*((x+y)%64)/64 as int)+noise)
+						rgb = red << 16 | green << 8 | blue
+				}
+				image.setRGB(x, y, rgb)
+			}
+		}
+		return image
+	}
+
+	private static void assertSamePixels(String description, BufferedImage expected, BufferedImage actual) {
+		Assert.assertEquals("Width, "+description, expected.getWidth(), actual.getWidth())
+		Assert.assertEquals("Height, "+description, expected.getHeight(), actual.getHeight())
+		for (int y=0; y<expected.getHeight(); ++y) {
+			for (int x=0; x<expected.getWidth(); ++x) {
+				if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+					Assert.fail(String.format("Pixel %d,%d expected %08x but was %08x, %s", x, y, expected.getRGB(x, y), actual.getRGB(x, y), description))
+				}
+			}
+		}
+	}
+
+	private static BufferedImage copy(BufferedImage image) {
+		BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType())
+		copy.setData(image.getData())
+		return copy
+	}
+
+	private static int clamp(int value) {
+		return Math.max(0, Math.min(255, value))
+	}
+
+	private static byte[] header(int width, int height) {
+		return toBytes([width, height] as int[])
+	}
+
+	private static byte[] toBytes(int[] values) {
+		byte[] bytes = new byte[values.length*4]
+		for (int i=0; i<values.length; ++i) {
+			bytes[i*4] = (byte)(values[i] >>> 24)
+			bytes[i*4+1] = (byte)(values[i] >>> 16)
+			bytes[i*4+2] = (byte)(values[i] >>> 8)
+			bytes[i*4+3] = (byte)values[i]
+		}
+		return bytes
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length*2)
+		for (byte b : bytes) {
+			sb.append(HEX[b & 0xFF])
+		}
+		return sb.toString()
+	}
+}
@@ -0,0 +1,105 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher
+
+import org.junit.After
+import org.junit.Assert
+import org.junit.Before
+import org.junit.Test
+import uk.co.silentsoftware.config.OptionsObject
+import uk.co.silentsoftware.core.converters.image.processors.OrderedDitherConverterImpl
+import uk.co.silentsoftware.core.helpers.BlockCache
+
+import java.awt.image.BufferedImage
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+/**
+ * Pins the output of every conversion combination to the golden digests
+ * in golden/conversion-digests.properties so optimisations can be proven
+ * bit exact. Regenerate the digests after an intended change to the
+ * output with -Dgolden.update=true, run from the project directory.
+ */
+class GoldenOutputTest {
+
+	private static final String DIGESTS = "golden/conversion-digests.properties"
+
+	private static final Path SOURCE_DIGESTS = Paths.get("src", "test", "resources", DIGESTS)
+
+	private static final int MAX_REPORTED_MISMATCHES = 20
+
+	@Before
+	void setUp() {
+		GoldenHarness.resetOptions()
+	}
+
+	@After
+	void tearDown() {
+		GoldenHarness.resetOptions().setExportScreen(false)
+	}
+
+	@Test
+	void testConversionsMatchGoldenDigests() {
+		OptionsObject oo = OptionsObject.getInstance()
+		WorkDispatcher dispatcher = new WorkDispatcher()
+		BufferedImage image = GoldenHarness.createGoldenImage()
+		Map<String, String> actual = new TreeMap<>()
+		for (GoldenHarness.Combination combination : GoldenHarness.combinations()) {
+			combination.select(oo)
+			actual.put(combination.getKey(), GoldenHarness.digest(dispatcher, image))
+		}
+		if (Boolean.getBoolean("golden.update")) {
+			Files.write(SOURCE_DIGESTS, actual.collect { k, v -> k+"="+v }, StandardCharsets.UTF_8)
+			return
+		}
+		Properties expected = new Properties()
+		GoldenOutputTest.class.getResourceAsStream("/"+DIGESTS).withCloseable { expected.load(it) }
+		List<String> mismatches = actual.findAll { k, v -> expected.getProperty(k) != v }.collect { k, v -> describe(k, expected.getProperty(k), v) }
+		Assert.assertEquals("Combinations without a golden digest", [] as Set, actual.keySet() - expected.stringPropertyNames())
+		Assert.assertTrue(mismatches.size()+" conversions differ from the golden output:\n"+mismatches.take(MAX_REPORTED_MISMATCHES).join("\n"), mismatches.isEmpty())
+	}
+
+	/**
+	 * Memoised blocks from a warm block cache must be identical to
+	 * freshly dithered ones
+	 */
+	@Test
+	void testBlockCacheIsBitExact() {
+		OptionsObject oo = OptionsObject.getInstance()
+		oo.setSelectedDitherStrategy(oo.getOrderedDithers()[3])
+		GoldenHarness.assertEquivalent(8, 1234L, { image ->
+			BlockCache.clear()
+			new OrderedDitherConverterImpl().convert(image)
+		}, { image ->
+			OrderedDitherConverterImpl converter = new OrderedDitherConverterImpl()
+			converter.convert(image)
+			converter.convert(image)
+		})
+	}
+
+	private static String describe(String key, String expected, String actual) {
+		if (expected == null) {
+			return key+" has no golden digest"
+		}
+		List<String> parts = ["pixels", "SCR", "TAP"]
+		String[] expectedParts = expected.split(",")
+		String[] actualParts = actual.split(",")
+		return key+" differs in "+(0..<parts.size()).findAll { expectedParts[it] != actualParts[it] }.collect { parts[it] }.join(", ")
+	}
+}
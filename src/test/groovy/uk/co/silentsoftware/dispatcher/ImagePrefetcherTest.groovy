@@ -0,0 +1,87 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.dispatcher
+
+import org.junit.Assert
+import org.junit.Test
+
+import java.awt.image.BufferedImage
+import java.util.concurrent.atomic.AtomicInteger
+
+class ImagePrefetcherTest {
+
+	private static List<File> files(int count) {
+		return (0..<count).collect { new File("image" + it + ".png") }
+	}
+
+	/**
+	 * Images are returned in file order however long each takes to decode
+	 */
+	@Test
+	void testImagesReturnedInOrder() {
+		Random random = new Random(1)
+		ImagePrefetcher.ImageFileReader reader = { File f ->
+			Thread.sleep(random.nextInt(5))
+			return new BufferedImage(f.getName().length(), 1, BufferedImage.TYPE_INT_RGB)
+		}
+		List<String> names = []
+		new ImagePrefetcher(files(20), 4, reader).withCloseable { prefetcher ->
+			while (prefetcher.hasNext()) {
+				ImagePrefetcher.DecodedImage decoded = prefetcher.next()
+				Assert.assertEquals(decoded.getFile().getName().length(), decoded.getImage().getWidth())
+				names << decoded.getFile().getName()
+			}
+		}
+		Assert.assertEquals(files(20)*.getName(), names)
+	}
+
+	@Test
+	void testFailedFileDoesNotStopBatch() {
+		ImagePrefetcher.ImageFileReader reader = { File f ->
+			if (f.getName() == "image1.png") {
+				throw new IOException("Corrupt")
+			}
+			return f.getName() == "image2.png" ? null : new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+		}
+		new ImagePrefetcher(files(4), 2, reader).withCloseable { prefetcher ->
+			Assert.assertNotNull(prefetcher.next().getImage())
+			ImagePrefetcher.DecodedImage failed = prefetcher.next()
+			Assert.assertNull(failed.getImage())
+			Assert.assertTrue(failed.getError() instanceof IOException)
+			Assert.assertNull(prefetcher.next().getImage())
+			Assert.assertNotNull(prefetcher.next().getImage())
+			Assert.assertFalse(prefetcher.hasNext())
+		}
+	}
+
+	/**
+	 * No more than the read ahead window is decoded before being taken
+	 */
+	@Test
+	void testReadAheadIsBounded() {
+		AtomicInteger decoded = new AtomicInteger()
+		ImagePrefetcher.ImageFileReader reader = { File f ->
+			decoded.incrementAndGet()
+			return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)
+		}
+		new ImagePrefetcher(files(50), 2, reader).withCloseable { prefetcher ->
+			prefetcher.next()
+			Thread.sleep(100)
+			Assert.assertEquals(5, decoded.get())
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/* Image to ZX Spec
+ * Copyright (C) 2023 Silent Software (Benjamin Brown)
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.silentsoftware.core.converters.image.processors;
+
+import java.beans.XMLDecoder;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Build time tool that converts the original XMLDecoder character map
+ * (characters.xml.gz) into the binary character set format read by
+ * {@link CharacterSet}. Run by the "generate-charset" maven profile or
+ * directly with the xml and output paths as arguments. This lives in the
+ * tools source root, with the xml, so neither ships in the application.
+ */
+public final class CharacterSetConverter {
+
+	private static final String DEFAULT_XML = "src/tools/resources/characters.xml.gz";
+
+	private static final String DEFAULT_OUTPUT = "src/main/resources" + CharacterSet.RESOURCE;
+
+	/**
+	 * Private constructor since we want static use only
+	 */
+	private CharacterSetConverter(){}
+
+	/**
+	 * Converts the character set
+	 *
+	 * @param args optional xml input path and binary output path
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		String xml = args.length > 0 ? args[0] : DEFAULT_XML;
+		String output = args.length > 1 ? args[1] : DEFAULT_OUTPUT;
+		CharacterSet characterSet = new CharacterSet(readXml(xml));
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+			characterSet.write(out);
+		}
+		System.out.println("Wrote "+characterSet.size()+" characters to "+output);
+	}
+
+	/**
+	 * Reads the character to black and white pixel map
+	 *
+	 * @param path the gzipped xml file
+	 * @return the character map
+	 * @throws IOException if the map cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, int[]> readXml(String path) throws IOException {
+		try (XMLDecoder d = new XMLDecoder(new GZIPInputStream(new FileInputStream(path)))) {
+			return (Map<String, int[]>) d.readObject();
+		} catch (RuntimeException e) {
+			throw new IOException("Unable to read character map "+path, e);
+		}
+	}
+}